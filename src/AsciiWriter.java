@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ *  Text writer that formats ASCII text, ints and floats directly into a reusable byte[] and, if it has a channel,
+ *  flushes the buffer through it each time it fills up.  Without a channel, the buffer grows as needed so a
+ *  section of output can be rendered in memory and written later.
+ *
+ *  Floats are written using the fixed precision format of Cheetah3DParser.fmtFloat(), which is a leading space
+ *  for positive values, 6 decimals rounded half even and scientific notation for values larger than 100000.
+ *  Instances are not thread-safe, but hold no shared state, so each thread can use its own AsciiWriter.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+class AsciiWriter {
+  private static final int    SCALE = 1000000;          // 6 decimals
+  private static final byte[] DIGIT_PAIRS = new byte[200];
+  private static final byte[] HEX_PAIRS = new byte[512];   // uppercase hex digits for each byte value
+  private static final byte[] EOL = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+  private final WritableByteChannel channel;
+  private byte[]                    buf;
+  private int                       pos;
+
+  static {
+    for (int ii = 0; ii < 100; ii++) {
+      DIGIT_PAIRS[ii * 2] = (byte) ('0' + ii / 10);
+      DIGIT_PAIRS[ii * 2 + 1] = (byte) ('0' + ii % 10);
+    }
+    for (int ii = 0; ii < 256; ii++) {
+      HEX_PAIRS[ii * 2] = (byte) Character.toUpperCase(Character.forDigit(ii >> 4, 16));
+      HEX_PAIRS[ii * 2 + 1] = (byte) Character.toUpperCase(Character.forDigit(ii & 0xF, 16));
+    }
+  }
+
+  /**
+   * Creates writer that flushes to channel whenever its buffer of bufSize bytes fills
+   */
+  AsciiWriter (WritableByteChannel channel, int bufSize) {
+    this.channel = channel;
+    buf = new byte[Math.max(bufSize, 64)];
+  }
+
+  /**
+   * Creates in memory writer whose buffer grows as needed
+   */
+  AsciiWriter (int initialSize) {
+    this(null, initialSize);
+  }
+
+  private void ensure (int len) throws IOException {
+    if (pos + len > buf.length) {
+      if (channel != null) {
+        flush();
+      }
+      if (pos + len > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + len));
+      }
+    }
+  }
+
+  AsciiWriter append (CharSequence str) throws IOException {
+    int len = str.length();
+    ensure(len);
+    for (int ii = 0; ii < len; ii++) {
+      char cc = str.charAt(ii);
+      if (cc > 0x7F) {
+        // Names can contain non ASCII chars, so encode these the same way PrintStream would
+        byte[] data = str.subSequence(ii, len).toString().getBytes();
+        ensure(data.length);
+        System.arraycopy(data, 0, buf, pos, data.length);
+        pos += data.length;
+        break;
+      }
+      buf[pos++] = (byte) cc;
+    }
+    return this;
+  }
+
+  AsciiWriter append (char cc) throws IOException {
+    ensure(1);
+    buf[pos++] = (byte) cc;
+    return this;
+  }
+
+  /**
+   * Appends line separator (same as PrintStream.println())
+   */
+  AsciiWriter newLine () throws IOException {
+    ensure(EOL.length);
+    for (byte eol : EOL) {
+      buf[pos++] = eol;
+    }
+    return this;
+  }
+
+  AsciiWriter append (long val) throws IOException {
+    ensure(20);
+    pos = putLong(buf, pos, val);
+    return this;
+  }
+
+  /**
+   * Appends val right aligned in a field of width chars (same as String.format("%<width>d", val))
+   */
+  AsciiWriter append (long val, int width) throws IOException {
+    ensure(20 + width);
+    int digits = val < 0 ? 2 : 1;
+    for (long tmp = Math.abs(val); tmp >= 10; tmp /= 10) {
+      digits++;
+    }
+    for (int ii = digits; ii < width; ii++) {
+      buf[pos++] = ' ';
+    }
+    pos = putLong(buf, pos, val);
+    return this;
+  }
+
+  /**
+   * Appends val as two uppercase hex digits (same as String.format("%02X", val))
+   */
+  AsciiWriter appendHex (byte val) throws IOException {
+    ensure(2);
+    int pair = (val & 0xFF) * 2;
+    buf[pos++] = HEX_PAIRS[pair];
+    buf[pos++] = HEX_PAIRS[pair + 1];
+    return this;
+  }
+
+  /**
+   * Appends the low digits * 4 bits of val as uppercase hex digits, with leading zeros
+   */
+  AsciiWriter appendHex (int val, int digits) throws IOException {
+    ensure(digits);
+    for (int ii = pos + digits - 1; ii >= pos; ii--) {
+      buf[ii] = HEX_PAIRS[(val & 0xF) * 2 + 1];
+      val >>>= 4;
+    }
+    pos += digits;
+    return this;
+  }
+
+  AsciiWriter append (AsciiWriter other) throws IOException {
+    ensure(other.pos);
+    System.arraycopy(other.buf, 0, buf, pos, other.pos);
+    pos += other.pos;
+    return this;
+  }
+
+  /**
+   * Appends float in the same format as Cheetah3DParser.fmtFloat()
+   */
+  AsciiWriter appendFloat (float val) throws IOException {
+    ensure(32);
+    pos = putFloat(buf, pos, val);
+    return this;
+  }
+
+  int size () {
+    return pos;
+  }
+
+  void reset () {
+    pos = 0;
+  }
+
+  byte[] toByteArray () {
+    return Arrays.copyOf(buf, pos);
+  }
+
+  /**
+   * Writes the buffer's contents to channel and empties the buffer
+   */
+  void writeTo (WritableByteChannel out) throws IOException {
+    ByteBuffer data = ByteBuffer.wrap(buf, 0, pos);
+    while (data.hasRemaining()) {
+      out.write(data);
+    }
+    pos = 0;
+  }
+
+  void flush () throws IOException {
+    if (channel != null && pos > 0) {
+      writeTo(channel);
+    }
+  }
+
+  @Override
+  public String toString () {
+    return new String(buf, 0, pos, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Formats val into buf, starting at pos, using the format of Cheetah3DParser.fmtFloat()
+   * @return position following formatted value
+   */
+  static int putFloat (byte[] buf, int pos, float val) {
+    if (val == 0) {
+      val = 0;                            // Changes -0 to 0
+    }
+    if (Float.isNaN(val) || Math.abs(val) > 100000) {
+      String str = Float.isNaN(val) ? "NaN" : String.format((val >= 0 ? " %e" : "%e"), val);
+      for (int ii = 0; ii < str.length(); ii++) {
+        buf[pos++] = (byte) str.charAt(ii);
+      }
+      return pos;
+    }
+    buf[pos++] = (byte) (val < 0 ? '-' : ' ');
+    long scaled = scale(Math.abs(val));
+    pos = putLong(buf, pos, scaled / SCALE);
+    buf[pos++] = '.';
+    int frac = (int) (scaled % SCALE);
+    for (int ii = pos + 4; ii >= pos; ii -= 2) {
+      int pair = (frac % 100) * 2;
+      frac /= 100;
+      buf[ii] = DIGIT_PAIRS[pair];
+      buf[ii + 1] = DIGIT_PAIRS[pair + 1];
+    }
+    return pos + 6;
+  }
+
+  /*
+   * Returns val * 1000000, rounded half even using the exact binary value of val, which is how DecimalFormat
+   * rounds.  As val <= 100000, the result always fits in a long.
+   */
+  private static long scale (float val) {
+    int bits = Float.floatToRawIntBits(val);
+    int exp = (bits >> 23) & 0xFF;
+    long mant = bits & 0x7FFFFF;
+    if (exp != 0) {
+      mant |= 0x800000;
+    } else {
+      exp = 1;                            // Denormal
+    }
+    int shift = 150 - exp;                // val = mant * 2^-shift
+    long num = mant * SCALE;
+    if (shift <= 0) {
+      return num << -shift;
+    } else if (shift > 62) {
+      return 0;
+    }
+    long quot = num >>> shift;
+    long rem = num & ((1L << shift) - 1);
+    long half = 1L << (shift - 1);
+    if (rem > half || (rem == half && (quot & 1) != 0)) {
+      quot++;
+    }
+    return quot;
+  }
+
+  /**
+   * Formats val into buf, starting at pos, as decimal digits
+   * @return position following formatted value
+   */
+  static int putLong (byte[] buf, int pos, long val) {
+    if (val < 0) {
+      if (val == Long.MIN_VALUE) {
+        String str = Long.toString(val);
+        for (int ii = 0; ii < str.length(); ii++) {
+          buf[pos++] = (byte) str.charAt(ii);
+        }
+        return pos;
+      }
+      buf[pos++] = '-';
+      val = -val;
+    }
+    int digits = 1;
+    for (long tmp = val; tmp >= 10; tmp /= 10) {
+      digits++;
+    }
+    int end = pos + digits;
+    int idx = end;
+    while (val >= 100) {
+      int pair = (int) (val % 100) * 2;
+      val /= 100;
+      buf[--idx] = DIGIT_PAIRS[pair + 1];
+      buf[--idx] = DIGIT_PAIRS[pair];
+    }
+    if (val >= 10) {
+      int pair = (int) val * 2;
+      buf[--idx] = DIGIT_PAIRS[pair + 1];
+      buf[--idx] = DIGIT_PAIRS[pair];
+    } else {
+      buf[--idx] = (byte) ('0' + val);
+    }
+    return end;
+  }
+}
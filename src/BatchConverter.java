@@ -0,0 +1,212 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ *  Implements the -batch switch, which converts many .jas files in one JVM using the other switches given, such as:
+ *
+ *    java -jar Cheetah3DParser.jar -batch -obj assets/ "models/**.jas" extra.jas
+ *
+ *  Inputs can be files, directories (searched recursively for .jas files) or glob patterns.  Each file is handled
+ *  by its own Cheetah3DParser instance in two stages:
+ *
+ *    I/O stage   maps the file and touches its pages, so the read happens off the CPU pool (cached pool bounded
+ *                by the memory budget, standing in for virtual threads, which need Java 21)
+ *    CPU stage   decodes the plist and writes the outputs (fixed pool, one thread per core)
+ *
+ *  A file holds permits from a memory budget (in MB, default half the max heap) from the start of its I/O stage
+ *  until its outputs are written, so several large files are not in memory at once.  Console output from each
+ *  file is buffered and printed in one block.  At the end a summary of throughput, failures and the slowest files
+ *  is printed.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+class BatchConverter {
+  private static final long       MB = 1024 * 1024;
+  private static final int        SLOWEST = 5;
+  private final String[]          switches;
+  private final int               budgetMB;
+  private final Semaphore         budget;
+
+  private static class Result {
+    final File    file;
+    final long    size;
+    long          nanos;
+    Throwable     error;
+
+    Result (File file) {
+      this.file = file;
+      size = file.length();
+    }
+  }
+
+  BatchConverter (String[] switches) {
+    this.switches = switches;
+    budgetMB = (int) Math.max(64, Runtime.getRuntime().maxMemory() / 2 / MB);
+    budget = new Semaphore(budgetMB, true);
+  }
+
+  /**
+   * Converts every .jas file found in inputs and prints a summary
+   * @return number of files that failed to convert
+   */
+  int run (String[] inputs) throws InterruptedException {
+    long start = System.nanoTime();
+    List<File> files = new ArrayList<>();
+    for (String input : inputs) {
+      try {
+        List<File> found = findFiles(input);
+        if (found.isEmpty()) {
+          System.out.println("No .jas files found: " + input);
+        }
+        files.addAll(found);
+      } catch (IOException ex) {
+        System.out.println("Unable to read: " + input + " (" + ex + ")");
+      }
+    }
+    files = new ArrayList<>(new LinkedHashSet<>(files));
+    ExecutorService ioPool = Executors.newCachedThreadPool(daemonThreads("batch-io-"));
+    ExecutorService cpuPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                                           daemonThreads("batch-cpu-"));
+    List<CompletableFuture<Result>> jobs = new ArrayList<>();
+    try {
+      for (File file : files) {
+        Result result = new Result(file);
+        int permits = (int) Math.min(budgetMB, Math.max(1, (result.size * 3 + MB - 1) / MB));
+        // Acquire before starting the I/O stage, so at most budgetMB worth of files are mapped or decoded
+        budget.acquire(permits);
+        long jobStart = System.nanoTime();
+        jobs.add(CompletableFuture.supplyAsync(() -> prefetch(file), ioPool)
+                   .thenApplyAsync(data -> convert(file), cpuPool)
+                   .handle((console, ex) -> {
+                     budget.release(permits);
+                     result.nanos = System.nanoTime() - jobStart;
+                     result.error = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                     if (console != null && console.size() > 0) {
+                       synchronized (System.out) {
+                         System.out.println("FILE: " + file.getPath());
+                         System.out.print(console.toString());
+                       }
+                     }
+                     return result;
+                   }));
+      }
+      List<Result> results = jobs.stream().map(CompletableFuture::join).collect(Collectors.toList());
+      printSummary(results, System.nanoTime() - start);
+      return (int) results.stream().filter(res -> res.error != null).count();
+    } finally {
+      ioPool.shutdown();
+      cpuPool.shutdown();
+    }
+  }
+
+  /*
+   * Maps file and touches each page, so the CPU stage finds it in the page cache
+   */
+  private static ByteBuffer prefetch (File file) {
+    try {
+      ByteBuffer data = BinaryPList.map(file);
+      if (data instanceof MappedByteBuffer) {
+        ((MappedByteBuffer) data).load();
+      }
+      return data;
+    } catch (IOException ex) {
+      throw new CompletionException(ex);
+    }
+  }
+
+  private ByteArrayOutputStream convert (File file) {
+    ByteArrayOutputStream console = new ByteArrayOutputStream();
+    try (PrintStream out = new PrintStream(console)) {
+      Cheetah3DParser.convert(switches, file, out);
+    } catch (Exception ex) {
+      throw new CompletionException(ex);
+    }
+    return console;
+  }
+
+  private void printSummary (List<Result> results, long nanos) {
+    List<Result> failed = results.stream().filter(res -> res.error != null).collect(Collectors.toList());
+    long bytes = results.stream().mapToLong(res -> res.size).sum();
+    double secs = nanos / 1e9;
+    System.out.println("Batch:    " + results.size() + " files, " + (results.size() - failed.size()) + " converted, " +
+                       failed.size() + " failed");
+    System.out.println(String.format("  input:  %.1f MB in %.2f s (%.1f MB/s, %.1f files/s, %d threads, %d MB budget)",
+                                     bytes / 1e6, secs, bytes / 1e6 / secs, results.size() / secs,
+                                     Runtime.getRuntime().availableProcessors(), budgetMB));
+    if (!results.isEmpty()) {
+      System.out.println("  slowest:");
+      results.stream()
+          .sorted(Comparator.comparingLong((Result res) -> res.nanos).reversed())
+          .limit(SLOWEST)
+          .forEach(res -> System.out.println(String.format("    %8.3f s  %8.1f MB  %s", res.nanos / 1e9,
+                                                           res.size / 1e6, res.file.getPath())));
+    }
+    if (!failed.isEmpty()) {
+      System.out.println("  failed:");
+      for (Result res : failed) {
+        System.out.println("    " + res.file.getPath() + ": " + res.error);
+      }
+    }
+  }
+
+  /*
+   * Expands input into the .jas files it names.  Inputs containing *, ?, [ or { are globs, which are matched
+   * against the paths under the directory part before the first glob character.
+   */
+  static List<File> findFiles (String input) throws IOException {
+    int glob = -1;
+    for (int ii = 0; ii < input.length() && glob < 0; ii++) {
+      if ("*?[{".indexOf(input.charAt(ii)) >= 0) {
+        glob = ii;
+      }
+    }
+    if (glob < 0) {
+      File file = new File(input);
+      if (!file.isDirectory()) {
+        return Collections.singletonList(file);
+      }
+      return walk(file.toPath(), path -> true);
+    }
+    int sep = Math.max(input.lastIndexOf('/', glob), input.lastIndexOf(File.separatorChar, glob));
+    Path base = Paths.get(sep >= 0 ? input.substring(0, sep + 1) : ".");
+    String pattern = sep >= 0 ? input : base.resolve(input).toString();
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    return walk(base, matcher);
+  }
+
+  private static List<File> walk (Path base, PathMatcher matcher) throws IOException {
+    try (Stream<Path> paths = Files.walk(base)) {
+      return paths.filter(path -> path.toString().toLowerCase().endsWith(".jas") && matcher.matches(path))
+          .filter(Files::isRegularFile)
+          .sorted()
+          .map(Path::toFile)
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static ThreadFactory daemonThreads (String prefix) {
+    int[] count = {0};
+    return task -> {
+      Thread thread = new Thread(task);
+      synchronized (count) {
+        thread.setName(prefix + count[0]++);
+      }
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
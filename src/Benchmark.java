@@ -0,0 +1,714 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/*
+ *  Micro benchmarks for the decoding and export stages of Cheetah3DParser.  Not part of the normal CLI, run with:
+ *
+ *    java -cp Cheetah3DParser.jar Benchmark <name> [file.jas]
+ *
+ *  If no .jas file is given, synthetic data sized to match the examples in the notes is used.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public class Benchmark {
+  private static volatile Object  sink;
+
+  public static void main (String[] args) throws Exception {
+    if (args.length < 1) {
+      System.out.println("Usage: java -cp Cheetah3DParser.jar Benchmark <name> [file.jas]");
+      System.out.println("  uvcoords    decode \"uvcoords\" Data block (see Note 5)");
+      System.out.println("  objexport   serial vs -parallel OBJ export, and check output is identical (needs file.jas)");
+      System.out.println("  sceneload   Cheetah3DParser.load() on one thread vs all cores, and check scenes match (needs file.jas)");
+      System.out.println("  scenecache  Cheetah3DParser.load() vs SceneCache hit, and check scenes match (needs file.jas)");
+      System.out.println("  takesample  TakeSampler baking at 30 and 60 fps vs sampling frames in random order");
+      System.out.println("  skinning    Skinner on one thread vs all cores, in vertices per second (needs file.jas)");
+      System.out.println("  triangulate Triangulator vs plain fans, in faces per second (needs file.jas)");
+      System.out.println("  weld        VertexWelder vs a HashMap<Long,Integer>, in face points per second (needs file.jas)");
+      System.out.println("  normals     NormalGenerator at 60 and 180 degree crease angles, in face points per second (needs file.jas)");
+      System.out.println("  meshexport  -obj vs binary -ply and -stl export, in MB/s of output (needs file.jas)");
+      System.out.println("  lod         MeshSimplifier at the default -lod levels, in input triangles per second (needs file.jas)");
+      return;
+    }
+    File file = args.length > 1 ? new File(args[1]) : null;
+    switch (args[0]) {
+    case "uvcoords":
+      benchUVCoords(file);
+      break;
+    case "objexport":
+      benchObjExport(file);
+      break;
+    case "sceneload":
+      benchSceneLoad(file);
+      break;
+    case "scenecache":
+      benchSceneCache(file);
+      break;
+    case "takesample":
+      benchTakeSample(file);
+      break;
+    case "skinning":
+      benchSkinning(file);
+      break;
+    case "triangulate":
+      benchTriangulate(file);
+      break;
+    case "weld":
+      benchWeld(file);
+      break;
+    case "normals":
+      benchNormals(file);
+      break;
+    case "meshexport":
+      benchMeshExport(file);
+      break;
+    case "lod":
+      benchLod(file);
+      break;
+    default:
+      System.out.println("Unknown benchmark: " + args[0]);
+    }
+  }
+
+  /*
+   * Times op, first running it for about a second to let the JIT settle, then reports the average time of
+   * enough runs to take about two seconds
+   */
+  static double time (String label, long bytes, Runnable op) {
+    long end = System.nanoTime() + 1000000000L;
+    int runs = 0;
+    while (System.nanoTime() < end) {
+      op.run();
+      runs++;
+    }
+    int count = Math.max(1, runs * 2);
+    long start = System.nanoTime();
+    for (int ii = 0; ii < count; ii++) {
+      op.run();
+    }
+    double ms = (System.nanoTime() - start) / 1e6 / count;
+    String rate = bytes > 0 ? String.format("  %9.1f MB/s", bytes / 1e3 / ms) : "";
+    System.out.println(String.format("  %-28s %10.4f ms/op", label, ms) + rate);
+    return ms;
+  }
+
+  /*
+   * Finds the first Data block with the given key in an Objects dictionary, or null
+   */
+  static ByteBuffer findData (File file, String key) throws Exception {
+    Object root = BinaryPList.parse(file);
+    return findData(root, key);
+  }
+
+  private static ByteBuffer findData (Object obj, String key) {
+    if (obj instanceof Map) {
+      for (Map.Entry<?,?> entry : ((Map<?,?>) obj).entrySet()) {
+        if (key.equals(entry.getKey()) && entry.getValue() instanceof ByteBuffer) {
+          return (ByteBuffer) entry.getValue();
+        }
+        ByteBuffer data = findData(entry.getValue(), key);
+        if (data != null) {
+          return data;
+        }
+      }
+    } else if (obj instanceof List) {
+      for (Object item : (List<?>) obj) {
+        ByteBuffer data = findData(item, key);
+        if (data != null) {
+          return data;
+        }
+      }
+    }
+    return null;
+  }
+
+  static ByteBuffer randomFloats (int bytes) {
+    Random rnd = new Random(1);
+    ByteBuffer buf = ByteBuffer.allocate(bytes);
+    while (buf.remaining() >= 4) {
+      buf.putFloat(rnd.nextFloat());
+    }
+    buf.flip();
+    return buf.asReadOnlyBuffer();
+  }
+
+  /*
+   * Compares the original three copy decode of "uvcoords" (byte by byte int assembly, Float.intBitsToFloat copy,
+   * then float[][] copy) with the DataDecoder views
+   */
+  private static void benchUVCoords (File file) throws Exception {
+    ByteBuffer data = file != null ? findData(file, "uvcoords") : null;
+    if (data == null) {
+      data = randomFloats(465504);     // Size of the example in Note 5
+    }
+    final ByteBuffer uvData = data;
+    int bytes = uvData.remaining();
+    System.out.println("uvcoords: " + bytes + " bytes, " + (bytes >> 4) + " coords");
+    double legacy = time("legacy (int[], float[], [][])", bytes, () -> sink = legacyUVs(uvData));
+    double strided = time("DataDecoder strided", bytes, () -> sink = DataDecoder.getFloats(uvData, 0, 2, 4));
+    time("DataDecoder bulk", bytes, () -> sink = DataDecoder.getFloats(uvData));
+    time("float view to [][]", bytes, () -> {
+      FloatBuffer floats = DataDecoder.floatView(uvData, ByteOrder.BIG_ENDIAN);
+      float[][] uvs = new float[floats.limit() >> 2][2];
+      for (int ii = 0; ii < uvs.length; ii++) {
+        uvs[ii][0] = floats.get(ii << 2);
+        uvs[ii][1] = floats.get((ii << 2) + 1);
+      }
+      sink = uvs;
+    });
+    System.out.println(String.format("  speedup (strided vs legacy):  %.1fx", legacy / strided));
+  }
+
+  /*
+   * Times serial and -parallel OBJ export of file and checks that both produce byte-identical .obj files
+   */
+  private static void benchObjExport (File file) throws Exception {
+    if (file == null) {
+      System.out.println("objexport needs a .jas file");
+      return;
+    }
+    String path = file.getPath();
+    Path objFile = Paths.get(path.substring(0, path.toLowerCase().indexOf(".jas")) + "-Obj.obj");
+    Cheetah3DParser.main(new String[] {"-obj", path});
+    byte[] serial = Files.readAllBytes(objFile);
+    Cheetah3DParser.main(new String[] {"-obj", "-parallel", path});
+    byte[] parallel = Files.readAllBytes(objFile);
+    System.out.println("objexport: " + serial.length + " bytes, output " +
+                       (Arrays.equals(serial, parallel) ? "identical" : "DIFFERS"));
+    Runnable serialRun = () -> run("-obj", path);
+    Runnable parallelRun = () -> run("-obj", "-parallel", path);
+    double serialMs = time("serial", serial.length, serialRun);
+    double parallelMs = time("parallel", serial.length, parallelRun);
+    System.out.println(String.format("  speedup (parallel vs serial): %.1fx (%d cores)", serialMs / parallelMs,
+                                     Runtime.getRuntime().availableProcessors()));
+    if (!Arrays.equals(serial, parallel)) {
+      System.exit(1);
+    }
+  }
+
+  /*
+   * Times -obj, -ply and -stl export of file, each including the load of file, and reports the rate at which each
+   * writes its output file
+   */
+  private static void benchMeshExport (File file) throws Exception {
+    if (file == null) {
+      System.out.println("meshexport needs a .jas file");
+      return;
+    }
+    String path = file.getPath();
+    String base = path.substring(0, path.toLowerCase().indexOf(".jas"));
+    String[][] exports = {{"-obj", base + "-Obj.obj"}, {"-ply", base + ".ply"}, {"-stl", base + ".stl"}};
+    System.out.println("meshexport: " + file.length() + " byte input");
+    for (String[] export : exports) {
+      runQuiet(export[0], path);
+      long bytes = new File(export[1]).length();
+      time(export[0] + " (" + bytes + " bytes)", bytes, () -> runQuiet(export[0], path));
+    }
+  }
+
+  /*
+   * Times Cheetah3DParser.load() called repeatedly on one thread and then from one thread per core at once, and
+   * checks that every concurrently loaded Scene matches the one loaded first
+   */
+  private static void benchSceneLoad (File file) throws Exception {
+    if (file == null) {
+      System.out.println("sceneload needs a .jas file");
+      return;
+    }
+    Path path = file.toPath();
+    Scene first = Cheetah3DParser.load(path);
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Scene>> loads = new ArrayList<>();
+      for (int ii = 0; ii < threads * 4; ii++) {
+        loads.add(pool.submit(() -> Cheetah3DParser.load(path)));
+      }
+      boolean same = true;
+      for (Future<Scene> load : loads) {
+        same &= sameScene(first, load.get());
+      }
+      System.out.println("sceneload: " + first.getMeshes().size() + " meshes, " + loads.size() +
+                         " concurrent loads " + (same ? "identical" : "DIFFER"));
+      long bytes = file.length();
+      double serialMs = time("1 thread", bytes, () -> sink = load(path));
+      double parallelMs = time(threads + " threads", bytes * threads, () -> {
+        List<Future<Scene>> batch = new ArrayList<>();
+        for (int ii = 0; ii < threads; ii++) {
+          batch.add(pool.submit(() -> Cheetah3DParser.load(path)));
+        }
+        for (Future<Scene> load : batch) {
+          sink = getScene(load);
+        }
+      });
+      System.out.println(String.format("  scaling: %.1fx (%d cores)", serialMs * threads / parallelMs, threads));
+      if (!same) {
+        System.exit(1);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /*
+   * Times decoding file with Cheetah3DParser.load() vs reading it from a SceneCache (in a temporary directory),
+   * and checks the cached Scene matches
+   */
+  private static void benchSceneCache (File file) throws Exception {
+    if (file == null) {
+      System.out.println("scenecache needs a .jas file");
+      return;
+    }
+    Path path = file.toPath();
+    Path dir = Files.createTempDirectory("scenecache");
+    try {
+      SceneCache cache = new SceneCache(dir, SceneCache.DEFAULT_MAX_BYTES);
+      Scene first = cache.load(path);
+      boolean same = sameScene(first, cache.load(path));
+      System.out.println("scenecache: entry " + Files.list(dir).mapToLong(entry -> entry.toFile().length()).sum() +
+                         " bytes, cached scene " + (same ? "identical" : "DIFFERS"));
+      long bytes = file.length();
+      ByteBuffer data = BinaryPList.map(file);
+      double loadMs = time("load()", bytes, () -> sink = load(path));
+      time("content hash", bytes, () -> sink = SceneCache.hash(data));
+      double cacheMs = time("cache hit", bytes, () -> {
+        try {
+          sink = cache.load(path);
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+      });
+      System.out.println(String.format("  speedup (cache hit vs load): %.1fx", loadMs / cacheMs));
+      if (!same) {
+        System.exit(1);
+      }
+    } finally {
+      try (Stream<Path> entries = Files.list(dir)) {
+        for (Path entry : (Iterable<Path>) entries::iterator) {
+          Files.delete(entry);
+        }
+      }
+      Files.delete(dir);
+    }
+  }
+
+  /*
+   * Times TakeSampler baking a take at 30 and 60 fps, where each channel's cursor steps forward one segment at a
+   * time, against sampling the same frames in a random order, where every sample needs a binary search.  Uses the
+   * first take in file, or a synthetic take sized like the mixamo example in the README (52 joints, 4 seconds of
+   * keys at 30 fps)
+   */
+  private static void benchTakeSample (File file) throws Exception {
+    Take take = null;
+    if (file != null) {
+      for (Mesh mesh : Cheetah3DParser.load(file.toPath()).getMeshes()) {
+        for (Take item : mesh.getTakes().values()) {
+          take = take == null && !item.getChannels().isEmpty() ? item : take;
+        }
+      }
+    }
+    if (take == null) {
+      take = syntheticTake(52, 121, 30);
+    }
+    final Take sTake = take;
+    TakeSampler sampler = new TakeSampler(take);
+    int keys = 0;
+    for (Take.Channel channel : take.getChannels()) {
+      keys += channel.getKeyCount();
+    }
+    System.out.println(String.format("takesample: '%s', %d targets, %d channels, %d keys, %.2f seconds", take.getName(),
+                                     sampler.getTargets().size(), take.getChannels().size(), keys,
+                                     sampler.getEndTime() - sampler.getStartTime()));
+    for (int fps : new int[] {30, 60}) {
+      int frames = sampler.getFrameCount(fps);
+      double ms = time("bake " + fps + " fps", 0, () -> sink = new TakeSampler(sTake).bake(fps));
+      System.out.println(String.format("    %d frames, %.0f ns/frame", frames, ms * 1e6 / frames));
+    }
+    int frames = sampler.getFrameCount(60);
+    int[] order = new int[frames];
+    Random rnd = new Random(1);
+    for (int ii = 0; ii < frames; ii++) {
+      int jj = rnd.nextInt(ii + 1);
+      order[ii] = order[jj];
+      order[jj] = ii;
+    }
+    float start = sampler.getStartTime();
+    int size = sampler.getTargets().size() * TakeSampler.SLOT_SIZE;
+    double ms = time("random order 60 fps", 0, () -> {
+      TakeSampler random = new TakeSampler(sTake);
+      float[] out = new float[frames * size];
+      for (int frame : order) {
+        random.sample(start + frame / 60f, out, frame * size);
+      }
+      sink = out;
+    });
+    System.out.println(String.format("    %d frames, %.0f ns/frame", frames, ms * 1e6 / frames));
+  }
+
+  /*
+   * Times Skinner on the first skinned mesh in file, posed at the middle frame of its first take, skinning all the
+   * vertices on one thread, then split over all cores, and checks that both give the same positions and that the
+   * rest pose leaves the vertices where they were bound
+   */
+  private static void benchSkinning (File file) throws Exception {
+    if (file == null) {
+      System.out.println("skinning needs a .jas file");
+      return;
+    }
+    Mesh mesh = null;
+    for (Mesh item : Cheetah3DParser.load(file.toPath()).getMeshes()) {
+      mesh = mesh == null && item.getSkeleton() != null ? item : mesh;
+    }
+    if (mesh == null) {
+      System.out.println("skinning: no skinned mesh in " + file);
+      return;
+    }
+    PoseEvaluator evaluator = new PoseEvaluator(mesh.getSkeleton());
+    Skinner skinner = new Skinner(mesh, evaluator);
+    int vertexCount = skinner.getVertexCount();
+    // Rest pose: each joint's world matrix is its transformLinkMatrix
+    float[] world = new float[evaluator.getJointCount() * PoseEvaluator.MATRIX_SIZE];
+    for (int ii = 0; ii < evaluator.getJointCount(); ii++) {
+      float[] link = evaluator.getJoints().get(ii).transformLinkMatrix;
+      System.arraycopy(link, 0, world, ii * PoseEvaluator.MATRIX_SIZE, PoseEvaluator.MATRIX_SIZE);
+    }
+    float[] out = new float[vertexCount * 3];
+    skinner.skin(world, 0, out);
+    float restError = 0;
+    for (int ii = 0; ii < out.length; ii++) {
+      restError = Math.max(restError, Math.abs(out[ii] - mesh.vertices[ii]));
+    }
+    Iterator<Take> takes = mesh.getTakes().values().iterator();
+    if (takes.hasNext()) {
+      float[] frames = evaluator.evaluate(takes.next(), 30);
+      int frameSize = evaluator.getJointCount() * PoseEvaluator.MATRIX_SIZE;
+      System.arraycopy(frames, frames.length / frameSize / 2 * frameSize, world, 0, frameSize);
+    }
+    float[] skin = skinner.getSkinMatrices(world, 0);
+    float[] serial = new float[vertexCount * 3];
+    float[] parallel = new float[vertexCount * 3];
+    skinner.skin(skin, 0, vertexCount, serial);
+    skinner.skin(world, 0, parallel);
+    boolean same = Arrays.equals(serial, parallel);
+    System.out.println(String.format("skinning: '%s', %d vertices, %d joints, %d influences per vertex, rest pose " +
+                                     "error %g, output %s", mesh.getName(), vertexCount, evaluator.getJointCount(),
+                                     skinner.getInfluenceCount(), restError, same ? "identical" : "DIFFERS"));
+    double serialMs = time("one thread", 0, () -> skinner.skin(skin, 0, vertexCount, serial));
+    System.out.println(String.format("    %.1f M vertices/s", vertexCount / serialMs / 1e3));
+    double parallelMs = time("all cores", 0, () -> skinner.skin(world, 0, parallel));
+    System.out.println(String.format("    %.1f M vertices/s", vertexCount / parallelMs / 1e3));
+    System.out.println(String.format("  speedup (all cores vs one thread): %.1fx (%d cores)", serialMs / parallelMs,
+                                     Runtime.getRuntime().availableProcessors()));
+    if (!same) {
+      System.exit(1);
+    }
+  }
+
+  /*
+   * Times Triangulator on every mesh in file against splitting every face into a fan on one thread, which is only
+   * correct for convex faces, and counts the faces that Triangulator splits differently
+   */
+  private static void benchTriangulate (File file) throws Exception {
+    if (file == null) {
+      System.out.println("triangulate needs a .jas file");
+      return;
+    }
+    List<Mesh> meshes = Cheetah3DParser.load(file.toPath()).getMeshes();
+    int faces = 0, triangles = 0, changed = 0;
+    for (Mesh mesh : meshes) {
+      int[] tris = Triangulator.triangulate(mesh);
+      int[] fans = fans(mesh);
+      faces += mesh.getFaceCount();
+      triangles += tris.length / 3;
+      for (int ii = 0, from = 0; ii < mesh.getFaceCount(); ii++) {
+        int to = from + Math.max(0, mesh.faceOffsets[ii + 1] - mesh.faceOffsets[ii] - 2) * 3;
+        changed += Arrays.equals(Arrays.copyOfRange(tris, from, to), Arrays.copyOfRange(fans, from, to)) ? 0 : 1;
+        from = to;
+      }
+    }
+    System.out.println(String.format("triangulate: %d meshes, %d faces, %d triangles, %d faces not split as fans",
+                                     meshes.size(), faces, triangles, changed));
+    int faceCount = faces;
+    double fanMs = time("fans", 0, () -> {
+      for (Mesh mesh : meshes) {
+        sink = fans(mesh);
+      }
+    });
+    System.out.println(String.format("    %.1f M faces/s", faceCount / fanMs / 1e3));
+    double triMs = time("Triangulator", 0, () -> {
+      for (Mesh mesh : meshes) {
+        sink = Triangulator.triangulate(mesh);
+      }
+    });
+    System.out.println(String.format("    %.1f M faces/s (%d cores)", faceCount / triMs / 1e3,
+                                     Runtime.getRuntime().availableProcessors()));
+  }
+
+  private static int[] fans (Mesh mesh) {
+    int[] faceOffsets = mesh.faceOffsets;
+    int count = 0;
+    for (int ii = 0; ii < mesh.getFaceCount(); ii++) {
+      count += Math.max(0, faceOffsets[ii + 1] - faceOffsets[ii] - 2);
+    }
+    int[] out = new int[count * 3];
+    int dst = 0;
+    for (int ii = 0; ii < mesh.getFaceCount(); ii++) {
+      for (int cc = faceOffsets[ii] + 1; cc < faceOffsets[ii + 1] - 1; cc++) {
+        out[dst++] = faceOffsets[ii];
+        out[dst++] = cc;
+        out[dst++] = cc + 1;
+      }
+    }
+    return out;
+  }
+
+  /*
+   * Times VertexWelder on every mesh in file against welding each face point's vertex and unquantized UV coords
+   * with a HashMap of boxed keys and values
+   */
+  private static void benchWeld (File file) throws Exception {
+    if (file == null) {
+      System.out.println("weld needs a .jas file");
+      return;
+    }
+    List<Mesh> meshes = Cheetah3DParser.load(file.toPath()).getMeshes();
+    int points = 0, welded = 0, boxed = 0;
+    for (Mesh mesh : meshes) {
+      points += mesh.faceIndices.length;
+      welded += VertexWelder.weld(mesh).getVertexCount();
+      boxed += boxedWeld(mesh).size();
+    }
+    System.out.println(String.format("weld: %d meshes, %d face points, %d welded vertexes, %d by HashMap",
+                                     meshes.size(), points, welded, boxed));
+    int seam = VertexWelder.weld(seamMesh()).getVertexCount();
+    System.out.println("  UV seam with an outlier UV coord: " + seam + " vertexes, " + (seam == 8 ? "ok" : "WRONG"));
+    int pointCount = points;
+    double boxedMs = time("HashMap<Long,Integer>", 0, () -> {
+      for (Mesh mesh : meshes) {
+        sink = boxedWeld(mesh);
+      }
+    });
+    System.out.println(String.format("    %.1f M points/s", pointCount / boxedMs / 1e3));
+    double weldMs = time("VertexWelder", 0, () -> {
+      for (Mesh mesh : meshes) {
+        sink = VertexWelder.weld(mesh);
+      }
+    });
+    System.out.println(String.format("    %.1f M points/s (%d cores)", pointCount / weldMs / 1e3,
+                                     Runtime.getRuntime().availableProcessors()));
+    if (seam != 8) {
+      System.exit(1);
+    }
+  }
+
+  /*
+   * Two quads sharing an edge along a UV seam, with u = 0.5 on one side and 0.6 on the other, and one far off UV
+   * coord which stretches the UV range, so welding must keep all 8 face points apart
+   */
+  private static Mesh seamMesh () {
+    float[] vertices = {0, 0, 0, 1, 0, 0, 2, 0, 0, 0, 1, 0, 1, 1, 0, 2, 1, 0};
+    float[] uvcoords = {0, 0, 0.5f, 0, 0.5f, 1, 0, 1, 0.6f, 0, 1e5f, 0, 1, 1, 0.6f, 1};
+    int[] faceOffsets = {0, 4, 8};
+    int[] faceIndices = {0, 1, 4, 3, 1, 2, 5, 4};
+    return new Mesh("seam", null, vertices, uvcoords, 0, faceOffsets, faceIndices, null);
+  }
+
+  private static Map<Long,Integer> boxedWeld (Mesh mesh) {
+    Map<Long,Integer> map = new HashMap<>();
+    int[] faceIndices = mesh.faceIndices;
+    float[] uvcoords = mesh.uvcoords;
+    boolean hasUVs = uvcoords.length >= faceIndices.length * 2;
+    int[] indices = new int[faceIndices.length];
+    for (int ii = 0; ii < faceIndices.length; ii++) {
+      // Vertex index in the top bits, mixed with the UV coords' bits, so this is only approximate
+      long key = (long) faceIndices[ii] << 32;
+      if (hasUVs) {
+        key ^= Float.floatToIntBits(uvcoords[ii * 2]) * 31L + Float.floatToIntBits(uvcoords[ii * 2 + 1]);
+      }
+      Integer idx = map.get(key);
+      if (idx == null) {
+        map.put(key, idx = map.size());
+      }
+      indices[ii] = idx;
+    }
+    return map;
+  }
+
+  /*
+   * Times NormalGenerator on every mesh in file, with the default crease angle and with every edge smoothed
+   */
+  private static void benchNormals (File file) throws Exception {
+    if (file == null) {
+      System.out.println("normals needs a .jas file");
+      return;
+    }
+    List<Mesh> meshes = Cheetah3DParser.load(file.toPath()).getMeshes();
+    int points = 0;
+    for (Mesh mesh : meshes) {
+      points += mesh.faceIndices.length;
+    }
+    System.out.println(String.format("normals: %d meshes, %d face points", meshes.size(), points));
+    int pointCount = points;
+    for (float crease : new float[] {NormalGenerator.DEFAULT_CREASE_ANGLE, 180}) {
+      int normals = 0;
+      for (Mesh mesh : meshes) {
+        normals += NormalGenerator.generate(mesh, crease, true).getNormalCount();
+      }
+      double ms = time(String.format("crease %.0f (%d normals)", crease, normals), 0, () -> {
+        for (Mesh mesh : meshes) {
+          sink = NormalGenerator.generate(mesh, crease, true);
+        }
+      });
+      System.out.println(String.format("    %.1f M points/s (%d cores)", pointCount / ms / 1e3,
+                                       Runtime.getRuntime().availableProcessors()));
+    }
+  }
+
+  private static void benchLod (File file) throws Exception {
+    if (file == null) {
+      System.out.println("lod needs a .jas file");
+      return;
+    }
+    List<Mesh> meshes = Cheetah3DParser.load(file.toPath()).getMeshes();
+    int triangles = 0;
+    for (Mesh mesh : meshes) {
+      triangles += mesh.getTriangles().length / 3;
+    }
+    System.out.println(String.format("lod: %d meshes, %d triangles", meshes.size(), triangles));
+    float[] levels = MeshSimplifier.DEFAULT_LEVELS;
+    for (int ii = 0; ii < levels.length; ii++) {
+      int kept = 0;
+      for (Mesh mesh : meshes) {
+        kept += MeshSimplifier.simplify(mesh, new float[] {levels[ii]}).get(0).getFaceCount();
+      }
+      System.out.println(String.format("  level %.2f keeps %d triangles (target %d)", levels[ii], kept,
+                                       Math.round(triangles * levels[ii])));
+    }
+    int triCount = triangles;
+    for (float[] ratios : new float[][] {{levels[0]}, levels}) {
+      double ms = time("simplify " + Arrays.toString(ratios), 0, () -> {
+        for (Mesh mesh : meshes) {
+          sink = MeshSimplifier.simplify(mesh, ratios);
+        }
+      });
+      System.out.println(String.format("    %.2f M triangles/s", triCount / ms / 1e3));
+    }
+  }
+
+  /*
+   * Builds a take with position, rotation and scale channels for each of joints targets, each with keys at fps
+   */
+  static Take syntheticTake (int joints, int keys, float fps) {
+    Random rnd = new Random(1);
+    Take take = new Take("mixamo.com");
+    for (int ii = 0; ii < joints; ii++) {
+      for (int parm = 0; parm < 3; parm++) {
+        for (int axis = 0; axis < 3; axis++) {
+          float[][] cols = new float[6][keys];
+          float val = parm == Take.SCALE ? 1 : rnd.nextFloat();
+          for (int kk = 0; kk < keys; kk++) {
+            float slope = (rnd.nextFloat() - 0.5f) * 0.01f;
+            cols[0][kk] = kk / fps;
+            cols[1][kk] = -1 / (3 * fps);
+            cols[2][kk] = 1 / (3 * fps);
+            cols[3][kk] = -slope;
+            cols[4][kk] = slope;
+            cols[5][kk] = val += (rnd.nextFloat() - 0.5f) * 0.1f;
+          }
+          take.addChannel(new Take.Channel("mixamorig:Joint" + ii, parm, axis, cols));
+        }
+      }
+    }
+    return take;
+  }
+
+  private static boolean sameScene (Scene s1, Scene s2) {
+    if (s1.getMeshes().size() != s2.getMeshes().size() || s1.getMaterials().size() != s2.getMaterials().size()) {
+      return false;
+    }
+    for (int ii = 0; ii < s1.getMeshes().size(); ii++) {
+      Mesh m1 = s1.getMeshes().get(ii);
+      Mesh m2 = s2.getMeshes().get(ii);
+      if (!m1.getVertices().equals(m2.getVertices()) || !m1.getUVCoords().equals(m2.getUVCoords()) ||
+          !m1.getFaceIndices().equals(m2.getFaceIndices()) || !m1.getTakes().keySet().equals(m2.getTakes().keySet())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Scene load (Path path) {
+    try {
+      return Cheetah3DParser.load(path);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private static Scene getScene (Future<Scene> load) {
+    try {
+      return load.get();
+    } catch (InterruptedException | ExecutionException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static void run (String... args) {
+    try {
+      Cheetah3DParser.main(args);
+    } catch (Exception ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /*
+   * As run(), except console output is discarded, as main() prints a summary and closes its output stream when
+   * it isn't writing an OBJ file
+   */
+  private static void runQuiet (String... args) {
+    PrintStream console = System.out;
+    System.setOut(new PrintStream(new OutputStream() {
+      @Override
+      public void write (int b) { }
+    }));
+    try {
+      run(args);
+    } finally {
+      System.setOut(console);
+    }
+  }
+
+  private static float[][] legacyUVs (ByteBuffer buf) {
+    byte[] data = new byte[buf.remaining()];
+    buf.duplicate().get(data);
+    int[] ints = new int[data.length / 4];
+    for (int ii = 0; ii < data.length; ii += 4) {
+      ints[ii >> 2] = data[ii] << 24 | (data[ii + 1] & 0xFF) << 16 | (data[ii + 2] & 0xFF) << 8 | (data[ii + 3] & 0xFF);
+    }
+    float[] uvData = new float[ints.length];
+    for (int ii = 0; ii < ints.length; ii++) {
+      uvData[ii] = Float.intBitsToFloat(ints[ii]);
+    }
+    float[][] uvcoords = new float[uvData.length >> 2][2];
+    for (int ii = 0; ii < uvData.length; ii += 4) {
+      uvcoords[ii >> 2][0] = uvData[ii];
+      uvcoords[ii >> 2][1] = uvData[ii + 1];
+    }
+    return uvcoords;
+  }
+}
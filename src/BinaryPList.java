@@ -0,0 +1,348 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/*
+ *  Lazy reader for Apple's Binary Plist format ("bplist00") which Cheetah 3D uses for .jas files.  Rather than
+ *  reading the whole file onto the heap and building a tree of objects, the file is memory mapped and only the
+ *  trailer and offset table are decoded up front.  Containers are then decoded only when they are accessed:
+ *
+ *    Dictionary  ->  Map<String,Object> (keys are in file order, values decoded on access)
+ *    Array/Set   ->  List<Object> (elements decoded on access)
+ *    Data        ->  ByteBuffer (zero copy, read-only, big endian slice of the mapped file)
+ *    String      ->  String
+ *    Integer     ->  Long
+ *    Real        ->  Double
+ *    Boolean     ->  Boolean
+ *    Date        ->  Date
+ *    UID         ->  Long
+ *
+ *  The returned Maps and Lists are read-only views of the file and can be shared between threads, as all access
+ *  to the underlying buffer uses absolute get() methods.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+class BinaryPList {
+  private static final byte[] MAGIC = "bplist00".getBytes(StandardCharsets.US_ASCII);
+  private static final long   EPOCH = 978307200000L;    // Jan 1, 2001 (Apple's reference date) in Java time
+  private final ByteBuffer    buf;
+  private final int           refSize, topObject;
+  private final int[]         offsets;
+
+  private BinaryPList (ByteBuffer buf) throws IOException {
+    this.buf = buf;
+    int len = buf.limit();
+    if (!isBinary(buf) || len < MAGIC.length + 32) {
+      throw new IOException("Not a binary plist");
+    }
+    // Decode trailer (last 32 bytes of file)
+    int trailer = len - 32;
+    int offsetSize = buf.get(trailer + 6) & 0xFF;
+    refSize = buf.get(trailer + 7) & 0xFF;
+    long numObjects = buf.getLong(trailer + 8);
+    long top = buf.getLong(trailer + 16);
+    long tableOffset = buf.getLong(trailer + 24);
+    if (numObjects < 0 || numObjects > Integer.MAX_VALUE || top < 0 || top >= numObjects ||
+        tableOffset < MAGIC.length || tableOffset + numObjects * offsetSize > trailer) {
+      throw new IOException("Invalid binary plist trailer");
+    }
+    topObject = (int) top;
+    // Decode offset table once
+    offsets = new int[(int) numObjects];
+    int pos = (int) tableOffset;
+    for (int ii = 0; ii < offsets.length; ii++) {
+      long off = readUnsigned(pos, offsetSize);
+      if (off < MAGIC.length || off >= tableOffset) {
+        throw new IOException("Invalid object offset: " + off);
+      }
+      offsets[ii] = (int) off;
+      pos += offsetSize;
+    }
+  }
+
+  /**
+   * Memory maps a binary plist file and returns its root object
+   * @param file binary plist file
+   * @return root object (typically a Map<String,Object>)
+   * @throws IOException if file can't be read, or is not a binary plist
+   */
+  static Object parse (File file) throws IOException {
+    return parse(map(file));
+  }
+
+  /**
+   * Returns the root object of a binary plist held in a ByteBuffer (from position 0 to limit)
+   * @param buf buffer containing the binary plist
+   * @return root object (typically a Map<String,Object>)
+   * @throws IOException if buf does not contain a binary plist
+   */
+  static Object parse (ByteBuffer buf) throws IOException {
+    BinaryPList plist = new BinaryPList(buf.duplicate());
+    return plist.readObject(plist.topObject);
+  }
+
+  static ByteBuffer map (File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File too large to map: " + file);
+      }
+      // Note: mapping remains valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  static boolean isBinary (ByteBuffer buf) {
+    if (buf.limit() < MAGIC.length) {
+      return false;
+    }
+    for (int ii = 0; ii < MAGIC.length; ii++) {
+      if (buf.get(ii) != MAGIC[ii]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long readUnsigned (int pos, int size) {
+    long val = 0;
+    for (int ii = 0; ii < size; ii++) {
+      val = (val << 8) | (buf.get(pos + ii) & 0xFF);
+    }
+    return val;
+  }
+
+  private int readRef (int pos) {
+    return (int) readUnsigned(pos, refSize);
+  }
+
+  private ByteBuffer slice (int pos, int len) {
+    if (pos < 0 || len < 0 || pos + len > buf.limit()) {
+      throw new IllegalStateException("Object extends past end of file");
+    }
+    ByteBuffer dup = buf.duplicate();
+    dup.limit(pos + len);
+    dup.position(pos);
+    return dup.slice().asReadOnlyBuffer();
+  }
+
+  /*
+   * Object headers contain the type in the upper nibble and, for variable length objects, the count in the lower
+   * nibble.  If the count is 0xF, the actual count follows as an Integer object.  Returns position of object's
+   * content and stores its count in cnt[0].
+   */
+  private int readCount (int pos, int[] cnt) {
+    int count = buf.get(pos) & 0x0F;
+    pos++;
+    if (count == 0x0F) {
+      int intSize = 1 << (buf.get(pos) & 0x0F);
+      long val = readUnsigned(pos + 1, intSize);
+      if (val < 0 || val > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Invalid object count: " + val);
+      }
+      count = (int) val;
+      pos += 1 + intSize;
+    }
+    cnt[0] = count;
+    return pos;
+  }
+
+  private Object readObject (int ref) {
+    if (ref < 0 || ref >= offsets.length) {
+      throw new IllegalStateException("Invalid object reference: " + ref);
+    }
+    int pos = offsets[ref];
+    int marker = buf.get(pos) & 0xFF;
+    int[] cnt = new int[1];
+    switch (marker >> 4) {
+    case 0x0:
+      switch (marker) {
+      case 0x08:
+        return Boolean.FALSE;
+      case 0x09:
+        return Boolean.TRUE;
+      default:
+        return null;        // null, or fill byte
+      }
+    case 0x1: {             // Integer (1, 2 and 4 byte values are unsigned, 8 byte values signed)
+      int size = 1 << (marker & 0x0F);
+      return size > 8 ? buf.getLong(pos + 1 + size - 8) : readUnsigned(pos + 1, size);
+    }
+    case 0x2: {             // Real
+      int size = 1 << (marker & 0x0F);
+      return size == 4 ? (double) buf.getFloat(pos + 1) : buf.getDouble(pos + 1);
+    }
+    case 0x3:               // Date
+      return new Date(EPOCH + Math.round(buf.getDouble(pos + 1) * 1000));
+    case 0x4: {             // Data
+      int start = readCount(pos, cnt);
+      return slice(start, cnt[0]);
+    }
+    case 0x5: {             // ASCII String
+      int start = readCount(pos, cnt);
+      return new String(getBytes(start, cnt[0]), StandardCharsets.US_ASCII);
+    }
+    case 0x6: {             // UTF-16 String (count is in chars)
+      int start = readCount(pos, cnt);
+      return new String(getBytes(start, cnt[0] * 2), StandardCharsets.UTF_16BE);
+    }
+    case 0x7: {             // UTF-8 String (bplist01, not expected)
+      int start = readCount(pos, cnt);
+      return new String(getBytes(start, cnt[0]), StandardCharsets.UTF_8);
+    }
+    case 0x8:               // UID
+      return readUnsigned(pos + 1, (marker & 0x0F) + 1);
+    case 0xA:               // Array
+    case 0xB:               // Ordered Set
+    case 0xC: {             // Set
+      int start = readCount(pos, cnt);
+      return new PArray(start, cnt[0]);
+    }
+    case 0xD: {             // Dictionary
+      int start = readCount(pos, cnt);
+      return new PDict(start, cnt[0]);
+    }
+    default:
+      throw new IllegalStateException("Unknown object type: 0x" + Integer.toHexString(marker));
+    }
+  }
+
+  private byte[] getBytes (int pos, int len) {
+    byte[] data = new byte[len];
+    slice(pos, len).get(data);
+    return data;
+  }
+
+  /*
+   * Array whose elements are decoded each time they are accessed
+   */
+  private final class PArray extends AbstractList<Object> implements RandomAccess {
+    private final int refPos, count;
+
+    private PArray (int refPos, int count) {
+      this.refPos = refPos;
+      this.count = count;
+    }
+
+    @Override
+    public Object get (int index) {
+      if (index < 0 || index >= count) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+      }
+      return readObject(readRef(refPos + index * refSize));
+    }
+
+    @Override
+    public int size () {
+      return count;
+    }
+  }
+
+  /*
+   * Dictionary whose keys are decoded on first access and whose values are decoded each time they are accessed
+   */
+  private final class PDict extends AbstractMap<String,Object> {
+    private final int           keyPos, valPos, count;
+    private volatile String[]   keys;
+
+    private PDict (int keyPos, int count) {
+      this.keyPos = keyPos;
+      this.valPos = keyPos + count * refSize;
+      this.count = count;
+    }
+
+    private String[] getKeys () {
+      String[] tmp = keys;
+      if (tmp == null) {
+        tmp = new String[count];
+        for (int ii = 0; ii < count; ii++) {
+          tmp[ii] = String.valueOf(readObject(readRef(keyPos + ii * refSize)));
+        }
+        keys = tmp;
+      }
+      return tmp;
+    }
+
+    private int indexOf (Object key) {
+      String[] tmp = getKeys();
+      for (int ii = 0; ii < tmp.length; ii++) {
+        if (tmp[ii].equals(key)) {
+          return ii;
+        }
+      }
+      return -1;
+    }
+
+    private Object getValue (int index) {
+      return readObject(readRef(valPos + index * refSize));
+    }
+
+    @Override
+    public Object get (Object key) {
+      int idx = indexOf(key);
+      return idx >= 0 ? getValue(idx) : null;
+    }
+
+    @Override
+    public boolean containsKey (Object key) {
+      return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size () {
+      return count;
+    }
+
+    @Override
+    public Set<String> keySet () {
+      // Avoids decoding values just to iterate over keys
+      return new AbstractSet<String>() {
+        @Override
+        public Iterator<String> iterator () {
+          return Arrays.asList(getKeys()).iterator();
+        }
+
+        @Override
+        public int size () {
+          return count;
+        }
+      };
+    }
+
+    @Override
+    public Set<Entry<String,Object>> entrySet () {
+      return new AbstractSet<Entry<String,Object>>() {
+        @Override
+        public Iterator<Entry<String,Object>> iterator () {
+          return new Iterator<Entry<String,Object>>() {
+            private int idx;
+
+            @Override
+            public boolean hasNext () {
+              return idx < count;
+            }
+
+            @Override
+            public Entry<String,Object> next () {
+              if (idx >= count) {
+                throw new NoSuchElementException();
+              }
+              String key = getKeys()[idx];
+              return new SimpleImmutableEntry<>(key, getValue(idx++));
+            }
+          };
+        }
+
+        @Override
+        public int size () {
+          return count;
+        }
+      };
+    }
+  }
+}
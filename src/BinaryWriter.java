@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/*
+ *  The binary counterpart of AsciiWriter, used by the -glb, -ply and -stl exporters.  Values are put, little
+ *  endian, into a direct ByteBuffer which is flushed through a channel each time it fills up, so arrays go from
+ *  the decoded Scene to the file without being formatted, or copied into intermediate objects.  Callers reserve
+ *  space for each record with room() and then put its values with the ByteBuffer's own relative put methods.
+ *  Instances are not thread-safe.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+final class BinaryWriter {
+  private final WritableByteChannel channel;
+  private final ByteBuffer          buf;
+  private long                      written;
+
+  BinaryWriter (WritableByteChannel channel, int bufSize) {
+    this.channel = channel;
+    buf = ByteBuffer.allocateDirect(Math.max(bufSize, 64)).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * @return buffer with room for at least bytes more bytes (which must not be more than the buffer's size)
+   */
+  ByteBuffer room (int bytes) throws IOException {
+    if (buf.remaining() < bytes) {
+      flush();
+    }
+    return buf;
+  }
+
+  /**
+   * Bulk copies len values from vals, starting at from
+   */
+  void putFloats (float[] vals, int from, int len) throws IOException {
+    while (len > 0) {
+      int num = Math.min(len, room(4).remaining() >> 2);
+      FloatBuffer floats = buf.asFloatBuffer();
+      floats.put(vals, from, num);
+      buf.position(buf.position() + num * 4);
+      from += num;
+      len -= num;
+    }
+  }
+
+  /**
+   * Bulk copies len values from vals, starting at from
+   */
+  void putInts (int[] vals, int from, int len) throws IOException {
+    while (len > 0) {
+      int num = Math.min(len, room(4).remaining() >> 2);
+      IntBuffer ints = buf.asIntBuffer();
+      ints.put(vals, from, num);
+      buf.position(buf.position() + num * 4);
+      from += num;
+      len -= num;
+    }
+  }
+
+  /**
+   * Puts the bytes of an ASCII string, such as a file header
+   */
+  void putAscii (String str) throws IOException {
+    byte[] bytes = str.getBytes(StandardCharsets.US_ASCII);
+    for (int ii = 0; ii < bytes.length; ) {
+      int num = Math.min(bytes.length - ii, room(1).remaining());
+      buf.put(bytes, ii, num);
+      ii += num;
+    }
+  }
+
+  /**
+   * @return number of bytes written so far, including any still in the buffer
+   */
+  long size () {
+    return written + buf.position();
+  }
+
+  void flush () throws IOException {
+    buf.flip();
+    written += buf.remaining();
+    while (buf.hasRemaining()) {
+      channel.write(buf);
+    }
+    buf.clear();
+  }
+}
@@ -0,0 +1,228 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+/*
+ *  Summary statistics of a typed Data block, as shown by the -raw -summary dump in place of every element.  For
+ *  each component of the block's elements (such as x, y, z of a vertex) it has the min, max and mean values, the
+ *  number of NaN and denormal values and a histogram of magnitudes, plus a SHA-256 hash of the whole block.  All of
+ *  these come from one pass over the blob, a block of elements at a time: each block is hashed, then scanned one
+ *  component at a time with a fixed stride while it is still in cache.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+final class BlobStats {
+  static final int              EDGE_COUNT = 3;           // elements shown from the start and end of a blob
+  static final String[]         BUCKET_NAMES = {"0", "<0.001", "<0.01", "<0.1", "<1", "<10", "<100", "<1000", ">=1000"};
+  private static final float[]  BUCKET_LIMITS = {1e-3f, 1e-2f, 0.1f, 1, 10, 100, 1000};
+  private static final int      BLOCK_ELEMENTS = 4096;
+
+  /*
+   * Layout of the elements of a typed Data block (see Notes 1, 2, 6 and 8 in Cheetah3DParser.java)
+   */
+  static final class Layout {
+    final String     name;
+    final ByteOrder  order;
+    final int        header;        // bytes before the first element
+    final int        stride;        // bytes per element
+    final String[]   components;    // names of the 4 byte values at the start of each element
+    final boolean[]  isInt;
+
+    Layout (String name, ByteOrder order, int header, int stride, String types, String... components) {
+      this.name = name;
+      this.order = order;
+      this.header = header;
+      this.stride = stride;
+      this.components = components;
+      isInt = new boolean[types.length()];
+      for (int ii = 0; ii < isInt.length; ii++) {
+        isInt[ii] = types.charAt(ii) == 'i';
+      }
+    }
+
+    /**
+     * @return number of whole elements in data
+     */
+    int getCount (ByteBuffer data) {
+      return Math.max(0, data.remaining() - header) / stride;
+    }
+
+    /**
+     * Returns component cc of an element as an Integer, or a Float
+     * @param data Data block, which must already be set to this layout's byte order
+     */
+    Number getValue (ByteBuffer data, int element, int cc) {
+      int pos = data.position() + header + element * stride + cc * 4;
+      return isInt[cc] ? (Number) data.getInt(pos) : (Number) data.getFloat(pos);
+    }
+  }
+
+  static final Layout VERTEX = new Layout("vertex", ByteOrder.BIG_ENDIAN, 0, 16, "ffff", "x", "y", "z", "sel");
+  static final Layout UVCOORDS = new Layout("uvcoords", ByteOrder.BIG_ENDIAN, 0, 16, "ffff", "u0", "v0", "u1", "v1");
+  static final Layout CDATA = new Layout("cdata", ByteOrder.BIG_ENDIAN, 0, 8, "if", "vertex", "weight");
+  static final Layout POLYGONS = new Layout("polygons", ByteOrder.BIG_ENDIAN, 0, 4, "i", "index");
+  static final Layout KEYS = new Layout("keys", ByteOrder.BIG_ENDIAN, DataDecoder.KEYS_HEADER,
+                                        DataDecoder.KEY_SIZE, "ffffff", "f0", "f1", "f2", "f3", "f4",
+                                        "value");
+  static final Layout POINT_ARRAY = new Layout("pointArray", ByteOrder.LITTLE_ENDIAN,
+                                               DataDecoder.POINT_ARRAY_HEADER, 12, "fff", "x", "y", "z");
+  static final Layout MATRIX = new Layout("matrix", ByteOrder.BIG_ENDIAN, 0, 4, "f", "value");
+
+  /**
+   * Returns the layout of the Data value stored under key in dictionary parent, or null if it's not a typed block
+   */
+  static Layout getLayout (String key, Map<String,Object> parent) {
+    switch (key) {
+    case "vertex":
+      return VERTEX;
+    case "uvcoords":
+      return UVCOORDS;
+    case "cdata":
+      return CDATA;
+    case "polygons":
+      return POLYGONS;
+    case "keys":
+      return KEYS;
+    case "transformMatrix":
+    case "transformAssociateModelMatrix":
+    case "transformLinkMatrix":
+      return MATRIX;
+    }
+    return parent != null && "pointArray".equals(String.valueOf(parent.get("parameter"))) ? POINT_ARRAY : null;
+  }
+
+  final Layout          layout;
+  final int             count;          // number of whole elements
+  final int             trailing;       // bytes following the last whole element
+  final double[]        min, max, sum;
+  final long[]          nans, denormals;
+  final long[][]        histogram;      // counts for each of BUCKET_NAMES, for each component
+  final String          hash;
+  private final ByteBuffer  data;
+  private final int         base;
+
+  BlobStats (ByteBuffer blob, Layout layout) {
+    this.layout = layout;
+    data = blob.duplicate().order(layout.order);
+    base = data.position() + layout.header;
+    int size = Math.max(0, data.remaining() - layout.header);
+    count = size / layout.stride;
+    trailing = size - count * layout.stride;
+    int comps = layout.components.length;
+    min = new double[comps];
+    max = new double[comps];
+    sum = new double[comps];
+    nans = new long[comps];
+    denormals = new long[comps];
+    histogram = new long[comps][BUCKET_NAMES.length];
+    Arrays.fill(min, Double.POSITIVE_INFINITY);
+    Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+    ByteBuffer block = data.duplicate();
+    int pos = data.position();
+    for (int start = 0; start < count; start += BLOCK_ELEMENTS) {
+      int end = Math.min(count, start + BLOCK_ELEMENTS);
+      int blockEnd = base + end * layout.stride;
+      // Hash everything up to the end of this block (including any header), then scan the block
+      block.limit(blockEnd);
+      block.position(pos);
+      digest.update(block);
+      pos = blockEnd;
+      for (int cc = 0; cc < comps; cc++) {
+        int off = base + start * layout.stride + cc * 4;
+        if (layout.isInt[cc]) {
+          scanInts(cc, off, end - start);
+        } else {
+          scanFloats(cc, off, end - start);
+        }
+      }
+    }
+    block.limit(data.limit());
+    block.position(pos);
+    digest.update(block);
+    StringBuilder buf = new StringBuilder();
+    for (byte val : digest.digest()) {
+      buf.append(String.format("%02x", val));
+    }
+    hash = buf.toString();
+  }
+
+  private void scanFloats (int cc, int pos, int num) {
+    int stride = layout.stride;
+    double lo = min[cc], hi = max[cc], total = sum[cc];
+    long nan = 0, denormal = 0;
+    long[] hist = histogram[cc];
+    for (int ii = 0; ii < num; ii++, pos += stride) {
+      float val = data.getFloat(pos);
+      if (val != val) {
+        nan++;
+        continue;
+      }
+      lo = Math.min(lo, val);
+      hi = Math.max(hi, val);
+      total += val;
+      float mag = Math.abs(val);
+      if (mag != 0 && mag < Float.MIN_NORMAL) {
+        denormal++;
+      }
+      hist[getBucket(mag)]++;
+    }
+    min[cc] = lo;
+    max[cc] = hi;
+    sum[cc] = total;
+    nans[cc] += nan;
+    denormals[cc] += denormal;
+  }
+
+  private void scanInts (int cc, int pos, int num) {
+    int stride = layout.stride;
+    double lo = min[cc], hi = max[cc], total = sum[cc];
+    long[] hist = histogram[cc];
+    for (int ii = 0; ii < num; ii++, pos += stride) {
+      int val = data.getInt(pos);
+      lo = Math.min(lo, val);
+      hi = Math.max(hi, val);
+      total += val;
+      hist[getBucket(Math.abs((float) val))]++;
+    }
+    min[cc] = lo;
+    max[cc] = hi;
+    sum[cc] = total;
+  }
+
+  private static int getBucket (float mag) {
+    if (mag == 0) {
+      return 0;
+    }
+    int bb = 1;
+    while (bb <= BUCKET_LIMITS.length && mag >= BUCKET_LIMITS[bb - 1]) {
+      bb++;
+    }
+    return bb;
+  }
+
+  /**
+   * @return mean of component cc, excluding NaN values, or NaN if there are none
+   */
+  double getMean (int cc) {
+    long num = count - nans[cc];
+    return num > 0 ? sum[cc] / num : Double.NaN;
+  }
+
+  float getFloat (int element, int cc) {
+    return data.getFloat(base + element * layout.stride + cc * 4);
+  }
+
+  int getInt (int element, int cc) {
+    return data.getInt(base + element * layout.stride + cc * 4);
+  }
+}
@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+
+/*
+ *  Writes a take of a Skeleton as a BioVision Hierarchy (.bvh) file, as used by the -bvh switch.  The HIERARCHY
+ *  section lists the joints in the tree order of PoseEvaluator, with each joint's rest translate as its OFFSET.
+ *  The root joint, and any joint whose position is animated in the take, has position and rotation channels and
+ *  the others only have rotation channels.  Rotations are written in the Yrotation Xrotation Zrotation order used
+ *  by PoseEvaluator, and scale, which BVH has no channels for, is not written.
+ *
+ *  The MOTION section has one line per frame, sampled at a fixed frame rate by a single TakeSampler into one
+ *  reused pose array and formatted by an AsciiWriter, so no objects are allocated per frame.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+final class BvhWriter {
+  static final float  DEFAULT_FPS = 30;
+
+  private BvhWriter () { }
+
+  static void write (WritableByteChannel channel, PoseEvaluator evaluator, Take take, float fps) throws IOException {
+    List<Skeleton.Joint> joints = evaluator.getJoints();
+    int[] parents = evaluator.getParents();
+    // Joints which need position channels
+    boolean[] moves = new boolean[joints.size()];
+    if (moves.length > 0) {
+      moves[0] = true;
+    }
+    Map<String,Integer> index = new HashMap<>();
+    for (int ii = 0; ii < joints.size(); ii++) {
+      index.putIfAbsent(joints.get(ii).jointName, ii);
+    }
+    for (Take.Channel curve : take.getChannels()) {
+      Integer idx = index.get(curve.target);
+      if (idx != null && curve.parameter == Take.POSITION) {
+        moves[idx] = true;
+      }
+    }
+    AsciiWriter out = new AsciiWriter(channel, 1 << 16);
+    out.append("HIERARCHY").newLine();
+    TakeSampler sampler = evaluator.getSampler(take);
+    float[] pose = new float[joints.size() * TakeSampler.SLOT_SIZE];
+    if (!joints.isEmpty()) {
+      writeJoint(out, joints, parents, moves, 0, 0);
+    }
+    int frames = sampler.getFrameCount(fps);
+    out.append("MOTION").newLine();
+    out.append("Frames: ").append(frames).newLine();
+    appendValue(out.append("Frame Time:"), 1 / fps).newLine();
+    for (int ff = 0; ff < frames; ff++) {
+      sampler.sample(sampler.getStartTime() + ff / fps, pose, 0);
+      for (int ii = 0; ii < moves.length; ii++) {
+        int base = ii * TakeSampler.SLOT_SIZE;
+        if (moves[ii]) {
+          appendValues(out, pose[base], pose[base + 1], pose[base + 2]);
+        }
+        appendValues(out, pose[base + 4], pose[base + 3], pose[base + 5]);
+      }
+      out.newLine();
+    }
+    out.flush();
+  }
+
+  /*
+   * Writes joint jj and, recursively, its children (which always follow it in PoseEvaluator order)
+   */
+  private static void writeJoint (AsciiWriter out, List<Skeleton.Joint> joints, int[] parents, boolean[] moves,
+                                  int jj, int depth) throws IOException {
+    Skeleton.Joint joint = joints.get(jj);
+    String name = joint.jointName != null ? joint.jointName : "joint" + joint.jointId;
+    indent(out, depth).append(depth == 0 ? "ROOT " : "JOINT ").append(name).newLine();
+    indent(out, depth).append('{').newLine();
+    float[] offset = joint.translate != null && joint.translate.length >= 3 ? joint.translate : new float[3];
+    appendValues(indent(out, depth + 1).append("OFFSET"), offset[0], offset[1], offset[2]).newLine();
+    indent(out, depth + 1).append(moves[jj] ? "CHANNELS 6 Xposition Yposition Zposition " : "CHANNELS 3 ")
+                          .append("Yrotation Xrotation Zrotation").newLine();
+    boolean leaf = true;
+    for (int ii = jj + 1; ii < parents.length; ii++) {
+      if (parents[ii] == jj) {
+        writeJoint(out, joints, parents, moves, ii, depth + 1);
+        leaf = false;
+      }
+    }
+    if (leaf) {
+      indent(out, depth + 1).append("End Site").newLine();
+      indent(out, depth + 1).append('{').newLine();
+      indent(out, depth + 2).append("OFFSET 0.000000 0.000000 0.000000").newLine();
+      indent(out, depth + 1).append('}').newLine();
+    }
+    indent(out, depth).append('}').newLine();
+  }
+
+  /*
+   * Appends val after a space.  AsciiWriter pads values which are not negative with a space, so only negative
+   * values, and NaN, need one added.
+   */
+  private static AsciiWriter appendValue (AsciiWriter out, float val) throws IOException {
+    return (val < 0 || Float.isNaN(val) ? out.append(' ') : out).appendFloat(val);
+  }
+
+  private static AsciiWriter appendValues (AsciiWriter out, float xx, float yy, float zz) throws IOException {
+    return appendValue(appendValue(appendValue(out, xx), yy), zz);
+  }
+
+  private static AsciiWriter indent (AsciiWriter out, int depth) throws IOException {
+    for (int ii = 0; ii < depth; ii++) {
+      out.append('\t');
+    }
+    return out;
+  }
+}
@@ -1,19 +1,30 @@
 import com.dd.plist.*;
 import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.*;
-import java.text.DecimalFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /*
  *  Experimental code to read Cheetah 3D's .jas files which are written in the Apple Binary Plist format and
@@ -131,8 +142,9 @@ import java.util.*;
  * Note 8: keyframe data is stored as Data in a Dictionary item with the key "keys".  The first 4 bytes form an
  *  int value that inducates the number of keyframes in the block.  The next 4 bytes are an int that always seems to
  *  be set to a value of 27.  After this, each keyframe is encoded as a block of 27 bytes.  The first 24 bytes form
- *  6, 32 bit float values with the 6th (last) value being the keyframe parameter.  The purpose of the other values
- *  in this block is currently unknown.  For example:
+ *  6, 32 bit float values with the 6th (last) value being the keyframe parameter.  The other values appear to be
+ *  the key's time, in seconds, followed by the time offsets of its in and out tangent handles, then the value
+ *  offsets of its in and out tangent handles.  For example:
  *
  *    index[0]: Dictionary (3 items)
  *      keys: Data (872 bytes)
@@ -155,268 +167,220 @@ import java.util.*;
  *  the Joint name such as "mixamorig:Hips".  The "parameter" value can be "position", "rotation", or "scale".
  *
  * Note 10: Vertex normals do not appear to be saved in the .jas files I used as test examples.  However, it's possible
- *  there may be circumstances where vertex normals are stored.
+ *  there may be circumstances where vertex normals are stored.  The -normals switch computes smooth normals for the
+ *  OBJ file instead (see NormalGenerator).
  */
 
 public class Cheetah3DParser {
-  private static Map<String, Integer>  parmOrder = new HashMap<>();
-  private static DecimalFormat    df = new DecimalFormat("0.000000");
+  private static final Map<String, Integer>  parmOrder;
   private boolean                 consoleOut;
   private boolean                 suppressId;
   private boolean                 showHexData;
   private boolean                 showRaw;
+  private boolean                 showSummary;
   private boolean                 showMaterials = false;
   private boolean                 showPolys     = false;
   private boolean                 showVertices  = false;
   private boolean                 showUVs       = false;
   private boolean                 showWeights   = false;
   private boolean                 exportObj = false;
+  private float                   bvhFps = 0;         // frame rate for -bvh export, or 0 if not exporting
+  private float                   glbFps = 0;         // frame rate for -glb export, or 0 if not exporting
+  private boolean                 exportPly = false;
+  private boolean                 exportStl = false;
+  private boolean                 weldUVs = false;
+  private float                   creaseAngle = -1;   // crease angle for -normals, or -1 if not writing normals
+  private float[]                 lodRatios;          // fraction of triangles kept in each -lod level, or null
+  private boolean                 parallelExport = false;
+  private boolean                 batch = false;
   private boolean                 vFlip = false;
   private boolean                 showJoints         = false;
   private boolean                 showJointHierarchy = false;
   private boolean                 showKeyframes      = false;
+  private boolean                 watch = false;
+  private Path                    cacheDir;
+  private ObjCache                objCache;
+  private long                    cacheBytes = SceneCache.DEFAULT_MAX_BYTES;
+  private List<PListQuery>        queries = new ArrayList<>();
+  private boolean                 jsonOut = false;
+  private boolean                 queryMissed = false;
   private PrintStream             out = System.out;
-  private Map<Integer, Material>  idToMaterial = new LinkedHashMap<>();
-  private List<Polygon>           polygons = new ArrayList<>();
-  private List<Material>          materials = new ArrayList<>();
-
-  static {
-    parmOrder.put("position", 0);
-    parmOrder.put("rotation", 1);
-    parmOrder.put("scale", 2);
-  }
-
-  private class Material {
-    private String        materialName;
-    private float[]       diffColor, specColor, reflColor, transColor, emisColor;
-    private float         specSize, reflBlur, transBlur;
-    private int           index, reflSamples, transSamples, bumpType;
-    private boolean       reflFresnel, transUseAlpha;
-    private String[]      bumpTypes = new String[] {"bumpHeight", "bumpNormalYPlus", "bumpNormalYMinus"};
-    private String[]      filterTypes = new String[] {"Off", "Bilinear", "Trilinear", "Anisotropic"};
-    private String[]      sampleTypes = new String[] {"UV1", "UV2"};
-    private List<Texture>       textures = new ArrayList<>();
-    private Map<String,Texture>  idToTexture = new HashMap<>();
-
-    Material (int index, String name, int id) {
-      this.index = index;
-      this.materialName = name;
-      idToMaterial.put(id, this);
-    }
-
-    class Texture {
-      private String    type, file;
-      private float[]   background, mixcolor;
-      private float[]   position, scale;
-      private float     intensity, mix;
-      private int       filtertype, sample;
-      private boolean   tileU, tileV;
-
-      public Texture (String type, String conId) {
-        this.type = type;
-        idToTexture.put(conId, this);
-      }
-
-      private String getType () {
-        if ("bump".equals(type)) {
-          return bumpTypes[bumpType];
-        }
-        return type;
-      }
-    }
-
-    private void addTexture (String type, String conId) {
-      textures.add(new Texture(type, conId));
-    }
-
-    private Texture getTexture (String id) {
-      return idToTexture.get(id);
+  // DocumentBuilder and Transformer are not thread-safe, but are costly to create, so each thread reuses its own
+  private static final ThreadLocal<DocumentBuilder> docBuilder = ThreadLocal.withInitial(() -> {
+    try {
+      return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    } catch (ParserConfigurationException ex) {
+      throw new IllegalStateException(ex);
     }
-
-    private String getName () {
-      return materialName;
+  });
+  private static final ThreadLocal<Transformer> xmlPrinter = ThreadLocal.withInitial(() -> {
+    try {
+      Transformer tform = TransformerFactory.newInstance().newTransformer();
+      tform.setOutputProperty(OutputKeys.INDENT, "yes");
+      tform.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+      return tform;
+    } catch (TransformerConfigurationException ex) {
+      throw new IllegalStateException(ex);
     }
+  });
 
-    public void print (PrintStream out, String indent) {
-      out.println(indent + pad("Diffuse:", 16) + fmtARGB(diffColor));
-      out.println(indent + pad("Specular:", 16) + fmtARGB(specColor));
-      out.println(indent + pad("Specular Size:", 16) + specSize);
-      out.println(indent + pad("Reflection:", 16) + fmtARGB(reflColor));
-      out.println(indent + pad("Ref. Blur:", 16) + fmtFloat(reflBlur));
-      out.println(indent + pad("Ref. Samples:", 16) + reflSamples);
-      out.println(indent + pad("Fresnel:", 16) + reflFresnel);
-      out.println(indent + pad("Transparency:", 16) + fmtARGB(transColor));
-      out.println(indent + pad("Trans. Blur:", 16) + fmtFloat(transBlur));
-      out.println(indent + pad("Trans. Samples:", 16) + transSamples);
-      out.println(indent + pad("Use Alpha:", 16) + transUseAlpha);
-      out.println(indent + pad("Emissive:", 16) + fmtARGB(emisColor));
-      out.println(indent + pad("Bump Type:", 16) + bumpTypes[bumpType]);
-      for (Texture texture : textures) {
-        out.println(indent + pad("Texture Type:", 16) + texture.getType());
-        out.println(indent + pad("Texture File:", 16) + "'" + texture.file + "'");
-        out.println(indent + "  " + pad("mixcolor:", 14) + fmtARGB(texture.mixcolor));
-        out.println(indent + "  " + pad("mix:", 14) + fmtFloat(texture.mix));
-        out.println(indent + "  " + pad("background:", 14) + fmtARGB(texture.background));
-        out.println(indent + "  " + pad("intensity:", 14) + fmtFloat(texture.intensity));
-        out.println(indent + "  " + pad("sample:", 14) + sampleTypes[texture.sample]);
-        out.println(indent + "  " + pad("position:", 14) + fmtFloat(texture.position[0]) + " " + fmtFloat(texture.position[1]));
-        out.println(indent + "  " + pad("scale:", 14) + fmtFloat(texture.scale[0]) + " " + fmtFloat(texture.scale[1]));
-        out.println(indent + "  " + pad("tileU:", 14) + texture.tileU);
-        out.println(indent + "  " + pad("tileV:", 14) + texture.tileV);
-        out.println(indent + "  " + pad("filtertype:", 14) + filterTypes[texture.filtertype]);
-      }
-    }
+  static {
+    Map<String, Integer> order = new HashMap<>();
+    order.put("position", 0);
+    order.put("rotation", 1);
+    order.put("scale", 2);
+    parmOrder = Collections.unmodifiableMap(order);
   }
 
-  private static class Take {
-    private String                  takeName;
-    private Map<String,Keyframe[]>  keyframes = new LinkedHashMap<>();
-
-    Take (String takeName) {
-      this.takeName = takeName;
-    }
-
-    private void addKeyframes (String jointName, Keyframe[] keyframes) {
-      this.keyframes.put(jointName, keyframes);
-    }
+  /**
+   * Reads a .jas file into an immutable Scene.  Each call decodes into its own objects, so this can be called
+   * from many threads at once.
+   * @param file Cheetah 3D .jas file
+   * @return Scene
+   * @throws IOException if file can't be read, or is not a plist
+   */
+  public static Scene load (Path file) throws IOException {
+    return load(BinaryPList.map(file.toFile()));
   }
 
-  private static class Keyframe {
-    private float[] translate, rotation, scale;
-
-    Keyframe (float[] translate, float[] rotation, float[] scale) {
-      this.translate = translate;
-      this.rotation = rotation;
-      this.scale = scale;
+  /**
+   * Reads the contents of a .jas file (from data's position to its limit) into an immutable Scene.  The Scene does
+   * not reference data, so data can be reused once this returns.
+   * @param data contents of a Cheetah 3D .jas file
+   * @return Scene
+   * @throws IOException if data is not a plist
+   */
+  public static Scene load (ByteBuffer data) throws IOException {
+    Map<String,Object> rootDict = asDict(parsePList(data.slice()));
+    try {
+      return new Loader().load(rootDict);
+    } catch (IOException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new IOException("Unable to decode scene: " + ex, ex);
     }
   }
 
-  private static class Joint {
-    private int         jointId;
-    private float[]     transformMatrix, transformLinkMatrix, transformAssociateModelMatrix;
-    private float[]     bindPoseT, bindPoseR, bindPoseS;
-    private String      jointName;
-    private float[]     translate, rotation, scale;
-    private Joint[]     children = new Joint[0];
-
-    Joint (int jointId) {
-      this.jointId = jointId;
-    }
-
-    void print (PrintStream out, String indent) {
-      out.println(indent + jointName);
-      out.println(indent + "  translate: " + fmtCoord(translate));
-      out.println(indent + "  rotation:  " + fmtCoord(rotation));
-      out.println(indent + "  scale:     " + fmtCoord(scale));
-      out.println(indent + "  bindPoseT: " + fmtCoord(bindPoseT));
-      out.println(indent + "  bindPoseR: " + fmtCoord(bindPoseR));
-      out.println(indent + "  bindPoseS: " + fmtCoord(bindPoseS));
-      out.println(indent + "  transformMatrix:");
-      printMatrix(out, indent + "   ", transformMatrix);
-      out.println(indent + "  transformLinkMatrix:");
-      printMatrix(out, indent + "   ", transformLinkMatrix);
-      out.println(indent + "  transformAssociateModelMatrix:");
-      printMatrix(out, indent + "   ", transformAssociateModelMatrix);
-    }
-
-    private void printMatrix (PrintStream out, String indent, float[] mat) {
-      for (int ii = 0; ii < mat.length; ii += 4) {
-        float c0 = mat[ii];
-        float c1 = mat[ii + 1];
-        float c2 = mat[ii + 2];
-        float c3 = mat[ii + 3];
-        out.println(indent + fmtFloat(c0) + " " + fmtFloat(c1) + " " + fmtFloat(c2) + " " + fmtFloat(c3));
-      }
-    }
-
-    void sethildren (Joint[] children) {
-      this.children = children;
-    }
-
-    void setBindPose (float[] bindPoseT, float[] bindPoseR, float[] bindPoseS) {
-      this.bindPoseT = bindPoseT;
-      this.bindPoseR = bindPoseR;
-      this.bindPoseS = bindPoseS;
-    }
-
-    private float[] flipMatrix (float[] mat) {
-      if (mat.length != 16) {
-        throw new IllegalStateException("Matrix not 4x4");
-      }
-      float[] out = new float[mat.length];
-      out[0] = mat[0];
-      out[4] = mat[1];
-      out[8] = mat[2];
-      out[12] = mat[3];
-
-      out[1] = mat[4];
-      out[5] = mat[5];
-      out[9] = mat[6];
-      out[13] = mat[7];
-
-      out[2] = mat[8];
-      out[6] = mat[9];
-      out[10] = mat[10];
-      out[14] = mat[11];
-
-      out[3] = mat[12];
-      out[7] = mat[13];
-      out[11] = mat[14];
-      out[15] = mat[15];
-      return out;
-    }
-
-    void setMatrices (float[] transformMatrix, float[] transformAssociateModelMatrix, float[] transformLinkMatrix) {
-      this.transformMatrix = flipMatrix(transformMatrix);
-      this.transformAssociateModelMatrix = flipMatrix(transformAssociateModelMatrix);
-      this.transformLinkMatrix = flipMatrix(transformLinkMatrix);
-    }
-
-    void setInfo (String jointName, float[] translate, float[] rotation, float[] scale) {
-      this.jointName = jointName;
-      this.translate = translate;
-      this.rotation = rotation;
-      this.scale = scale;
-    }
-  }
-
-  private class Polygon {
-    private String      polygonName;
-    private Material    material;
-    private float[][]   vertices, uvcoords;
-    private int[][]     polyFaces;
-    private Joint[]     joints;
-    private Joint       rootJoint;
-    private int         uvSet, polyPoints, weightVals;
-    private Weight[][]  weights;
-    private Map<Integer,Integer>  indexToId = new HashMap<>();
-    private Map<Integer,Joint>    idToJoint = new LinkedHashMap<>();
-    private Map<String,Take>      takes = new LinkedHashMap<>();
-
-    private class Weight {
-      private int   index;
-      private float weight;
-
-      Weight (int index, float weight) {
-        this.index = index;
-        this.weight = weight;
+  /*
+   * Per-call state used to build a Scene
+   */
+  private static final class Loader {
+    private final Map<Integer, Material>  idToMaterial = new LinkedHashMap<>();
+    private final List<Mesh>              meshes = new ArrayList<>();
+    private final List<Scene.Folder>      folders = new ArrayList<>();
+
+    private Scene load (Map<String,Object> rootDict) throws Exception {
+      // Process Materials
+      List<Material> materials = getMaterials(rootDict);
+      // Process Objects
+      processObjects(getArray(rootDict, "Objects"), null, 0);
+      // List available animation takes
+      List<String> takeNames = new ArrayList<>();
+      String currentTake = null;
+      Map<String,Object> takesDict = asDict(rootDict.get("Takes"));
+      if (takesDict != null) {
+        for (Object takeObj : getArray(takesDict, "takes")) {
+          takeNames.add(String.valueOf(asDict(takeObj).get("name")));
+        }
+        if (takesDict.containsKey("currentTake")) {
+          currentTake = getString(takesDict, "currentTake");
+        }
       }
+      return new Scene(materials, meshes, folders, takeNames, currentTake);
     }
 
-    private Take getTake (String takeName) {
-      Take take = takes.get(takeName);
-      if (take == null) {
-        takes.put(takeName, take = new Take(takeName));
+    private List<Material> getMaterials (Map<String,Object> rootDict) throws Exception {
+      List<Material> materialList = new ArrayList<>();
+      List<Object> materialsArray = getArray(rootDict, "Materials3");
+      int idx = 0;
+      for (Object matObj : materialsArray) {
+        Map<String,Object> matDict = asDict(matObj);
+        int id = getInt(matDict, "ID");
+        Material material = new Material(idx, getString(matDict, "name"), id);
+        idToMaterial.put(id, material);
+        materialList.add(material);
+        List<Object> nodes = getArray(matDict, "nodes");
+        for (int jj = 0; jj < nodes.size(); jj++) {
+          Map<String,Object> nodeDict = asDict(nodes.get(jj));
+          // Parse "xmlDef" section to figure out which textures are in use by associating conID values
+          Map<String,Object> baseDict = asDict(nodeDict.get("baseData"));
+          XmlDef xmlDef = XmlDef.get(getString(baseDict, "xmlDef"));
+          if (jj == 0) {
+            material.diffColor = getFloatArray(nodeDict, "diffColor");
+            material.specColor = getFloatArray(nodeDict, "specColor");
+            material.specSize = getFloat(nodeDict, "specSize");
+            material.reflColor = getFloatArray(nodeDict, "reflColor");
+            material.reflBlur = getFloat(nodeDict, "reflBlur");
+            material.reflSamples = getInt(nodeDict, "reflSamples");
+            material.reflFresnel = getBoolean(nodeDict, "reflFresnel");
+            material.transColor = getFloatArray(nodeDict, "transColor");
+            material.transBlur = getFloat(nodeDict, "transBlur");
+            material.transSamples = getInt(nodeDict, "transSamples");
+            material.transUseAlpha = getBoolean(nodeDict, "transUseAlpha");
+            material.emisColor = getFloatArray(nodeDict, "emisColor");
+            material.bumpType = getInt(nodeDict, "bumpType");
+            for (String[] param : xmlDef.getParams()) {
+              material.addTexture(param[0], param[1]);
+            }
+          } else {
+            String nodeId = xmlDef.getImageId();
+            if (nodeId != null) {
+              Material.Texture texture = material.getTexture(nodeId);
+              if (nodeDict.containsKey("tracks2")) {
+                List<Object> tracks2 = getArray(nodeDict, "tracks2");
+                for (Object item : tracks2) {
+                  Map<String,Object> itemDict = asDict(item);
+                  String parmName = getString(itemDict, "parameter");
+                  switch (parmName) {
+                  case "background":
+                    texture.background = getFloatArray(nodeDict, "background");
+                    break;
+                  case "mixcolor":
+                    texture.mixcolor = getFloatArray(nodeDict, "mixcolor");
+                    break;
+                  case "intensity":
+                    texture.intensity = getFloat(nodeDict, "intensity");
+                    break;
+                  case "mix":
+                    texture.mix = getFloat(nodeDict, "mix");
+                    break;
+                  case "filtertype":
+                    texture.filtertype = getInt(nodeDict, "filtertype");
+                    break;
+                  case "sample":
+                    texture.sample = getInt(nodeDict, "sample");
+                    break;
+                  case "tileU":
+                    texture.tileU = getBoolean(nodeDict, "tileU");
+                    break;
+                  case "tileV":
+                    texture.tileV = getBoolean(nodeDict, "tileV");
+                    break;
+                  case "position":
+                    texture.position = getFloatArray(nodeDict, "position");
+                    break;
+                  case "scale":
+                    texture.scale = getFloatArray(nodeDict, "scale");
+                    break;
+                  case "texture":
+                    texture.file = getString(nodeDict, "texture");
+                    break;
+                  }
+                }
+              }
+            }
+          }
+        }
       }
-      return take;
+      return materialList;
     }
 
-    Polygon (String name, NSDictionary objDict) {
-      this.polygonName = name;
+    private Mesh createMesh (String name, Map<String,Object> objDict) {
+      Material material = null;
       // Process NGON Tags for Material definition, if any
-      NSObject[] tags = ((NSArray) objDict.get("tags")).getArray();
-      for (NSObject tag : tags) {
-        NSDictionary tagDict = (NSDictionary) tag;
+      List<Object> tags = getArray(objDict, "tags");
+      for (Object tag : tags) {
+        Map<String,Object> tagDict = asDict(tag);
         String tagType = getString(tagDict, "type");
         switch (tagType) {
         case "SHADERTAG":
@@ -465,527 +429,783 @@ public class Cheetah3DParser {
           break;
         }
       }
-      // Get vertices
+      // Get vertices (keep x, y, z of each 4 float record)
       int vertexCount = getInt(objDict, "vertexcount");
-      vertices = new float[vertexCount][3];
-      float[] vertex = getDataFloats(objDict, "vertex");
-      for (int jj = 0; jj < vertex.length; jj += 4) {
-        vertices[jj >> 2][0] = vertex[jj];
-        vertices[jj >> 2][1] = vertex[jj + 1];
-        vertices[jj >> 2][2] = vertex[jj + 2];
-      }
-      // Get polygons
+      float[] vertices = DataDecoder.getFloats(getData(objDict, "vertex"), 0, 3, 4);
+      if (vertices.length != vertexCount * 3) {
+        vertices = Arrays.copyOf(vertices, vertexCount * 3);
+      }
+      // Get polygons (negative value starts a new face, see Note 3)
       int polyCount = getInt(objDict, "polygoncount");
-      polyFaces = new int[polyCount][];
-      int[] faceVals = getDataInts(objDict, "polygons");
-      int[] face = new int[0];
-      int idx1 = 0, idx2 = 0;
-      for (int fVal : faceVals) {
+      IntBuffer faceVals = DataDecoder.intView(getData(objDict, "polygons"), ByteOrder.BIG_ENDIAN);
+      int[] faceOffsets = new int[polyCount + 1];
+      int[] faceIndices = new int[Math.max(0, faceVals.limit() - polyCount)];
+      int face = 0, point = 0;
+      for (int ii = 0; ii < faceVals.limit(); ii++) {
+        int fVal = faceVals.get(ii);
         if (fVal < 0) {
-          face = polyFaces[idx1++] = new int[-fVal];
-          idx2 = 0;
+          if (face >= polyCount) {
+            throw new IllegalStateException("More than " + polyCount + " faces in polygons data");
+          }
+          faceOffsets[face++] = point;
         } else {
-          face[idx2++] = fVal;
-          polyPoints++;
+          faceIndices[point++] = fVal;
         }
       }
-      // Get UV Coords selected by "activeuvset"
-      float[] uvData = getDataFloats(objDict, "uvcoords");
-      uvcoords = new float[uvData.length >> 2][2];
-      if (uvData.length > 0) {
+      for (; face <= polyCount; face++) {
+        faceOffsets[face] = point;
+      }
+      // Get UV Coords selected by "activeuvset" (keep u, v pair from each 4 float record)
+      ByteBuffer uvData = getData(objDict, "uvcoords");
+      int uvSet = 0;
+      float[] uvcoords;
+      if (uvData.remaining() > 0) {
         uvSet = getInt(objDict, "activeuvset");
-        for (int ii = 0; ii < uvData.length; ii += 4) {
-          int idx = ii + uvSet * 2;
-          uvcoords[ii >> 2][0] = uvData[idx];             // U
-          if (vFlip) {
-            uvcoords[ii >> 2][1] = 1 - uvData[idx + 1];   // V (inverted)
-          } else {
-            uvcoords[ii >> 2][1] = uvData[idx + 1];       // V (not inverted)
-          }
-        }
+        uvcoords = DataDecoder.getFloats(uvData, uvSet * 2, 2, 4);
+      } else {
+        uvcoords = new float[0];
       }
       // Get Joint to Mesh Weight values
-      for (NSObject tag : tags) {
-        NSDictionary tagDict = (NSDictionary) tag;
-        NSDictionary baseDict = (NSDictionary) tagDict.get("baseData");
+      Skeleton skeleton = null;
+      for (Object tag : tags) {
+        Map<String,Object> tagDict = asDict(tag);
+        Map<String,Object> baseDict = asDict(tagDict.get("baseData"));
         if (baseDict != null && baseDict.containsKey("linkData")) {
-          NSObject[] linkData = ((NSArray) baseDict.get("linkData")).getArray();
-          int len = linkData.length;
-          joints = new Joint[len];
-          weights = new Weight[len][0];
-          for (int ii = 0; ii < len; ii++) {
-            NSObject item = linkData[ii];
-            if (item instanceof NSDictionary) {
-              NSDictionary ldDict = (NSDictionary) item;
-              int linkID = getInt(ldDict, "linkID");
-              Joint joint = new Joint(linkID);
-              joint.setBindPose(getFloatArray(ldDict, "bindPoseT"), getFloatArray(ldDict, "bindPoseR"),
-                                getFloatArray(ldDict, "bindPoseS"));
-              joint.setMatrices( getDataFloats(ldDict, "transformMatrix"),
-                                 getDataFloats(ldDict, "transformAssociateModelMatrix"),
-                                 getDataFloats(ldDict, "transformLinkMatrix"));
-              joints[ii] = joint;
-              idToJoint.put(linkID, joints[ii]);
-              indexToId.put(ii, linkID);
-              if (ldDict.containsKey("cdata")) {
-                int[] cdata = getDataInts(ldDict, "cdata");
-                Weight[] weightList = new Weight[cdata.length / 2];
-                weights[ii] = weightList;
-                for (int jj = 0; jj < cdata.length; jj += 2) {
-                  int index = cdata[jj];
-                  float weight = Float.intBitsToFloat(cdata[jj + 1]);
-                  weightList[jj / 2] = new Weight(index, weight);
-                  weightVals++;
-                }
-              }
-            }
-          }
+          skeleton = createSkeleton(getArray(baseDict, "linkData"));
         }
       }
+      return new Mesh(name, material, vertices, uvcoords, uvSet, faceOffsets, faceIndices, skeleton);
     }
 
-    private void print (PrintStream out) {
-      out.println("  " +  pad("Material:", 16) + (material != null ? "'" + material.getName() + "'" : "default"));
-      out.println("  " + pad("vertexcount:", 16) + vertices.length);
-      if (showVertices) {
-        out.println("  vertices:");
-        for (float[] vertex : vertices) {
-          out.println("    " + fmtCoord(vertex));
+    private Skeleton createSkeleton (List<Object> linkData) {
+      int len = linkData.size();
+      Skeleton.Joint[] joints = new Skeleton.Joint[len];
+      ByteBuffer[] cdata = new ByteBuffer[len];
+      int weightCount = 0;
+      for (int ii = 0; ii < len; ii++) {
+        Object item = linkData.get(ii);
+        if (item instanceof Map) {
+          Map<String,Object> ldDict = asDict(item);
+          joints[ii] = new Skeleton.Joint(getInt(ldDict, "linkID"), getFloatArray(ldDict, "bindPoseT"),
+                                          getFloatArray(ldDict, "bindPoseR"), getFloatArray(ldDict, "bindPoseS"),
+                                          Skeleton.transpose(getDataFloats(ldDict, "transformMatrix")),
+                                          Skeleton.transpose(getDataFloats(ldDict, "transformAssociateModelMatrix")),
+                                          Skeleton.transpose(getDataFloats(ldDict, "transformLinkMatrix")));
+          if (ldDict.containsKey("cdata")) {
+            cdata[ii] = getData(ldDict, "cdata");
+            weightCount += cdata[ii].remaining() >> 3;
+          }
         }
       }
-      out.println("  " + pad("polygon faces:", 16) + polyFaces.length);
-      out.println("  " + pad("polygon points:", 16) + polyPoints);
-      if (showPolys) {
-        out.println("  polygons:");
-        for (int[] face : polyFaces) {
-          out.print("    ");
-          boolean addSpace = false;
-          for (int fVal : face) {
-            out.print((addSpace ? " " : "") + fVal );
-            addSpace = true;
+      // Unpack all joints' <vertex index>/<weight> pairs into parallel arrays (see Note 7)
+      int[] weightOffsets = new int[len + 1];
+      int[] weightVertex = new int[weightCount];
+      float[] weightValue = new float[weightCount];
+      int idx = 0;
+      for (int ii = 0; ii < len; ii++) {
+        weightOffsets[ii] = idx;
+        if (cdata[ii] != null) {
+          // Even values are int vertex indexes and odd values float weights, so read through both views
+          IntBuffer cIndex = DataDecoder.intView(cdata[ii], ByteOrder.BIG_ENDIAN);
+          FloatBuffer cWeight = DataDecoder.floatView(cdata[ii], ByteOrder.BIG_ENDIAN);
+          int count = cIndex.limit() >> 1;
+          for (int jj = 0; jj < count; jj++) {
+            weightVertex[idx] = cIndex.get(jj * 2);
+            weightValue[idx++] = cWeight.get(jj * 2 + 1);
           }
-          out.println();
         }
       }
-      out.println("  " + pad("uvcoords:", 16) + uvcoords.length);
-      if (showUVs) {
-        out.println("  uvcoords: (set: " + uvSet + ")");
-        for (float[] uvcoord : uvcoords) {
-          out.println("    " + fmtUV(uvcoord));
+      weightOffsets[len] = idx;
+      return new Skeleton(joints, weightOffsets, weightVertex, weightValue);
+    }
+
+    private void processObjects (List<Object> objects, Mesh mesh, int depth) {
+      for (Object object : objects) {
+        Map<String,Object> objDict = asDict(object);
+        String objName = getString(objDict, "name");
+        String objType = getString(objDict, "type");
+        if ("NGON".equals(objType)) {
+          mesh = createMesh(objName, objDict);
+          meshes.add(mesh);
+          // Extract and reorder animation keyframes, if any
+          //processKeyframes(objDict, mesh, null);
+        } else if ("FOLDER".equals(objType)) {
+          folders.add(new Scene.Folder(objName, depth));
+          processObjects(getArray(objDict, "childs"), mesh, depth + 1);
+        } else if ("JOINT".equals(objType)) {
+          Skeleton skeleton = mesh != null ? mesh.skeleton : null;
+          Skeleton.Joint joint = skeleton != null ? skeleton.getJoint(getInt(objDict, "ID")) : null;
+          if (joint != null) {
+            if (skeleton.rootJoint == null) {
+              skeleton.rootJoint = joint;
+            }
+            // Note: not all Joints have names
+            float[] translate = getFloatArray(objDict, "position");
+            float[] rotation = getFloatArray(objDict, "rotation");
+            float[] scale = getFloatArray(objDict, "scale");
+            List<Object> children = getArray(objDict, "childs");
+            Skeleton.Joint[] childJoints = new Skeleton.Joint[children.size()];
+            for (int ii = 0; ii < children.size(); ii++) {
+              Map<String,Object> childDict = asDict(children.get(ii));
+              childJoints[ii] = skeleton.getJoint(getInt(childDict, "ID"));
+            }
+            joint.setInfo(objName, translate, rotation, scale, childJoints);
+          }
+          // Extract and reorder animation keyframes, if any
+          if (mesh != null) {
+            processKeyframes(objDict, mesh, joint);
+          }
+          processObjects(getArray(objDict, "childs"), mesh, depth + 1);
+        } else if ("CAMERA".equals(objType)) {
+          // Not used
         }
       }
-      if (joints != null) {
-        out.println("  " + pad("joints:", 16) + joints.length);
-        if (showJoints) {
-          for (Joint joint : joints) {
-            joint.print(out, "    ");
+    }
+
+    private void processKeyframes (Map<String,Object> objDict, Mesh mesh, Skeleton.Joint joint) {
+      if (objDict.containsKey("tracks2")) {
+        String target = joint != null ? joint.jointName : mesh.meshName;
+        List<Object> tracks2 = getArray(objDict, "tracks2");
+        for (Object trackObj : tracks2) {
+          Map<String,Object> tracks2Dict = asDict(trackObj);
+          String parameter = getString(tracks2Dict, "parameter");
+          if ("position".equals(parameter) || "rotation".equals(parameter) || "scale".equals(parameter)) {
+            int parmIdx = parmOrder.get(parameter);
+            List<Object> pTakes = getArray(tracks2Dict, "takes");
+            for (Object pTake : pTakes) {
+              Map<String,Object> take = asDict(pTake);
+              String takeName = getString(take, "name");
+              List<Object> fcurves = getArray(take, "fcurves");
+              for (int kk = 0; kk < Math.min(3, fcurves.size()); kk++) {
+                Map<String,Object> fcVals = asDict(fcurves.get(kk));
+                float[][] keys = DataDecoder.getKeys(getData(fcVals, "keys"));
+                if (keys[0].length > 0) {
+                  mesh.getTake(takeName).addChannel(new Take.Channel(target, parmIdx, kk, keys));
+                }
+              }
+            }
           }
         }
       }
-      if (weights != null) {
-        out.println("  " + pad("weight sets:", 16) + weights.length);
-        out.println("  " + pad("weight vals:", 16) + weightVals);
-        if (showWeights) {
-          for (int jointIndex = 0; jointIndex < weights.length; jointIndex++) {
-            Weight[] weightList = weights[jointIndex];
-            // Note: not all joints have weights
-            int jointId = indexToId.get(jointIndex);
-            String jointName = idToJoint.get(jointId).jointName;
-            out.println("    joint ID = " + jointId + ", name = '" + jointName + "'");
-            for (Weight weight : weightList) {
-              out.println("      " + weight.index + " " + fmtFloat(weight.weight));
-            }
+    }
+  }
+
+  private void printMaterial (Material material, String indent) {
+    out.println(indent + pad("Diffuse:", 16) + fmtARGB(material.diffColor));
+    out.println(indent + pad("Specular:", 16) + fmtARGB(material.specColor));
+    out.println(indent + pad("Specular Size:", 16) + material.specSize);
+    out.println(indent + pad("Reflection:", 16) + fmtARGB(material.reflColor));
+    out.println(indent + pad("Ref. Blur:", 16) + fmtFloat(material.reflBlur));
+    out.println(indent + pad("Ref. Samples:", 16) + material.reflSamples);
+    out.println(indent + pad("Fresnel:", 16) + material.reflFresnel);
+    out.println(indent + pad("Transparency:", 16) + fmtARGB(material.transColor));
+    out.println(indent + pad("Trans. Blur:", 16) + fmtFloat(material.transBlur));
+    out.println(indent + pad("Trans. Samples:", 16) + material.transSamples);
+    out.println(indent + pad("Use Alpha:", 16) + material.transUseAlpha);
+    out.println(indent + pad("Emissive:", 16) + fmtARGB(material.emisColor));
+    out.println(indent + pad("Bump Type:", 16) + material.getBumpType());
+    for (Material.Texture texture : material.textures) {
+      out.println(indent + pad("Texture Type:", 16) + texture.getType());
+      out.println(indent + pad("Texture File:", 16) + "'" + texture.file + "'");
+      out.println(indent + "  " + pad("mixcolor:", 14) + fmtARGB(texture.mixcolor));
+      out.println(indent + "  " + pad("mix:", 14) + fmtFloat(texture.mix));
+      out.println(indent + "  " + pad("background:", 14) + fmtARGB(texture.background));
+      out.println(indent + "  " + pad("intensity:", 14) + fmtFloat(texture.intensity));
+      out.println(indent + "  " + pad("sample:", 14) + texture.getSample());
+      out.println(indent + "  " + pad("position:", 14) + fmtFloat(texture.position[0]) + " " + fmtFloat(texture.position[1]));
+      out.println(indent + "  " + pad("scale:", 14) + fmtFloat(texture.scale[0]) + " " + fmtFloat(texture.scale[1]));
+      out.println(indent + "  " + pad("tileU:", 14) + texture.tileU);
+      out.println(indent + "  " + pad("tileV:", 14) + texture.tileV);
+      out.println(indent + "  " + pad("filtertype:", 14) + texture.getFilterType());
+    }
+  }
+
+  private void printJoint (Skeleton.Joint joint, String indent) {
+    out.println(indent + joint.jointName);
+    out.println(indent + "  translate: " + fmtCoord(joint.translate));
+    out.println(indent + "  rotation:  " + fmtCoord(joint.rotation));
+    out.println(indent + "  scale:     " + fmtCoord(joint.scale));
+    out.println(indent + "  bindPoseT: " + fmtCoord(joint.bindPoseT));
+    out.println(indent + "  bindPoseR: " + fmtCoord(joint.bindPoseR));
+    out.println(indent + "  bindPoseS: " + fmtCoord(joint.bindPoseS));
+    out.println(indent + "  transformMatrix:");
+    printMatrix(indent + "   ", joint.transformMatrix);
+    out.println(indent + "  transformLinkMatrix:");
+    printMatrix(indent + "   ", joint.transformLinkMatrix);
+    out.println(indent + "  transformAssociateModelMatrix:");
+    printMatrix(indent + "   ", joint.transformAssociateModelMatrix);
+  }
+
+  private void printMatrix (String indent, float[] mat) {
+    for (int ii = 0; ii < mat.length; ii += 4) {
+      float c0 = mat[ii];
+      float c1 = mat[ii + 1];
+      float c2 = mat[ii + 2];
+      float c3 = mat[ii + 3];
+      out.println(indent + fmtFloat(c0) + " " + fmtFloat(c1) + " " + fmtFloat(c2) + " " + fmtFloat(c3));
+    }
+  }
+
+  private void printMesh (Mesh mesh) {
+    Material material = mesh.material;
+    float[] vertices = mesh.vertices;
+    float[] uvcoords = mesh.uvcoords;
+    int[] faceOffsets = mesh.faceOffsets;
+    int[] faceIndices = mesh.faceIndices;
+    out.println("  " +  pad("Material:", 16) + (material != null ? "'" + material.getName() + "'" : "default"));
+    out.println("  " + pad("vertexcount:", 16) + mesh.getVertexCount());
+    if (showVertices) {
+      out.println("  vertices:");
+      for (int ii = 0; ii < vertices.length; ii += 3) {
+        out.println("    " + fmtCoord(vertices[ii], vertices[ii + 1], vertices[ii + 2]));
+      }
+    }
+    out.println("  " + pad("polygon faces:", 16) + mesh.getFaceCount());
+    out.println("  " + pad("polygon points:", 16) + faceIndices.length);
+    if (showPolys) {
+      out.println("  polygons:");
+      for (int ii = 0; ii < mesh.getFaceCount(); ii++) {
+        out.print("    ");
+        for (int jj = faceOffsets[ii]; jj < faceOffsets[ii + 1]; jj++) {
+          out.print((jj > faceOffsets[ii] ? " " : "") + faceIndices[jj]);
+        }
+        out.println();
+      }
+    }
+    out.println("  " + pad("uvcoords:", 16) + mesh.getUVCount());
+    if (showUVs) {
+      out.println("  uvcoords: (set: " + mesh.uvSet + ")");
+      for (int ii = 0; ii < uvcoords.length; ii += 2) {
+        out.println("    " + fmtUV(uvcoords[ii], getV(uvcoords[ii + 1])));
+      }
+    }
+    Skeleton skeleton = mesh.skeleton;
+    if (skeleton != null) {
+      Skeleton.Joint[] joints = skeleton.joints;
+      out.println("  " + pad("joints:", 16) + joints.length);
+      if (showJoints) {
+        for (Skeleton.Joint joint : joints) {
+          printJoint(joint, "    ");
+        }
+      }
+      out.println("  " + pad("weight sets:", 16) + joints.length);
+      out.println("  " + pad("weight vals:", 16) + skeleton.weightVertex.length);
+      if (showWeights) {
+        for (int jointIndex = 0; jointIndex < joints.length; jointIndex++) {
+          // Note: not all joints have weights
+          Skeleton.Joint joint = joints[jointIndex];
+          out.println("    joint ID = " + joint.jointId + ", name = '" + joint.jointName + "'");
+          for (int ii = skeleton.weightOffsets[jointIndex]; ii < skeleton.weightOffsets[jointIndex + 1]; ii++) {
+            out.println("      " + skeleton.weightVertex[ii] + " " + fmtFloat(skeleton.weightValue[ii]));
           }
         }
       }
-      if (showJointHierarchy && rootJoint != null) {
+      if (showJointHierarchy && skeleton.rootJoint != null) {
         out.println("  joint hierarchy:");
-        printHierarchy(rootJoint, out, "    ");
-      }
-      if (showKeyframes) {
-        for (String takeName : takes.keySet()) {
-          Take take = takes.get(takeName);
-          out.println("Take: " + takeName);
-          for (String target : take.keyframes.keySet()) {
-            out.println("  target: " + target);
-            Keyframe[] keyframes = take.keyframes.get(target);
-            for (int ii = 0; ii < keyframes.length; ii++) {
-              Keyframe keyframe = keyframes[ii];
-              out.println("    keyframe: " + ii);
-              out.println("      translate: " + fmtCoord(keyframe.translate));
-              out.println("      rotation:  " + fmtCoord(keyframe.rotation));
-              out.println("      scale:     " + fmtCoord(keyframe.scale));
-            }
+        printHierarchy(skeleton.rootJoint, "    ");
+      }
+    }
+    if (showKeyframes) {
+      for (Take take : mesh.takes.values()) {
+        out.println("Take: " + take.getName());
+        for (String target : take.getTargets()) {
+          out.println("  target: " + target);
+          List<Take.Keyframe> keyframes = take.getKeyframes(target);
+          for (int ii = 0; ii < keyframes.size(); ii++) {
+            Take.Keyframe keyframe = keyframes.get(ii);
+            out.println("    keyframe: " + ii);
+            out.println("      translate: " + fmtCoord(keyframe.translate));
+            out.println("      rotation:  " + fmtCoord(keyframe.rotation));
+            out.println("      scale:     " + fmtCoord(keyframe.scale));
           }
         }
       }
     }
   }
 
-  private void printHierarchy (Joint joint, PrintStream out, String indent) {
+  private void printHierarchy (Skeleton.Joint joint, String indent) {
     out.println(indent + joint.jointName);
-    for (Joint child : joint.children) {
+    for (Skeleton.Joint child : joint.children) {
       if (child != null) {
-        printHierarchy(child, out, indent + "  ");
-      }
-    }
-  }
-
-  private List<Material> getMaterials (NSDictionary rootDict) throws Exception {
-    List<Material> materialList = new ArrayList<>();
-    NSObject[] materialsArray = ((NSArray) rootDict.get("Materials3")).getArray();
-    int idx = 0;
-    for (NSObject nsObject : materialsArray) {
-      NSDictionary matDict = (NSDictionary) nsObject;
-      Material material = new Material(idx, getString(matDict, "name"), getInt(matDict, "ID"));
-      materialList.add(material);
-      NSObject[] nodes = ((NSArray) matDict.get("nodes")).getArray();
-      for (int jj = 0; jj < nodes.length; jj++) {
-        NSObject node = nodes[jj];
-        NSDictionary nodeDict = (NSDictionary) node;
-        // Parse "xmlDef" section to figure out which textures are in use by associating conID values
-        NSDictionary baseDict = (NSDictionary) nodeDict.get("baseData");
-        String matXml = getString(baseDict, "xmlDef");
-        Document doc = parseXml(matXml);
-        if (jj == 0) {
-          material.diffColor = getFloatArray(nodeDict, "diffColor");
-          material.specColor = getFloatArray(nodeDict, "specColor");
-          material.specSize = getFloat(nodeDict, "specSize");
-          material.reflColor = getFloatArray(nodeDict, "reflColor");
-          material.reflBlur = getFloat(nodeDict, "reflBlur");
-          material.reflSamples = getInt(nodeDict, "reflSamples");
-          material.reflFresnel = getBoolean(nodeDict, "reflFresnel");
-          material.transColor = getFloatArray(nodeDict, "transColor");
-          material.transBlur = getFloat(nodeDict, "transBlur");
-          material.transSamples = getInt(nodeDict, "transSamples");
-          material.transUseAlpha = getBoolean(nodeDict, "transUseAlpha");
-          material.emisColor = getFloatArray(nodeDict, "emisColor");
-          material.bumpType = getInt(nodeDict, "bumpType");
-          Node cNode = getChildNode(doc, "param");
-          NodeList xmlNodes = cNode != null ? cNode.getChildNodes() : null;
-          if (xmlNodes != null) {
-            for (int kk = 0; kk < xmlNodes.getLength(); kk++) {
-              Node mNode = xmlNodes.item(kk);
-              String nName = mNode.getNodeName();
-              NamedNodeMap attrs = mNode.getAttributes();
-              Node idNode = attrs.getNamedItem("conID");
-              Node cnNode = attrs.getNamedItem("name");
-              if (idNode != null && cnNode != null && ("color".equals(nName) || "float".equals(nName))) {
-                String cId = idNode.getNodeValue();
-                String cName = cnNode.getNodeValue();
-                material.addTexture(cName, cId);
-              }
-            }
-          }
-        } else {
-          Node iNode = getChildNode(doc, "image");
-          if (iNode != null) {
-            NamedNodeMap iAttrs = iNode.getAttributes();
-            Node idNode = iAttrs.getNamedItem("id");
-            String nodeId = idNode.getNodeValue();
-            Material.Texture texture = material.getTexture(nodeId);
-            if (nodeDict.containsKey("tracks2")) {
-              NSObject[] tracks2 = ((NSArray) nodeDict.get("tracks2")).getArray();
-              for (NSObject item : tracks2) {
-                NSDictionary itemDict = (NSDictionary) item;
-                String parmName = getString(itemDict, "parameter");
-                switch (parmName) {
-                case "background":
-                  texture.background = getFloatArray(nodeDict, "background");
-                  break;
-                case "mixcolor":
-                  texture.mixcolor = getFloatArray(nodeDict, "mixcolor");
-                  break;
-                case "intensity":
-                  texture.intensity = getFloat(nodeDict, "intensity");
-                  break;
-                case "mix":
-                  texture.mix = getFloat(nodeDict, "mix");
-                  break;
-                case "filtertype":
-                  texture.filtertype = getInt(nodeDict, "filtertype");
-                  break;
-                case "sample":
-                  texture.sample = getInt(nodeDict, "sample");
-                  break;
-                case "tileU":
-                  texture.tileU = getBoolean(nodeDict, "tileU");
-                  break;
-                case "tileV":
-                  texture.tileV = getBoolean(nodeDict, "tileV");
-                  break;
-                case "position":
-                  texture.position = getFloatArray(nodeDict, "position");
-                  break;
-                case "scale":
-                  texture.scale = getFloatArray(nodeDict, "scale");
-                  break;
-                case "texture":
-                  texture.file = getString(nodeDict, "texture");
-                  break;
-                }
-              }
-            }
-          }
+        printHierarchy(child, indent + "  ");
+      }
+    }
+  }
+
+  /*
+   * Returns V coord, reversed if -flipv switch is used (see Note 5)
+   */
+  private float getV (float v) {
+    return vFlip ? 1 - v : v;
+  }
+
+  /**
+   * Writes mesh's group to an OBJ file
+   * @param out writer for OBJ file
+   * @param vertexIndex number of vertices written by preceding groups
+   * @param coordsIndex number of texture coords written by preceding groups
+   */
+  private void writeObj (AsciiWriter out, Mesh mesh, VertexWelder.Welded welded, NormalGenerator.Normals normals,
+                         int vertexIndex, int coordsIndex, int normalIndex) throws IOException {
+    // Export polygon vertices section
+    out.append("g ").append(mesh.meshName).newLine();
+    writeObjVertices(out, mesh, 0, mesh.getVertexCount());
+    out.newLine();
+    // Export texture coords section
+    writeObjUVs(out, getObjUVs(mesh, welded), 0, getObjUVCount(mesh, welded));
+    // Export vertex normals section
+    if (normals != null) {
+      writeObjNormals(out, normals, 0, normals.getNormalCount());
+    }
+    out.newLine();
+    writeObjMaterial(out, mesh);
+    // Export polygon faces section
+    writeObjFaces(out, mesh, 0, mesh.getFaceCount(), vertexIndex, coordsIndex, welded != null ? welded.indices : null,
+                  normalIndex, normals != null ? normals.indices : null);
+    out.newLine();
+  }
+
+  /*
+   * Returns the welded vertexes of mesh if the -weld switch is set, so each distinct UV coord used by a vertex is
+   * written once, or null to write the UV coords of every face point
+   */
+  private VertexWelder.Welded getObjWelded (Mesh mesh) {
+    return weldUVs ? VertexWelder.weld(mesh) : null;
+  }
+
+  /*
+   * Returns the vertex normals of mesh if the -normals switch is set, or null
+   */
+  private NormalGenerator.Normals getObjNormals (Mesh mesh) {
+    return creaseAngle >= 0 ? NormalGenerator.generate(mesh, creaseAngle, true) : null;
+  }
+
+  private static int getObjNormalCount (NormalGenerator.Normals normals) {
+    return normals != null ? normals.getNormalCount() : 0;
+  }
+
+  private static float[] getObjUVs (Mesh mesh, VertexWelder.Welded welded) {
+    return welded != null ? welded.uvcoords : mesh.uvcoords;
+  }
+
+  private static int getObjUVCount (Mesh mesh, VertexWelder.Welded welded) {
+    return getObjUVs(mesh, welded).length >> 1;
+  }
+
+  private static void writeObjVertices (AsciiWriter out, Mesh mesh, int from, int to) throws IOException {
+    float[] vertices = mesh.vertices;
+    for (int ii = from * 3; ii < to * 3; ii += 3) {
+      out.append("v ").appendFloat(vertices[ii]).append(' ').appendFloat(vertices[ii + 1]).append(' ')
+         .appendFloat(vertices[ii + 2]).newLine();
+    }
+  }
+
+  private void writeObjUVs (AsciiWriter out, float[] uvcoords, int from, int to) throws IOException {
+    for (int ii = from * 2; ii < to * 2; ii += 2) {
+      out.append("vt ").appendFloat(uvcoords[ii]).append(' ').appendFloat(getV(uvcoords[ii + 1])).newLine();
+    }
+  }
+
+  private static void writeObjNormals (AsciiWriter out, NormalGenerator.Normals normals, int from, int to)
+      throws IOException {
+    float[] vals = normals.normals;
+    for (int ii = from * 3; ii < to * 3; ii += 3) {
+      out.append("vn ").appendFloat(vals[ii]).append(' ').appendFloat(vals[ii + 1]).append(' ')
+         .appendFloat(vals[ii + 2]).newLine();
+    }
+  }
+
+  private static void writeObjMaterial (AsciiWriter out, Mesh mesh) throws IOException {
+    out.append("usemtl ").append(mesh.material != null ? mesh.material.getName() : "default").newLine();
+  }
+
+  /*
+   * Writes faces from up to, but not including to, where uvIndices holds the texture coord of each face point,
+   * from VertexWelder, or is null if each face point has its own texture coord, and normalIndices holds the
+   * vertex normal of each face point, from NormalGenerator, or is null to write no normals
+   */
+  private static void writeObjFaces (AsciiWriter out, Mesh mesh, int from, int to, int vertexIndex, int coordsIndex,
+                                     int[] uvIndices, int normalIndex, int[] normalIndices) throws IOException {
+    int[] faceOffsets = mesh.faceOffsets;
+    int[] faceIndices = mesh.faceIndices;
+    // with vertex normals: "f v1/vt1/vn1 v2/vt2/vn2 v3/vt3/vn3" or without: "f v1/vt1 v2/vt2 v3/vt3"
+    // Note: unless welded, each face point has its own texture coord, so face point jj uses coord coordsIndex + jj
+    for (int ii = from; ii < to; ii++) {
+      out.append("f ");
+      int start = faceOffsets[ii];
+      int end = faceOffsets[ii + 1];
+      // Visit points in reverse order points for Obj format
+      for (int jj = end - 1; jj >= start; jj--) {
+        if (jj < end - 1) {
+          out.append(' ');
+        }
+        int coord = uvIndices != null ? uvIndices[jj] : jj;
+        out.append(vertexIndex + faceIndices[jj] + 1).append('/').append(coordsIndex + coord + 1);
+        if (normalIndices != null) {
+          out.append('/').append(normalIndex + normalIndices[jj] + 1);
         }
       }
+      out.newLine();
     }
-    return materialList;
   }
 
-  public static void main (String[] args) throws Exception {
-    new Cheetah3DParser(args);
+  /*
+   * A section of a group's OBJ output, which can be rendered independently of the other chunks once each group's
+   * vertex and texture coord index bases are known
+   */
+  private final class ObjChunk {
+    private final int   meshIdx;
+    private final Mesh  mesh;
+    private final char  type;       // 'g' group, 'v' vertices, 't' texture coords, 'n' normals, 'm' material,
+                                    // 'f' faces, 'e' end
+    private final int   from, to;   // range of vertices, texture coords, normals, or faces
+    private final int   vertexBase, coordsBase, normalBase;
+    private final VertexWelder.Welded     welded;     // or null, if not welding UV coords
+    private final NormalGenerator.Normals normals;    // or null, if not writing normals
+    private byte[]      rendered;   // only kept by writeObjIncremental()
+
+    ObjChunk (int meshIdx, Mesh mesh, VertexWelder.Welded welded, NormalGenerator.Normals normals, char type,
+              int from, int to, int vertexBase, int coordsBase, int normalBase) {
+      this.meshIdx = meshIdx;
+      this.mesh = mesh;
+      this.welded = welded;
+      this.normals = normals;
+      this.normalBase = normalBase;
+      this.type = type;
+      this.from = from;
+      this.to = to;
+      this.vertexBase = vertexBase;
+      this.coordsBase = coordsBase;
+    }
+
+    void render (AsciiWriter out) throws IOException {
+      switch (type) {
+      case 'g':
+        out.append("g ").append(mesh.meshName).newLine();
+        break;
+      case 'v':
+        writeObjVertices(out, mesh, from, to);
+        break;
+      case 't':
+        if (from == 0) {
+          out.newLine();
+        }
+        writeObjUVs(out, getObjUVs(mesh, welded), from, to);
+        break;
+      case 'n':
+        if (from == 0 && getObjUVCount(mesh, welded) == 0) {
+          out.newLine();
+        }
+        writeObjNormals(out, normals, from, to);
+        break;
+      case 'm':
+        if (getObjUVCount(mesh, welded) == 0 && getObjNormalCount(normals) == 0) {
+          out.newLine();
+        }
+        out.newLine();
+        writeObjMaterial(out, mesh);
+        break;
+      case 'f':
+        writeObjFaces(out, mesh, from, to, vertexBase, coordsBase, welded != null ? welded.indices : null,
+                      normalBase, normals != null ? normals.indices : null);
+        break;
+      case 'e':
+        out.newLine();
+        break;
+      }
+    }
+
+    /*
+     * Identifies the chunk at the same place in the previous export of a file
+     */
+    String getKey () {
+      return meshIdx + ":" + type + ":" + from;
+    }
+
+    /*
+     * Returns true if this chunk renders exactly the same text as prev, which has the same key
+     */
+    boolean sameOutput (ObjChunk prev) {
+      if (to != prev.to) {
+        return false;
+      }
+      Mesh pMesh = prev.mesh;
+      switch (type) {
+      case 'g':
+        return mesh.meshName.equals(pMesh.meshName);
+      case 'v':
+        return rangeEquals(mesh.vertices, pMesh.vertices, from * 3, to * 3);
+      case 't':
+        return rangeEquals(getObjUVs(mesh, welded), getObjUVs(pMesh, prev.welded), from * 2, to * 2);
+      case 'n':
+        return (from > 0 || (getObjUVCount(mesh, welded) == 0) == (getObjUVCount(pMesh, prev.welded) == 0)) &&
+               rangeEquals(normals.normals, prev.normals.normals, from * 3, to * 3);
+      case 'm':
+        String name = mesh.material != null ? mesh.material.getName() : null;
+        String pName = pMesh.material != null ? pMesh.material.getName() : null;
+        return (getObjUVCount(mesh, welded) == 0) == (getObjUVCount(pMesh, prev.welded) == 0) &&
+               getObjNormalCount(normals) == getObjNormalCount(prev.normals) && Objects.equals(name, pName);
+      case 'f':
+        int start = mesh.faceOffsets[from];
+        int end = mesh.faceOffsets[to];
+        return vertexBase == prev.vertexBase && coordsBase == prev.coordsBase && normalBase == prev.normalBase &&
+               rangeEquals(mesh.faceOffsets, pMesh.faceOffsets, from, to + 1) &&
+               rangeEquals(mesh.faceIndices, pMesh.faceIndices, start, end) &&
+               rangeEquals(welded != null ? welded.indices : null, prev.welded != null ? prev.welded.indices : null,
+                           start, end) &&
+               rangeEquals(normals != null ? normals.indices : null, prev.normals != null ? prev.normals.indices : null,
+                           start, end);
+      default:
+        return true;
+      }
+    }
+  }
+
+  private static boolean rangeEquals (float[] a1, float[] a2, int from, int to) {
+    if (a1.length < to || a2.length < to) {
+      return false;
+    }
+    for (int ii = from; ii < to; ii++) {
+      if (Float.floatToIntBits(a1[ii]) != Float.floatToIntBits(a2[ii])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Returns true if the ranges are equal, or both arrays are null
+   */
+  private static boolean rangeEquals (int[] a1, int[] a2, int from, int to) {
+    if (a1 == null || a2 == null) {
+      return a1 == a2;
+    }
+    if (a1.length < to || a2.length < to) {
+      return false;
+    }
+    for (int ii = from; ii < to; ii++) {
+      if (a1[ii] != a2[ii]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Rendered OBJ chunks from the last export of a file, which -watch mode keeps so that, when the file changes,
+   * only chunks whose data changed are rendered again
+   */
+  static final class ObjCache {
+    private Map<String,ObjChunk>  chunks = new HashMap<>();
+    private int                   rendered, total;
+
+    /**
+     * @return number of chunks rendered, and total number of chunks in the last export
+     */
+    int[] getStats () {
+      return new int[] {rendered, total};
+    }
+  }
+
+  /*
+   * Splits each group's sections into chunks of at most OBJ_CHUNK_LINES lines.  Each group's vertex and texture
+   * coord index bases are computed up front with a prefix sum, as these are the only dependency between groups.
+   */
+  private static final int  OBJ_CHUNK_LINES = 32768;
+
+  private List<ObjChunk> getObjChunks (List<Mesh> meshes) {
+    List<ObjChunk> chunks = new ArrayList<>();
+    int vertexIndex = 0;
+    int coordsIndex = 0;
+    int normalIndex = 0;
+    for (int mm = 0; mm < meshes.size(); mm++) {
+      Mesh mesh = meshes.get(mm);
+      VertexWelder.Welded welded = getObjWelded(mesh);
+      NormalGenerator.Normals normals = getObjNormals(mesh);
+      int[] bases = {vertexIndex, coordsIndex, normalIndex};
+      chunks.add(newObjChunk(mm, mesh, welded, normals, 'g', 0, 0, bases));
+      int vCount = mesh.getVertexCount();
+      for (int ii = 0; ii < vCount; ii += OBJ_CHUNK_LINES) {
+        chunks.add(newObjChunk(mm, mesh, welded, normals, 'v', ii, Math.min(vCount, ii + OBJ_CHUNK_LINES), bases));
+      }
+      int uvCount = getObjUVCount(mesh, welded);
+      for (int ii = 0; ii < uvCount; ii += OBJ_CHUNK_LINES) {
+        chunks.add(newObjChunk(mm, mesh, welded, normals, 't', ii, Math.min(uvCount, ii + OBJ_CHUNK_LINES), bases));
+      }
+      int nCount = getObjNormalCount(normals);
+      for (int ii = 0; ii < nCount; ii += OBJ_CHUNK_LINES) {
+        chunks.add(newObjChunk(mm, mesh, welded, normals, 'n', ii, Math.min(nCount, ii + OBJ_CHUNK_LINES), bases));
+      }
+      chunks.add(newObjChunk(mm, mesh, welded, normals, 'm', 0, 0, bases));
+      int fCount = mesh.getFaceCount();
+      for (int ii = 0; ii < fCount; ii += OBJ_CHUNK_LINES) {
+        chunks.add(newObjChunk(mm, mesh, welded, normals, 'f', ii, Math.min(fCount, ii + OBJ_CHUNK_LINES), bases));
+      }
+      chunks.add(newObjChunk(mm, mesh, welded, normals, 'e', 0, 0, bases));
+      coordsIndex += welded != null ? uvCount : mesh.faceIndices.length;
+      vertexIndex += vCount;
+      normalIndex += nCount;
+    }
+    return chunks;
+  }
+
+  /*
+   * bases holds the vertex, texture coord and normal index bases of the chunk's group
+   */
+  private ObjChunk newObjChunk (int meshIdx, Mesh mesh, VertexWelder.Welded welded, NormalGenerator.Normals normals,
+                                char type, int from, int to, int[] bases) {
+    return new ObjChunk(meshIdx, mesh, welded, normals, type, from, to, bases[0], bases[1], bases[2]);
+  }
+
+  /*
+   * Writes a .bvh file for each take of each mesh with a skeleton, named "<file>-<take>.bvh", or
+   * "<file>-<mesh>-<take>.bvh" if more than one mesh has a skeleton
+   */
+  private void writeBvh (Scene scene, String fileName) throws IOException {
+    List<Mesh> skinned = new ArrayList<>();
+    for (Mesh mesh : scene.getMeshes()) {
+      if (mesh.skeleton != null && mesh.skeleton.rootJoint != null && !mesh.takes.isEmpty()) {
+        skinned.add(mesh);
+      }
+    }
+    for (Mesh mesh : skinned) {
+      PoseEvaluator evaluator = new PoseEvaluator(mesh.skeleton);
+      for (Take take : mesh.takes.values()) {
+        String name = fileName + (skinned.size() > 1 ? "-" + safeName(mesh.getName()) : "") + "-" +
+                      safeName(take.getName()) + ".bvh";
+        try (FileOutputStream fOut = new FileOutputStream(new File(name))) {
+          BvhWriter.write(fOut.getChannel(), evaluator, take, bvhFps);
+        }
+      }
+    }
+  }
+
+  /*
+   * Replaces characters which are not safe in file names with '_'
+   */
+  private static String safeName (String name) {
+    return name.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  /*
+   * Parallel version of the serial OBJ polygon export which produces byte-identical output.  Chunks are rendered
+   * to separate buffers on the common ForkJoinPool and written to the channel in their original order.  Only a
+   * limited window of chunks is in flight at once, so the whole file is never held in memory.
+   */
+  private void writeObjParallel (WritableByteChannel channel, List<ObjChunk> chunks) throws IOException {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    int window = Math.max(2, pool.getParallelism() * 2);
+    Deque<ForkJoinTask<AsciiWriter>> pending = new ArrayDeque<>();
+    int next = 0;
+    while (next < chunks.size() || !pending.isEmpty()) {
+      while (next < chunks.size() && pending.size() < window) {
+        ObjChunk chunk = chunks.get(next++);
+        pending.add(pool.submit(() -> {
+          AsciiWriter buf = new AsciiWriter(64 * 1024);
+          chunk.render(buf);
+          return buf;
+        }));
+      }
+      join(pending.removeFirst()).writeTo(channel);
+    }
+  }
+
+  /*
+   * Incremental version of writeObjParallel() for -watch mode which reuses the rendered text of chunks that are
+   * unchanged since the last export in cache, and only renders the rest
+   */
+  private void writeObjIncremental (WritableByteChannel channel, List<ObjChunk> chunks, ObjCache cache)
+      throws IOException {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    Map<String,ObjChunk> current = new HashMap<>();
+    for (ObjChunk chunk : chunks) {
+      ObjChunk prev = cache.chunks.get(chunk.getKey());
+      if (prev != null && prev.rendered != null && chunk.sameOutput(prev)) {
+        chunk.rendered = prev.rendered;
+      } else {
+        tasks.add(pool.submit(() -> {
+          AsciiWriter buf = new AsciiWriter(64 * 1024);
+          chunk.render(buf);
+          chunk.rendered = buf.toByteArray();
+          return null;
+        }));
+      }
+      current.put(chunk.getKey(), chunk);
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      join(task);
+    }
+    for (ObjChunk chunk : chunks) {
+      ByteBuffer data = ByteBuffer.wrap(chunk.rendered);
+      while (data.hasRemaining()) {
+        channel.write(data);
+      }
+    }
+    cache.chunks = current;
+    cache.rendered = tasks.size();
+    cache.total = chunks.size();
+  }
+
+  private static <T> T join (ForkJoinTask<T> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("OBJ export interrupted");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
   }
 
-  private Cheetah3DParser (String[] args) throws Exception {
-    String outFile = null;
+  public static void main (String[] args) throws Exception {
     if (args.length > 0) {
-      String inFile = null;
-      for (int ii = 0; ii < args.length; ii++) {
-        String arg = args[ii];
-        if (arg.startsWith("-")) {
-          switch (arg.substring(1)) {
-          case "materials":
-            showMaterials = true;
-            break;
-          case "verts":
-            showVertices = true;
-            break;
-          case "polys":
-            showPolys = true;
-            break;
-          case "uvs":
-            showUVs = true;
-            break;
-          case "weights":
-            showWeights = true;
-            break;
-          case "joints":
-            showJoints = true;
-            break;
-          case "hierarchy":
-            showJointHierarchy = true;
-            break;
-          case "keyframes":
-            showKeyframes = true;
-            break;
-          case "con":
-            consoleOut = true;
-            break;
-          case "raw":
-            showRaw = true;
-            break;
-          case "hex":
-            showHexData = true;   // Raw mode only
-            break;
-          case "sid":
-            suppressId = true;   // Raw mode only
-            break;
-          case "all":
-            showPolys = showMaterials = showVertices = showPolys = showUVs = showWeights = showJoints = showJointHierarchy =
-                        showKeyframes = true;
-            break;
-          case "obj":
-            exportObj = true;
-            break;
-          case "flipv":
-            vFlip = true;
-            break;
-          default:
-            System.out.println("Invalid switch: " + arg);
+      // Leading args are switches, the rest are <file.jas> [outFile], or input files, dirs and globs with -batch
+      int count = 0;
+      while (count < args.length && args[count].startsWith("-")) {
+        count++;
+      }
+      String[] switches = Arrays.copyOf(args, count);
+      String[] files = Arrays.copyOfRange(args, count, args.length);
+      Cheetah3DParser parser = new Cheetah3DParser(switches);
+      if (parser.watch) {
+        if (files.length == 1 && new File(files[0]).isDirectory()) {
+          new WatchConverter(switches).run(Paths.get(files[0]));
+        } else {
+          System.out.println("Expecting a directory to watch");
+        }
+        return;
+      }
+      if (parser.batch) {
+        if (files.length > 0) {
+          int failed = new BatchConverter(switches).run(files);
+          if (failed > 0) {
             System.exit(1);
           }
         } else {
-          inFile = arg;
-          if (ii < args.length - 1) {
-            outFile = args[ii + 1];
-          }
-          break;
+          System.out.println("Expecting Cheetah 3D .jas files, directories or globs");
         }
+        return;
       }
+      String inFile = files.length > 0 ? files[0] : null;
+      String outFile = files.length > 1 ? files[1] : null;
       int off;
       if (inFile != null && (off = inFile.toLowerCase().indexOf(".jas")) > 0) {
         File file = new File(inFile);
         if (file.exists()) {
-          String fileName = inFile.substring(0, off);
-          NSDictionary rootDict = (NSDictionary) PropertyListParser.parse(file);
-          if (showRaw) {
-            if (outFile == null) {
-              outFile = fileName + ".txt";
-            }
-            if (!consoleOut) {
-              BufferedOutputStream bOut = new BufferedOutputStream(new FileOutputStream(new File(outFile)));
-              out = new PrintStream(bOut);
-            }
-            // Dump indented text representation of file
-            for (String key : rootDict.allKeys()) {
-              NSObject obj = rootDict.get(key);
-              List<String> path = new ArrayList<>();
-              path.add(key);
-              switch (key) {
-              case "Render":
-              case "Objects":
-              case "Takes":
-              case "Materials3":
-              case "Dynamics":
-              case "Animation":
-              case "Layer":
-                enumerate(path, new ArrayList<>(), 0, null, obj, null, " ");
-                break;
-              case "Version":
-                NSString nStr = (NSString) obj;
-                out.println("Version = '" + nStr.toString().trim() + "'");
-                break;
-              }
-            }
-          } else {
-            if (exportObj) {
-              outFile = fileName + "-Obj.obj";
-            }
-            if (outFile != null) {
-              BufferedOutputStream bOut = new BufferedOutputStream(new FileOutputStream(new File(outFile)));
-              out = new PrintStream(bOut);
-            }
-            // Process Materials
-            materials = getMaterials(rootDict);
-            // Process Objects
-            NSObject[] objects = ((NSArray) rootDict.get("Objects")).getArray();
-            processObjects(objects, null, "  ");
-            if (exportObj) {
-              out.println("# WaveFront *.obj file (generated by Cheetah3DParser)\n");
-              // Export Obj materials reference, if any materials defined
-              String matFile = fileName + "-Obj.mtl";
-              out.println("mtllib " + justFile(matFile) + "\n");
-              BufferedOutputStream bOut = new BufferedOutputStream(new FileOutputStream(new File(matFile)));
-              PrintStream matOut = new PrintStream(bOut);
-              // Export default material
-              matOut.println("# WaveFront *.mtl file (generated by Cheetah3DParser)\n");
-              matOut.println("newmtl default");
-              matOut.println("Ns 64");
-              matOut.println("Kd 0.700 0.700 0.700");
-              matOut.println("Ks 1.000 1.000 1.000");
-              matOut.println("Ka 0.700 0.700 0.700");
-              matOut.println();
-              if (materials.size() > 0) {
-                // Export defined materials
-                for (Material material : materials) {
-                  matOut.println("newmtl " + material.getName());
-                  matOut.println("Ns " + material.specSize);
-                  //matOut.println("Tr " + material.??);
-                  matOut.println("Kd " + fmtCoord(material.diffColor));
-                  matOut.println("Ks " + fmtCoord(material.specColor));
-                  //matOut.println("Ka " + fmtCoord(material.??));
-                  for (Material.Texture texture : material.textures) {
-                    switch (texture.getType()) {
-                    case "diffColor":
-                      matOut.println("map_Kd " + justFile(texture.file));
-                      break;
-                    case "specColor":
-                      matOut.println("map_Ns " + justFile(texture.file));
-                      break;
-                    case "reflColor":
-                      break;
-                    case "reflBlur":
-                      break;
-                    case "transColor":
-                      matOut.println("map_d " + justFile(texture.file));
-                     break;
-                    case "transEta":
-                      break;
-                    case "transBlur":
-                      break;
-                    case "emisColor":
-                      break;
-                    case "bumpHeight":
-                      matOut.println("map_bump " + justFile(texture.file));   // TODO distinguish
-                      break;
-                    case "bumpNormalYPlus":
-                      matOut.println("map_bump " + justFile(texture.file));   // TODO
-                      break;
-                    case "bumpNormalYMinus":
-                      matOut.println("map_bump " + justFile(texture.file));   // TODO
-                      break;
-                    }
-                  }
-                }
-              }
-              matOut.flush();
-              matOut.close();
-              int vertexIndex = 0;
-              int coordsIndex = 0;
-              for (Polygon polygon : polygons) {
-                // Alpha_Surface or Alpha_Joints
-                //if ("Alpha_Surface".endsWith(polygon.polygonName)) {
-                //  continue;
-                //}
-                // Export polygon vertices section
-                out.println("g " + polygon.polygonName);
-                for (float[] vert : polygon.vertices) {
-                  out.println("v " + fmtCoord(vert));
-                }
-                out.println();
-                // Export texture coords section
-                for (int ii = 0; ii < polygon.uvcoords.length; ii++) {
-                  String uvStr = fmtUV(polygon.uvcoords[ii]);
-                  out.println("vt " + uvStr);
-                }
-                out.println();
-                if (polygon.material != null) {
-                  out.println("usemtl " + polygon.material.getName());
-                } else {
-                  out.println("usemtl default");
-                }
-                // Export polygon faces section
-                // with vertex normals: "f v1/vt1/vn1 v2/vt2/vn2 v3/vt3/vn3" or without: "f v1/vt1 v2/vt2 v3/vt3"
-                for (int[] points : polygon.polyFaces) {
-                  out.print("f ");
-                  int[][] tmp = new int[points.length][2];
-                  for (int ii = 0; ii < points.length; ii++) {
-                    tmp[ii][0] = vertexIndex + points[ii] + 1;
-                    tmp[ii][1] = coordsIndex++ + 1;
-                  }
-                  // Visit points in reverse order points for Obj format
-                  for (int ii = points.length - 1; ii >= 0; ii--) {
-                    out.print((ii < points.length - 1 ? " " : "") + tmp[ii][0] + "/" + tmp[ii][1]);
-                  }
-                  out.println();
-                }
-                out.println();
-                vertexIndex += polygon.vertices.length;
-              }
-            } else {
-              // List available animation takes
-              NSDictionary takesDict = (NSDictionary) rootDict.get("Takes");
-              NSObject[] takes = ((NSArray) takesDict.get("takes")).getArray();
-              if (takes.length > 0) {
-                out.println("Takes:");
-                for (NSObject nsObject : takes) {
-                  NSDictionary take = (NSDictionary) nsObject;
-                  out.println("  '" + take.get("name") + "'");
-                }
-                if (takesDict.containsKey("currentTake")) {
-                  out.println(pad("CurrentTake:", 16) +  "'" + getString(takesDict, "currentTake") + "'");
-                }
-              }
-              // Print Materials
-              for (Material material : materials) {
-                out.println(pad("Material" + material.index + ":", 16) + "'" + material.getName() + "'");
-                if (showMaterials) {
-                  material.print(out, "  ");
-                }
-              }
-              // Print Polygons
-              for (Polygon polygon : polygons) {
-                out.println(pad("Polygon:", 16) + "'" + polygon.polygonName + "'");
-                polygon.print(out);
-              }
-            }
-          }
+          parser.convert(file, inFile.substring(0, off), outFile);
         } else {
           System.out.println("Unable to read file: " + inFile);
         }
-        out.flush();
-        out.close();
+        parser.out.flush();
+        parser.out.close();
+        if (parser.queryMissed) {
+          System.exit(1);
+        }
       } else {
         System.out.println("Expecting Cheetah 3D .jas file");
       }
@@ -994,170 +1214,396 @@ public class Cheetah3DParser {
     }
   }
 
-  private static String justFile (String filePath) {
-    File file = new File(filePath);
-    return file.getName();
+  /**
+   * Converts a single file for BatchConverter using a new parser, so each job has its own polygons, materials
+   * and output streams.  Console output, such as the default summary, is written to console.
+   */
+  static void convert (String[] switches, File file, PrintStream console) throws Exception {
+    convert(switches, file, console, null);
   }
 
-  private static Node getChildNode (Node node, String name) {
-    NodeList children = node.getChildNodes();
-    if (children.getLength() > 0) {
-      Node child = children.item(0);
-      String cName = child.getNodeName();
-      if (cName.equals(name)) {
-        return child;
+  /**
+   * Converts a single file for WatchConverter, as above, except that OBJ files are written incrementally, using
+   * the chunks rendered by the previous call with the same objCache where possible
+   */
+  static void convert (String[] switches, File file, PrintStream console, ObjCache objCache) throws Exception {
+    Cheetah3DParser parser = new Cheetah3DParser(switches);
+    parser.out = console;
+    parser.objCache = objCache;
+    String path = file.getPath();
+    try {
+      parser.convert(file, path.substring(0, path.toLowerCase().lastIndexOf(".jas")), null);
+    } finally {
+      parser.out.flush();
+      if (parser.out != console) {
+        parser.out.close();
       }
-      return getChildNode(child, name);
     }
-    return null;
   }
 
-  private void processObjects (NSObject[] objects, Polygon polygon, String indent) {
-    for (NSObject object : objects) {
-      NSDictionary objDict = (NSDictionary) object;
-      String objName = getString(objDict, "name");
-      String objType = getString(objDict, "type");
-      if ("NGON".equals(objType)) {
-        polygon = new Polygon(objName, objDict);
-        polygons.add(polygon);
-        // Extract and reorder animation keyframes, if any
-        //processKeyframes(objDict, polygon);
-      } else if ("FOLDER".equals(objType)) {
-        out.println(indent + objType + ": '" + objName + "'");
-        processObjects(((NSArray) objDict.get("childs")).getArray(), polygon, indent + "  ");
-      } else if ("JOINT".equals(objType)) {
-        int id = getInt(objDict, "ID");
-        Joint joint = polygon.idToJoint.get(id);
-        if (joint != null) {
-          if (polygon.rootJoint == null) {
-            polygon.rootJoint = joint;
-          }
-          // Note: not all Joints have names
-          float[] translate = getFloatArray(objDict, "position");
-          float[] rotation = getFloatArray(objDict, "rotation");
-          float[] scale = getFloatArray(objDict, "scale");
-          joint.setInfo(objName, translate, rotation, scale);
-          NSObject[] children = ((NSArray) objDict.get("childs")).getArray();
-          Joint[] childJoints = new Joint[children.length];
-          for (int ii = 0; ii < children.length; ii++) {
-            NSDictionary childDict = (NSDictionary) children[ii];
-            int childId = getInt(childDict, "ID");
-            childJoints[ii] = polygon.idToJoint.get(childId);
-          }
-          joint.sethildren(childJoints);
+  private Cheetah3DParser (String[] switches) {
+    for (String arg : switches) {
+      // Some switches take a value, as in "-cache=<dir>"
+      String name = arg.substring(1);
+      String value = null;
+      int eq = name.indexOf('=');
+      if (eq > 0) {
+        value = name.substring(eq + 1);
+        name = name.substring(0, eq);
+      }
+      switch (name) {
+      case "materials":
+        showMaterials = true;
+        break;
+      case "verts":
+        showVertices = true;
+        break;
+      case "polys":
+        showPolys = true;
+        break;
+      case "uvs":
+        showUVs = true;
+        break;
+      case "weights":
+        showWeights = true;
+        break;
+      case "joints":
+        showJoints = true;
+        break;
+      case "hierarchy":
+        showJointHierarchy = true;
+        break;
+      case "keyframes":
+        showKeyframes = true;
+        break;
+      case "con":
+        consoleOut = true;
+        break;
+      case "raw":
+        showRaw = true;
+        break;
+      case "hex":
+        showHexData = true;   // Raw mode only
+        break;
+      case "sid":
+        suppressId = true;   // Raw mode only
+        break;
+      case "summary":
+        showSummary = true;   // Raw mode only
+        break;
+      case "all":
+        showPolys = showMaterials = showVertices = showPolys = showUVs = showWeights = showJoints = showJointHierarchy =
+                    showKeyframes = true;
+        break;
+      case "obj":
+        exportObj = true;
+        break;
+      case "flipv":
+        vFlip = true;
+        break;
+      case "bvh":
+        bvhFps = getFps(arg, value, BvhWriter.DEFAULT_FPS);
+        break;
+      case "glb":
+        glbFps = getFps(arg, value, GlbWriter.DEFAULT_FPS);
+        break;
+      case "ply":
+        exportPly = true;
+        break;
+      case "stl":
+        exportStl = true;
+        break;
+      case "weld":
+        weldUVs = true;
+        break;
+      case "normals":
+        try {
+          creaseAngle = value != null ? Float.parseFloat(value) : NormalGenerator.DEFAULT_CREASE_ANGLE;
+        } catch (NumberFormatException ex) {
+          creaseAngle = -1;
         }
-        // Extract and reorder animation keyframes, if any
-        processKeyframes(objDict, polygon, joint);
-        processObjects(((NSArray) objDict.get("childs")).getArray(), polygon, indent + "  ");
-      } else if ("CAMERA".equals(objType)) {
-        // Not used
-      }
-    }
-  }
-
-  private void processKeyframes (NSDictionary objDict, Polygon polygon, Joint joint) {
-    if (objDict.containsKey("tracks2")) {
-      Map<String, List<Float[][]>> takeMap = new LinkedHashMap<>();
-      NSObject[] tracks2 = ((NSArray) objDict.get("tracks2")).getArray();
-      for (NSObject nsObject : tracks2) {
-        NSDictionary tracks2Dict = (NSDictionary) nsObject;
-        String parameter = getString(tracks2Dict, "parameter");
-        if ("position".equals(parameter) || "rotation".equals(parameter) || "scale".equals(parameter)) {
-          int parmIdx = parmOrder.get(parameter);
-          NSObject[] pTakes = ((NSArray) tracks2Dict.get("takes")).getArray();
-          for (NSObject pTake : pTakes) {
-            NSDictionary take = (NSDictionary) pTake;
-            String takeName = getString(take, "name");
-            List<Float[][]> takeList;
-            if (!takeMap.containsKey(takeName)) {
-              takeMap.put(takeName, takeList = new ArrayList<>());
-            } else {
-              takeList = takeMap.get(takeName);
-            }
-            NSObject[] fcurves = ((NSArray) take.get("fcurves")).getArray();
-            for (int kk = 0; kk < fcurves.length; kk++) {
-              NSDictionary fcVals = (NSDictionary) fcurves[kk];
-              byte[] data = getDataBytes(fcVals, "keys");
-              int numKeyframes = getInt(data, 0);
-              for (int ll = 0; ll < numKeyframes; ll++) {
-                Float[][] parmValues;
-                if (ll >= takeList.size()) {
-                  parmValues = new Float[3][3];      // position, rotation, scale
-                  takeList.add(parmValues);
-                } else {
-                  parmValues = takeList.get(ll);
-                }
-                int kIdx = ll * 27 + 8 + 20;
-                float kVal = getFloat(data, kIdx);
-                parmValues[parmIdx][kk] = kVal;
-              }
-            }
-          }
+        if (!(creaseAngle >= 0 && creaseAngle <= 180)) {
+          System.out.println("Invalid switch: " + arg + " (expecting crease angle from 0 to 180)");
+          System.exit(1);
         }
+        break;
+      case "lod":
+        lodRatios = getLodRatios(arg, value);
+        break;
+      case "parallel":
+        parallelExport = true;
+        break;
+      case "batch":
+        batch = true;
+        break;
+      case "watch":
+        watch = true;
+        break;
+      case "cache":
+        cacheDir = value != null ? Paths.get(value) : SceneCache.getDefaultDir();
+        break;
+      case "query":
+        try {
+          queries.add(PListQuery.parse(value != null ? value : ""));
+        } catch (IllegalArgumentException ex) {
+          System.out.println("Invalid switch: " + arg + " (" + ex.getMessage() + ")");
+          System.exit(1);
+        }
+        break;
+      case "json":
+        jsonOut = true;   // Query mode only
+        break;
+      case "cacheSize":
+        try {
+          cacheBytes = Long.parseLong(value) * 1024 * 1024;
+        } catch (NumberFormatException ex) {
+          System.out.println("Invalid switch: " + arg + " (expecting size in MB)");
+          System.exit(1);
+        }
+        break;
+      default:
+        System.out.println("Invalid switch: " + arg);
+        System.exit(1);
       }
-      if (showKeyframes) {
-        // Get Keyframes
-        for (String key : takeMap.keySet()) {
-          List<Float[][]> tList = takeMap.get(key);
-          if (tList.size() > 0) {
-            Take take = polygon.getTake(key);
-            String target = joint != null ? joint.jointName : polygon.polygonName;
-            Keyframe[] kfArray = new Keyframe[tList.size()];
-            for (int idx = 0; idx < tList.size(); idx++) {
-              Float[][] keyframe = tList.get(idx);
-              float[] position = new float[] {0, 0, 0};
-              float[] rotation = new float[] {0, 0, 0};
-              float[] scale = new float[] {1, 1, 1};
-              for (int ii = 0; ii < keyframe.length; ii++) {
-                float[] fVal;
-                if (ii == 0) {
-                  fVal = new float[] {0, 0, 0};
-                } else if (ii == 1) {
-                  fVal = new float[] {0, 0, 0};
-                } else {
-                  fVal = new float[] {1, 1, 1};
-                }
-                for (int jj = 0; jj < fVal.length; jj++) {
-                  Float val = keyframe[ii][jj];
-                  if (val != null) {
-                    fVal[jj] = val;
-                  }
-                }
-                if (ii == 0) {
-                  position = fVal;
-                } else if (ii == 1) {
-                  rotation = fVal;
-                } else {
-                  scale = fVal;
-                }
+    }
+  }
+
+  /*
+   * Returns the frame rate given as the value of a switch, such as "-bvh=60", or fps if there is no value
+   */
+  private static float getFps (String arg, String value, float fps) {
+    try {
+      fps = value != null ? Float.parseFloat(value) : fps;
+    } catch (NumberFormatException ex) {
+      fps = -1;
+    }
+    if (!(fps > 0)) {
+      System.out.println("Invalid switch: " + arg + " (expecting frame rate)");
+      System.exit(1);
+    }
+    return fps;
+  }
+
+  private static float[] getLodRatios (String arg, String value) {
+    if (value == null) {
+      return MeshSimplifier.DEFAULT_LEVELS.clone();
+    }
+    String[] parts = value.split(",");
+    float[] ratios = new float[parts.length];
+    for (int ii = 0; ii < parts.length; ii++) {
+      try {
+        ratios[ii] = Float.parseFloat(parts[ii].trim());
+      } catch (NumberFormatException ex) {
+        ratios[ii] = -1;
+      }
+      if (!(ratios[ii] > 0 && ratios[ii] < 1)) {
+        System.out.println("Invalid switch: " + arg + " (expecting fractions between 0 and 1, such as 0.5,0.25,0.1)");
+        System.exit(1);
+      }
+    }
+    return ratios;
+  }
+
+  /*
+   * Returns the meshes to write to the OBJ file, which, if the -lod switch is set, are each mesh followed by its
+   * simplified levels
+   */
+  private List<Mesh> getObjMeshes (Scene scene) {
+    if (lodRatios == null) {
+      return scene.getMeshes();
+    }
+    List<Mesh> meshes = new ArrayList<>();
+    for (Mesh mesh : scene.getMeshes()) {
+      meshes.add(mesh);
+      meshes.addAll(MeshSimplifier.simplify(mesh, lodRatios));
+    }
+    return meshes;
+  }
+
+  private void convert (File file, String fileName, String outFile) throws Exception {
+    if (!queries.isEmpty()) {
+      runQueries(readPList(file), outFile);
+    } else if (showRaw) {
+      Map<String,Object> rootDict = asDict(readPList(file));
+      if (outFile == null) {
+        outFile = fileName + ".txt";
+      }
+      if (!consoleOut) {
+        BufferedOutputStream bOut = new BufferedOutputStream(new FileOutputStream(new File(outFile)));
+        out = new PrintStream(bOut);
+      }
+      // Dump indented text representation of file
+      dumpRaw(rootDict);
+    } else {
+      Scene scene = cacheDir != null ? new SceneCache(cacheDir, cacheBytes).load(file.toPath()) : load(file.toPath());
+      if (exportObj) {
+        outFile = fileName + "-Obj.obj";
+      }
+      FileChannel outChannel = null;
+      if (outFile != null) {
+        FileOutputStream fOut = new FileOutputStream(new File(outFile));
+        outChannel = fOut.getChannel();
+        out = new PrintStream(new BufferedOutputStream(fOut));
+      }
+      for (Scene.Folder folder : scene.getFolders()) {
+        out.println(pad("", 2 * folder.getDepth() + 2) + "FOLDER: '" + folder.getName() + "'");
+      }
+      if (bvhFps > 0) {
+        writeBvh(scene, fileName);
+      }
+      if (glbFps > 0) {
+        try (FileOutputStream fOut = new FileOutputStream(new File(fileName + ".glb"))) {
+          GlbWriter.write(fOut.getChannel(), scene, glbFps);
+        }
+      }
+      if (exportPly) {
+        try (FileOutputStream fOut = new FileOutputStream(new File(fileName + ".ply"))) {
+          PlyWriter.write(fOut.getChannel(), scene.getMeshes(), vFlip);
+        }
+      }
+      if (exportStl) {
+        try (FileOutputStream fOut = new FileOutputStream(new File(fileName + ".stl"))) {
+          StlWriter.write(fOut.getChannel(), scene.getMeshes());
+        }
+      }
+      if (exportObj) {
+        out.println("# WaveFront *.obj file (generated by Cheetah3DParser)\n");
+        // Export Obj materials reference, if any materials defined
+        String matFile = fileName + "-Obj.mtl";
+        out.println("mtllib " + justFile(matFile) + "\n");
+        BufferedOutputStream bOut = new BufferedOutputStream(new FileOutputStream(new File(matFile)));
+        PrintStream matOut = new PrintStream(bOut);
+        // Export default material
+        matOut.println("# WaveFront *.mtl file (generated by Cheetah3DParser)\n");
+        matOut.println("newmtl default");
+        matOut.println("Ns 64");
+        matOut.println("Kd 0.700 0.700 0.700");
+        matOut.println("Ks 1.000 1.000 1.000");
+        matOut.println("Ka 0.700 0.700 0.700");
+        matOut.println();
+        if (scene.getMaterials().size() > 0) {
+          // Export defined materials
+          for (Material material : scene.getMaterials()) {
+            matOut.println("newmtl " + material.getName());
+            matOut.println("Ns " + material.specSize);
+            //matOut.println("Tr " + material.??);
+            matOut.println("Kd " + fmtCoord(material.diffColor));
+            matOut.println("Ks " + fmtCoord(material.specColor));
+            //matOut.println("Ka " + fmtCoord(material.??));
+            for (Material.Texture texture : material.getTextures()) {
+              switch (texture.getType()) {
+              case "diffColor":
+                matOut.println("map_Kd " + justFile(texture.file));
+                break;
+              case "specColor":
+                matOut.println("map_Ns " + justFile(texture.file));
+                break;
+              case "reflColor":
+                break;
+              case "reflBlur":
+                break;
+              case "transColor":
+                matOut.println("map_d " + justFile(texture.file));
+               break;
+              case "transEta":
+                break;
+              case "transBlur":
+                break;
+              case "emisColor":
+                break;
+              case "bumpHeight":
+                matOut.println("map_bump " + justFile(texture.file));   // TODO distinguish
+                break;
+              case "bumpNormalYPlus":
+                matOut.println("map_bump " + justFile(texture.file));   // TODO
+                break;
+              case "bumpNormalYMinus":
+                matOut.println("map_bump " + justFile(texture.file));   // TODO
+                break;
               }
-              kfArray[idx] = new Keyframe(position, rotation, scale);
             }
-            take.addKeyframes(target, kfArray);
           }
         }
+        matOut.flush();
+        matOut.close();
+        // Write polygon sections directly to the file's channel (after header text written by out)
+        out.flush();
+        List<Mesh> objMeshes = getObjMeshes(scene);
+        if (objCache != null) {
+          writeObjIncremental(outChannel, getObjChunks(objMeshes), objCache);
+        } else if (parallelExport) {
+          writeObjParallel(outChannel, getObjChunks(objMeshes));
+        } else {
+          AsciiWriter objOut = new AsciiWriter(outChannel, 1 << 20);
+          int vertexIndex = 0;
+          int coordsIndex = 0;
+          int normalIndex = 0;
+          for (Mesh mesh : objMeshes) {
+            // Alpha_Surface or Alpha_Joints
+            //if ("Alpha_Surface".endsWith(mesh.getName())) {
+            //  continue;
+            //}
+            VertexWelder.Welded welded = getObjWelded(mesh);
+            NormalGenerator.Normals normals = getObjNormals(mesh);
+            writeObj(objOut, mesh, welded, normals, vertexIndex, coordsIndex, normalIndex);
+            coordsIndex += welded != null ? getObjUVCount(mesh, welded) : mesh.faceIndices.length;
+            normalIndex += getObjNormalCount(normals);
+            vertexIndex += mesh.getVertexCount();
+          }
+          objOut.flush();
+        }
+      } else if (bvhFps == 0 && glbFps == 0 && !exportPly && !exportStl) {
+        // List available animation takes
+        List<String> takes = scene.getTakeNames();
+        if (takes.size() > 0) {
+          out.println("Takes:");
+          for (String take : takes) {
+            out.println("  '" + take + "'");
+          }
+          if (scene.getCurrentTake() != null) {
+            out.println(pad("CurrentTake:", 16) +  "'" + scene.getCurrentTake() + "'");
+          }
+        }
+        // Print Materials
+        for (Material material : scene.getMaterials()) {
+          out.println(pad("Material" + material.getIndex() + ":", 16) + "'" + material.getName() + "'");
+          if (showMaterials) {
+            printMaterial(material, "  ");
+          }
+        }
+        // Print Polygons
+        for (Mesh mesh : scene.getMeshes()) {
+          out.println(pad("Polygon:", 16) + "'" + mesh.getName() + "'");
+          printMesh(mesh);
+        }
       }
     }
   }
 
+  private static String justFile (String filePath) {
+    File file = new File(filePath);
+    return file.getName();
+  }
+
   private static String fmtFloat (float fVal) {
-    fVal = fVal == -0 ? 0 : fVal;
-    if (Math.abs(fVal) > 100000) {
-      return String.format((fVal >= 0 ? " %e" : "%e"), fVal);
-    } else {
-      return (fVal >= 0 ? " " : "") + df.format(fVal);
-    }
+    byte[] buf = new byte[32];
+    int len = AsciiWriter.putFloat(buf, 0, fVal);
+    return new String(buf, 0, len, StandardCharsets.US_ASCII);
   }
 
-  private static String fmtUV (float[] val) {
-    return fmtFloat(val[0]) + " " + fmtFloat(val[1]);
+  private static String fmtUV (float u, float v) {
+    return fmtFloat(u) + " " + fmtFloat(v);
   }
 
   private static String fmtCoord (float[] val) {
     if (val == null) {
       return "null";
     }
-    return fmtFloat(val[0]) + " " + fmtFloat(val[1]) + " " + fmtFloat(val[2]);
+    return fmtCoord(val[0], val[1], val[2]);
+  }
+
+  private static String fmtCoord (float x, float y, float z) {
+    return fmtFloat(x) + " " + fmtFloat(y) + " " + fmtFloat(z);
   }
 
   private static String pad (String str, int minLength) {
@@ -1172,307 +1618,641 @@ public class Cheetah3DParser {
     return fmtFloat(ary[0]) + " " + fmtFloat(ary[1]) + " " + fmtFloat(ary[2]) + " " + fmtFloat(ary[3]);
   }
 
-  private static int getInt (NSDictionary dict, String key) {
-    return ((NSNumber) dict.get(key)).intValue();
+  private static int getInt (Map<String,Object> dict, String key) {
+    return ((Number) dict.get(key)).intValue();
   }
 
-  private static float getFloat (NSDictionary dict, String key) {
-    return ((NSNumber) dict.get(key)).floatValue();
+  private static float getFloat (Map<String,Object> dict, String key) {
+    return ((Number) dict.get(key)).floatValue();
   }
 
-  private static boolean getBoolean (NSDictionary dict, String key) {
-    return ((NSNumber) dict.get(key)).boolValue();
+  private static boolean getBoolean (Map<String,Object> dict, String key) {
+    return (Boolean) dict.get(key);
   }
 
-  private static String getString (NSDictionary dict, String key) {
+  private static String getString (Map<String,Object> dict, String key) {
     return dict.get(key).toString();
   }
 
-  private static float[] getFloatArray (NSDictionary dict, String key) {
-    NSObject[] ary = ((NSArray) dict.get(key)).getArray();
-    float[] fVals = new float[ary.length];
-    for (int ii = 0; ii < ary.length; ii++) {
-      NSNumber nbr = (NSNumber) ary[ii];
-      fVals[ii] = nbr.floatValue();
+  @SuppressWarnings("unchecked")
+  private static Map<String,Object> asDict (Object obj) {
+    return (Map<String,Object>) obj;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Object> getArray (Map<String,Object> dict, String key) {
+    return (List<Object>) dict.get(key);
+  }
+
+  private static float[] getFloatArray (Map<String,Object> dict, String key) {
+    List<Object> ary = getArray(dict, key);
+    float[] fVals = new float[ary.size()];
+    for (int ii = 0; ii < fVals.length; ii++) {
+      fVals[ii] = ((Number) ary.get(ii)).floatValue();
     }
     return fVals;
   }
 
-  private static int[] getDataInts (NSDictionary dict, String key) {
-    byte[] data = getDataBytes(dict, key);
-    int[] ints = new int[data.length / 4];
-    for (int ii = 0; ii < data.length; ii += 4) {
-      ints[ii >> 2] = getInt(data, ii);
-    }
-    return ints;
+  private static float[] getDataFloats (Map<String,Object> dict, String key) {
+    return DataDecoder.getFloats(getData(dict, key));
   }
 
-  private static float[] getDataFloats (NSDictionary dict, String key) {
-    int[] ints = getDataInts(dict, key);
-    float[] floats = new float[ints.length];
-    for (int ii = 0; ii < ints.length; ii++) {
-      floats[ii] = Float.intBitsToFloat(ints[ii]);
-    }
-    return floats;
+  private static ByteBuffer getData (Map<String,Object> dict, String key) {
+    return (ByteBuffer) dict.get(key);
   }
 
-  private static byte[] getDataBytes (NSDictionary dict, String key) {
-    NSData nData = (NSData) dict.get(key);
-    return nData.bytes();
+  private static byte[] getBytes (ByteBuffer data) {
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    return bytes;
   }
 
-  private void enumerate (List<String> path, List<NSObject> pList, int lIdx, String dKey, NSObject cObj, NSObject pObj,
-                                 String indent) throws Exception {
-    if (cObj instanceof NSArray) {
-      NSArray nAry = (NSArray) cObj;
-      if (!(pObj instanceof NSArray) && !(pObj instanceof NSDictionary)) {
-        out.print(getPath(path) + (pObj == null ? " " : ""));
-      }
-      out.println("Array (" + nAry.count() + " items)");
-      NSObject[] oArr = nAry.getArray();
-      int idx = 0;
-      for (NSObject aObj : oArr) {
-        out.print(indent + getPath(path) + "[" + idx + "] ");
-        path.add("[" + idx + "]");
-        enumerate(path, pList, idx, null, aObj, cObj, indent + " ");
-        if (path.size() > 0) {
-          path.remove(path.size() - 1);
-        }
-        idx++;
+  /*
+   * Reads a plist file into a tree of Map, List, ByteBuffer, String, Number and Boolean objects.  Binary plists
+   * (all .jas files) are memory mapped and decoded lazily by BinaryPList, while any other format falls back to
+   * dd-plist's parser.
+   */
+  private static Object readPList (File file) throws IOException {
+    return parsePList(BinaryPList.map(file));
+  }
+
+  private static Object parsePList (ByteBuffer buf) throws IOException {
+    if (BinaryPList.isBinary(buf)) {
+      return BinaryPList.parse(buf);
+    }
+    try {
+      return fromNSObject(PropertyListParser.parse(getBytes(buf)));
+    } catch (IOException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new IOException("Unable to parse plist: " + ex.getMessage(), ex);
+    }
+  }
+
+  private static Object fromNSObject (NSObject obj) {
+    if (obj instanceof NSDictionary) {
+      NSDictionary nDict = (NSDictionary) obj;
+      Map<String,Object> map = new LinkedHashMap<>();
+      for (String key : nDict.allKeys()) {
+        map.put(key, fromNSObject(nDict.objectForKey(key)));
       }
-    } else if (cObj instanceof NSDictionary) {
-      NSDictionary nDict = (NSDictionary) cObj;
-      NSObject name = nDict.get("name");
-      if (!(pObj instanceof NSArray) && !(pObj instanceof NSDictionary)) {
-        out.print(getPath(path) + (pObj == null ? " " : ""));
+      return Collections.unmodifiableMap(map);
+    } else if (obj instanceof NSArray) {
+      List<Object> list = new ArrayList<>();
+      for (NSObject item : ((NSArray) obj).getArray()) {
+        list.add(fromNSObject(item));
       }
-      out.println("Dictionary (" + nDict.count() + " items)" + (name != null ? " - name: " + name : ""));
-      if (nDict.count() > 0) {
-        pList.add(nDict);
+      return Collections.unmodifiableList(list);
+    } else if (obj instanceof NSData) {
+      return ByteBuffer.wrap(((NSData) obj).bytes()).asReadOnlyBuffer();
+    } else if (obj instanceof NSNumber) {
+      NSNumber nNum = (NSNumber) obj;
+      switch (nNum.type()) {
+      case NSNumber.INTEGER:
+        return nNum.longValue();
+      case NSNumber.REAL:
+        return nNum.doubleValue();
+      default:
+        return nNum.boolValue();
       }
-      for (String key : nDict.allKeys()) {
-        NSObject dObj = nDict.objectForKey(key);
-        out.print(indent + getPath(path) + "." + key + ": ");
-        path.add(key);
-        enumerate(path, pList, lIdx, key, dObj, cObj, indent + " ");
-        if (path.size() > 0) {
-          path.remove(path.size() - 1);
-        }
+    } else if (obj instanceof NSString) {
+      return obj.toString();
+    }
+    return obj != null ? obj.toJavaObject() : null;
+  }
+
+  private static final int   RAW_BLOCK = 64 * 1024;
+  private static final long  RAW_PARALLEL_MAX_BYTES = 1024 * 1024;
+
+  private interface RawRender {
+    void render (RawDumper dumper) throws Exception;
+  }
+
+  /*
+   * An independent subtree of the -raw dump, such as Objects[ii]
+   */
+  private static final class RawPart {
+    private final Object      node;     // subtree, or null if it holds no data
+    private final RawRender   render;
+
+    RawPart (Object node, RawRender render) {
+      this.node = node;
+      this.render = render;
+    }
+
+    /*
+     * Returns true if the subtree holds more than RAW_PARALLEL_MAX_BYTES of data.  This walks, and so decodes, the
+     * whole subtree, so is only called for -parallel.
+     */
+    boolean isLarge () {
+      return getDataBytes(node) > RAW_PARALLEL_MAX_BYTES;
+    }
+  }
+
+  /*
+   * Writes the results of the -query switches, as text or JSON, to outFile, or the console.  Queries which select
+   * nothing are noted, so that main() can exit with an error code.
+   */
+  private void runQueries (Object root, String outFile) throws IOException {
+    if (outFile != null) {
+      out = new PrintStream(new BufferedOutputStream(new FileOutputStream(new File(outFile))));
+    }
+    AsciiWriter writer = new AsciiWriter(Channels.newChannel(out), RAW_BLOCK);
+    Map<String,List<PListQuery.Result>> results = new LinkedHashMap<>();
+    for (PListQuery query : queries) {
+      List<PListQuery.Result> found = query.evaluate(root);
+      if (found.isEmpty()) {
+        queryMissed = true;
       }
-      if (nDict.count() > 0) {
-        pList.remove(pList.size() - 1);
-      }
-      //} else if (obj instanceof NSSet) {
-      //  NSSet nSet = (NSSet) obj;
-      //  // Not used by Cheetah 3D
-      //  out.println("NSSet (" + nSet.count() + " items)");
-    } else if (cObj instanceof NSString) {
-      NSString nStr = (NSString) cObj;
-      if ("xmlDef".equals(dKey)) {
-        out.println("XML String: ");
-        printXml(indent, nStr.toString());
+      if (jsonOut) {
+        results.put(query.getExpression(), found);
+      } else if (found.isEmpty()) {
+        writer.append("No match: ").append(query.getExpression()).newLine();
       } else {
-        out.println("= '" + nStr.toString() + "'");
+        PListQuery.writeText(writer, found);
       }
-    } else if (cObj instanceof NSNumber) {
-      NSNumber nNum = (NSNumber) cObj;
-      switch (nNum.type()) {
-      case 0:   // Integer
-        int iVal = nNum.intValue();
-        if (suppressId && ("ID".equals(dKey) || "linkID".equals(dKey))) {
-          out.println("= <suppressed>");
+    }
+    if (jsonOut) {
+      PListQuery.writeJson(writer, results);
+    }
+    writer.flush();
+  }
+
+  /*
+   * Writes the indented text dump of rootDict to out.  Each top-level item, and each item of a top-level array,
+   * such as Objects[ii] and Materials3[ii], is dumped separately.  With -parallel, these are rendered to separate
+   * buffers on the common ForkJoinPool and written in their original order, except for subtrees holding a lot of
+   * data, which are written directly by this thread so their (very long) dumps are not held in memory.
+   */
+  private void dumpRaw (Map<String,Object> rootDict) throws Exception {
+    List<RawPart> parts = new ArrayList<>();
+    for (Map.Entry<String,Object> entry : rootDict.entrySet()) {
+      String key = entry.getKey();
+      Object obj = entry.getValue();
+      switch (key) {
+      case "Render":
+      case "Objects":
+      case "Takes":
+      case "Materials3":
+      case "Dynamics":
+      case "Animation":
+      case "Layer":
+        if (obj instanceof List) {
+          List<?> list = (List<?>) obj;
+          parts.add(new RawPart(null, dumper -> dumper.dumpHeader(key, list)));
+          for (int ii = 0; ii < list.size(); ii++) {
+            int idx = ii;
+            parts.add(new RawPart(list.get(ii), dumper -> dumper.dumpItem(key, list, idx)));
+          }
         } else {
-          out.println("= " + iVal + " (0x" + Integer.toHexString(iVal).toUpperCase() + ")");
+          parts.add(new RawPart(obj, dumper -> dumper.dump(key, obj)));
         }
         break;
-      case 1:   // Real
-        float fVal = nNum.floatValue();
-        out.println("= " + fmtFloat(fVal));
-        break;
-      case 2:   // Boolean
-        out.println("= " + nNum.boolValue());
+      case "Version":
+        String version = "Version = '" + obj.toString().trim() + "'";
+        parts.add(new RawPart(null, dumper -> dumper.println(version)));
         break;
       }
-    } else if (cObj instanceof NSData) {
-      boolean isMatrix = "transformMatrix".equals(dKey) || "transformAssociateModelMatrix".equals(dKey) ||
-                         "transformLinkMatrix".equals(dKey);
-      boolean isKeys = "keys".equals(dKey);
-      boolean isVertex = "vertex".equals(dKey);
-      boolean uvcoords = "uvcoords".equals(dKey);
-      boolean isCData = "cdata".equals(dKey);
-      boolean isPolygons = "polygons".equals(dKey);
-      boolean isPointArray = "pointArray".equals(getValue(pList, -1, "parameter"));
-      boolean isSpecial = !(isMatrix | isKeys | isVertex | uvcoords | isCData | isPolygons | isPointArray);
-      NSData nData = (NSData) cObj;
-      byte[] data = nData.bytes();
-      out.print("Data (" + data.length + " bytes)");
-      String name = getValue(pList, -1, "name");
-      if (name != null) {
-        out.print(" - name: " + name);
-      }
-      out.println();
-      if (isKeys) {
-        int idx = 0;
-        String jointName = getValue(pList, -4, "name");
-        String jointType = getValue(pList, -3, "parameter");
-        if (jointType != null) {
-          String[] jType = {"X", "Y", "Z"};
-          jointType += " " + jType[lIdx];
+    }
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    int window = Math.max(2, pool.getParallelism() * 2);
+    WritableByteChannel channel = Channels.newChannel(out);
+    Deque<ForkJoinTask<RawDumper>> pending = new ArrayDeque<>();
+    for (RawPart part : parts) {
+      if (parallelExport && !part.isLarge()) {
+        if (pending.size() >= window) {
+          join(pending.removeFirst()).writeTo(channel);
         }
-        if (jointName != null && jointType != null) {
-          out.println(indent + "// Joint:  " + jointName + " - " + jointType);
+        pending.add(pool.submit(() -> {
+          RawDumper dumper = new RawDumper(null);
+          part.render.render(dumper);
+          return dumper;
+        }));
+      } else {
+        while (!pending.isEmpty()) {
+          join(pending.removeFirst()).writeTo(channel);
         }
-        for (int ii = 0; ii < 8 && idx < data.length; ii++) {
-          printHex(data, indent, ii);
-          if ((ii & 3) == 3) {
-            int intVal = getInt(data, idx - 3);
-            out.print(String.format("%2d", intVal));
-            if (idx == 3) {
-              out.println("          <- number of keyframes");
-            } else if (idx == 7) {
-              out.println("          <- always 27");
-            }
-          }
+        RawDumper dumper = new RawDumper(channel);
+        part.render.render(dumper);
+        dumper.writeTo(channel);
+      }
+    }
+    while (!pending.isEmpty()) {
+      join(pending.removeFirst()).writeTo(channel);
+    }
+  }
+
+  /*
+   * Returns the total size of the data values in node, and its children
+   */
+  private static long getDataBytes (Object node) {
+    long bytes = 0;
+    if (node instanceof List) {
+      for (Object item : (List<?>) node) {
+        bytes += getDataBytes(item);
+      }
+    } else if (node instanceof Map) {
+      for (Object item : ((Map<?,?>) node).values()) {
+        bytes += getDataBytes(item);
+      }
+    } else if (node instanceof ByteBuffer) {
+      bytes = ((ByteBuffer) node).remaining();
+    }
+    return bytes;
+  }
+
+  /*
+   * Writes the -raw dump of one subtree of the plist.  The path to the current node, such as "Objects[2].name", is
+   * kept in a single StringBuilder: each level appends its key, or index and truncates back to its mark on
+   * return.  Text, including the hex and number columns of Data values, is formatted directly into an
+   * AsciiWriter which, if sink is set, is written to sink each time its RAW_BLOCK sized buffer fills.
+   */
+  private final class RawDumper {
+    private final StringBuilder   path = new StringBuilder();
+    private final AsciiWriter     buf;
+
+    RawDumper (WritableByteChannel sink) {
+      buf = sink != null ? new AsciiWriter(sink, RAW_BLOCK) : new AsciiWriter(RAW_BLOCK);
+    }
+
+    /*
+     * Dumps the whole of the top-level item key
+     */
+    void dump (String key, Object obj) throws Exception {
+      path.setLength(0);
+      path.append(key);
+      enumerate(new ArrayList<>(), 0, null, obj, null, " ");
+    }
+
+    /*
+     * Dumps the header line for top-level array key, but not its items
+     */
+    void dumpHeader (String key, List<?> list) throws IOException {
+      buf.append(key).append(" Array (").append(list.size()).append(" items)");
+      buf.newLine();
+    }
+
+    /*
+     * Dumps item idx of top-level array key
+     */
+    void dumpItem (String key, List<?> list, int idx) throws Exception {
+      path.setLength(0);
+      path.append(key).append('[').append(idx).append(']');
+      buf.append(' ').append(path).append(' ');
+      enumerate(new ArrayList<>(), idx, null, list.get(idx), list, "  ");
+    }
+
+    void println (String line) throws IOException {
+      buf.append(line).newLine();
+    }
+
+    void writeTo (WritableByteChannel channel) throws IOException {
+      buf.writeTo(channel);
+    }
+
+    private void enumerate (List<Map<String,Object>> pList, int lIdx, String dKey, Object cObj, Object pObj,
+                            String indent) throws Exception {
+      if (cObj instanceof List) {
+        List<?> nAry = (List<?>) cObj;
+        if (!(pObj instanceof List) && !(pObj instanceof Map)) {
+          buf.append(path).append(pObj == null ? " " : "");
+        }
+        buf.append("Array (").append(nAry.size()).append(" items)");
+        buf.newLine();
+        String cIndent = indent + " ";
+        int mark = path.length();
+        int idx = 0;
+        for (Object aObj : nAry) {
+          path.append('[').append(idx).append(']');
+          buf.append(indent).append(path).append(' ');
+          enumerate(pList, idx, null, aObj, cObj, cIndent);
+          path.setLength(mark);
           idx++;
         }
-        while (idx < data.length) {
-          for (int ii = 0; ii < 27 && idx < data.length; ii++) {
-            printHex(data, indent, ii);
-            if ((ii & 3) == 3) {
-              float fVal = getFloat(data, idx - 3);
-              out.print(fmtFloat(fVal));
-              if ((ii >> 2) == 5) {
-                out.print("  <- keyframe value, index " + ((idx - 31) / 27));
-              }
-              out.println();
-            }
-            if (ii >= 24 && !showHexData) {
-              out.print((((ii - 24) & 3) == 0 ? "" : " ") + String.format("%02X", data[idx]));
-            }
-            idx++;
-          }
-          out.println();
+      } else if (cObj instanceof Map) {
+        Map<String,Object> nDict = asDict(cObj);
+        Object name = nDict.get("name");
+        if (!(pObj instanceof List) && !(pObj instanceof Map)) {
+          buf.append(path).append(pObj == null ? " " : "");
         }
-      } else {
-        if (isPointArray) {
-          out.println(indent + " // pointArray");
+        buf.append("Dictionary (").append(nDict.size()).append(" items)");
+        if (name != null) {
+          buf.append(" - name: ").append(name.toString());
         }
-        if (isCData) {
-          out.println(indent + " // even/odd values contain <vertex index>/<joint weight> values");
+        buf.newLine();
+        if (nDict.size() > 0) {
+          pList.add(nDict);
         }
-        if (isPolygons) {
-          out.println(indent + " // negative values indicate number of sides");
+        String cIndent = indent + " ";
+        int mark = path.length();
+        for (Map.Entry<String,Object> entry : nDict.entrySet()) {
+          String key = entry.getKey();
+          Object dObj = entry.getValue();
+          path.append('.').append(key);
+          buf.append(indent).append(path).append(": ");
+          enumerate(pList, lIdx, key, dObj, cObj, cIndent);
+          path.setLength(mark);
         }
-        if (isSpecial) {
-          out.println(indent + " // bytes      ltl Endian    big Endian");
+        if (nDict.size() > 0) {
+          pList.remove(pList.size() - 1);
         }
-        if (uvcoords) {
-          out.println(indent + " // first pair of float values in each set is UV Coord set 0, 2nd is set 1");
-          out.println(indent + " // V coord is 1.0 - V in OBJ files");
+        //} else if (obj instanceof NSSet) {
+        //  NSSet nSet = (NSSet) obj;
+        //  // Not used by Cheetah 3D
+        //  out.println("NSSet (" + nSet.count() + " items)");
+      } else if (cObj instanceof String) {
+        if ("xmlDef".equals(dKey)) {
+          buf.append("XML String: ");
+          buf.newLine();
+          printXml(indent, (String) cObj);
+        } else {
+          buf.append("= '").append((String) cObj).append('\'');
+          buf.newLine();
         }
-        indent += " ";
-        for (int ii = 0; ii < data.length; ii++) {
-          if (isSpecial) {
-            out.print(((ii & 3) == 0 ? indent : " ") + String.format("%02X", data[ii]) + ((ii & 3) == 3 ? " = " : ""));
-            if ((ii & 3) == 3 || ii == data.length - 1) {
-              int lEnd = data[ii] << 24 | (data[ii - 1] & 0xFF) << 16 | (data[ii - 2] & 0xFF) << 8 | (data[ii - 3] & 0xFF);
-              int bEnd = data[ii - 3] << 24 | (data[ii - 2] & 0xFF) << 16 | (data[ii - 1] & 0xFF) << 8 | (data[ii] & 0xFF);
-              out.println(String.format("0x%09X", bEnd) + " : " + String.format("0x%09X", lEnd));
-            }
-          } else {
+      } else if (cObj instanceof Boolean) {
+        buf.append("= ").append(cObj.toString());
+        buf.newLine();
+      } else if (cObj instanceof Double || cObj instanceof Float) {
+        float fVal = ((Number) cObj).floatValue();
+        buf.append("= ").appendFloat(fVal);
+        buf.newLine();
+      } else if (cObj instanceof Number) {
+        int iVal = ((Number) cObj).intValue();
+        if (suppressId && ("ID".equals(dKey) || "linkID".equals(dKey))) {
+          buf.append("= <suppressed>");
+          buf.newLine();
+        } else {
+          buf.append("= ").append(iVal).append(" (0x").append(Integer.toHexString(iVal).toUpperCase()).append(')');
+          buf.newLine();
+        }
+      } else if (cObj instanceof ByteBuffer) {
+        boolean isMatrix = "transformMatrix".equals(dKey) || "transformAssociateModelMatrix".equals(dKey) ||
+                           "transformLinkMatrix".equals(dKey);
+        boolean isKeys = "keys".equals(dKey);
+        boolean isVertex = "vertex".equals(dKey);
+        boolean uvcoords = "uvcoords".equals(dKey);
+        boolean isCData = "cdata".equals(dKey);
+        boolean isPolygons = "polygons".equals(dKey);
+        boolean isPointArray = "pointArray".equals(getValue(pList, -1, "parameter"));
+        boolean isSpecial = !(isMatrix | isKeys | isVertex | uvcoords | isCData | isPolygons | isPointArray);
+        ByteBuffer nData = (ByteBuffer) cObj;
+        buf.append("Data (").append(nData.remaining()).append(" bytes)");
+        String name = getValue(pList, -1, "name");
+        if (name != null) {
+          buf.append(" - name: ").append(name);
+        }
+        buf.newLine();
+        if (isKeys) {
+          String jointName = getValue(pList, -4, "name");
+          String jointType = getValue(pList, -3, "parameter");
+          if (jointType != null) {
+            String[] jType = {"X", "Y", "Z"};
+            jointType += " " + jType[lIdx];
+          }
+          if (jointName != null && jointType != null) {
+            buf.append(indent).append("// Joint:  ").append(jointName).append(" - ").append(jointType);
+            buf.newLine();
+          }
+        }
+        BlobStats.Layout layout = isVertex ? BlobStats.VERTEX : uvcoords ? BlobStats.UVCOORDS :
+                                  isCData ? BlobStats.CDATA : isPolygons ? BlobStats.POLYGONS :
+                                  isKeys ? BlobStats.KEYS : isPointArray ? BlobStats.POINT_ARRAY : null;
+        if (showSummary && layout != null) {
+          printSummary(new BlobStats(nData, layout), indent + " ");
+          return;
+        }
+        byte[] data = getBytes(nData);
+        if (isKeys) {
+          int idx = 0;
+          for (int ii = 0; ii < 8 && idx < data.length; ii++) {
             printHex(data, indent, ii);
-            if ((ii & 3) == 3 || ii == data.length - 1) {
-              int fIndx = ii >> 2;
-              if (isVertex || uvcoords) {
-                out.print(fmtFloat(getFloat(data, ii - 3)));
-                if (uvcoords) {
-                  if ((fIndx & 3) == 0) {
-                    out.print("  <- UV set 0, index " + (fIndx / 4));
-                  }
-                  if ((fIndx & 3) == 2) {
-                    out.print("  <- UV set 1, index " + (fIndx / 4));
-                  }
-                } else {
-                  if ((fIndx & 3) == 0) {
-                    out.print("  <- index " + (fIndx / 4));
-                  }
+            if ((ii & 3) == 3) {
+              int intVal = getInt(data, idx - 3);
+              buf.append(intVal, 2);
+              if (idx == 3) {
+                buf.append("          <- number of keyframes");
+                buf.newLine();
+              } else if (idx == 7) {
+                buf.append("          <- always 27");
+                buf.newLine();
+              }
+            }
+            idx++;
+          }
+          while (idx < data.length) {
+            for (int ii = 0; ii < 27 && idx < data.length; ii++) {
+              printHex(data, indent, ii);
+              if ((ii & 3) == 3) {
+                float fVal = getFloat(data, idx - 3);
+                buf.appendFloat(fVal);
+                if ((ii >> 2) == 5) {
+                  buf.append("  <- keyframe value, index ").append((idx - 31) / 27);
                 }
-              } else if (isMatrix) {
-                out.print(fmtFloat(getFloat(data, ii - 3)));
-                int idx = ii >> 2;
-                out.print("  <- row " + (idx / 4) + ", col " + (idx % 4));
-              } else if (isPolygons) {
-                // Print polygon to vertex index info
-                out.print(String.format("%2d", getInt(data, ii - 3)));
-              } else if (isCData) {
-                // Print vextex/weight info
-                if ((fIndx & 1) == 0) {
-                  out.print(String.format("%9d", getInt(data, ii - 3)) + "  <- vertex index");
-                } else {
-                  out.print(fmtFloat(getFloat(data, ii - 3)) + "  <- weight");
+                buf.newLine();
+              }
+              if (ii >= 24 && !showHexData) {
+                if (((ii - 24) & 3) != 0) {
+                  buf.append(' ');
                 }
-              } else if (isPointArray) {
-                // Note: litle endian format
-                int intVal = data[ii] << 24 | (data[ii - 1] & 0xFF) << 16 | (data[ii - 2] & 0xFF) << 8 | (data[ii - 3] & 0xFF);
-                int idx = ii >> 2;
-                if (idx < 4) {
-                  out.print(String.format("%9d", intVal));
-                  if (idx == 0) {
-                    out.print("  <- number of points");
-                  } else if (idx == 1) {
-                    out.print("  <- number of floats/point");
+                buf.appendHex(data[idx]);
+              }
+              idx++;
+            }
+            buf.newLine();
+          }
+        } else {
+          IntBuffer pointHeader = null;
+          float[] points = null;
+          if (isPointArray) {
+            buf.append(indent).append(" // pointArray");
+            buf.newLine();
+            pointHeader = DataDecoder.intView(nData, ByteOrder.LITTLE_ENDIAN);
+            points = DataDecoder.getPointArray(nData);
+          }
+          if (isCData) {
+            buf.append(indent).append(" // even/odd values contain <vertex index>/<joint weight> values");
+            buf.newLine();
+          }
+          if (isPolygons) {
+            buf.append(indent).append(" // negative values indicate number of sides");
+            buf.newLine();
+          }
+          if (isSpecial) {
+            buf.append(indent).append(" // bytes      ltl Endian    big Endian");
+            buf.newLine();
+          }
+          if (uvcoords) {
+            buf.append(indent).append(" // first pair of float values in each set is UV Coord set 0, 2nd is set 1");
+            buf.newLine();
+            buf.append(indent).append(" // V coord is 1.0 - V in OBJ files");
+            buf.newLine();
+          }
+          indent += " ";
+          for (int ii = 0; ii < data.length; ii++) {
+            if (isSpecial) {
+              buf.append((ii & 3) == 0 ? indent : " ").appendHex(data[ii]).append((ii & 3) == 3 ? " = " : "");
+              if ((ii & 3) == 3 || ii == data.length - 1) {
+                int lEnd = data[ii] << 24 | (data[ii - 1] & 0xFF) << 16 | (data[ii - 2] & 0xFF) << 8 | (data[ii - 3] & 0xFF);
+                int bEnd = data[ii - 3] << 24 | (data[ii - 2] & 0xFF) << 16 | (data[ii - 1] & 0xFF) << 8 | (data[ii] & 0xFF);
+                // Same as String.format("0x%09X", val) for each value
+                buf.append("0x0").appendHex(bEnd, 8).append(" : 0x0").appendHex(lEnd, 8);
+                buf.newLine();
+              }
+            } else {
+              printHex(data, indent, ii);
+              if ((ii & 3) == 3 || ii == data.length - 1) {
+                int fIndx = ii >> 2;
+                if (isVertex || uvcoords) {
+                  buf.appendFloat(getFloat(data, ii - 3));
+                  if (uvcoords) {
+                    if ((fIndx & 3) == 0) {
+                      buf.append("  <- UV set 0, index ").append(fIndx / 4);
+                    }
+                    if ((fIndx & 3) == 2) {
+                      buf.append("  <- UV set 1, index ").append(fIndx / 4);
+                    }
+                  } else {
+                    if ((fIndx & 3) == 0) {
+                      buf.append("  <- index ").append(fIndx / 4);
+                    }
                   }
-                } else {
-                  out.print(fmtFloat(Float.intBitsToFloat(intVal)));
-                  if ((idx - 4) % 3 == 0) {
-                    out.print("  <- index " + ((idx - 4) / 3));
+                } else if (isMatrix) {
+                  buf.appendFloat(getFloat(data, ii - 3));
+                  int idx = ii >> 2;
+                  buf.append("  <- row ").append(idx / 4).append(", col ").append(idx % 4);
+                } else if (isPolygons) {
+                  // Print polygon to vertex index info
+                  buf.append(getInt(data, ii - 3), 2);
+                } else if (isCData) {
+                  // Print vextex/weight info
+                  if ((fIndx & 1) == 0) {
+                    buf.append(getInt(data, ii - 3), 9).append("  <- vertex index");
+                  } else {
+                    buf.appendFloat(getFloat(data, ii - 3)).append("  <- weight");
+                  }
+                } else if (isPointArray) {
+                  // Note: litle endian format, decoded above
+                  int idx = ii >> 2;
+                  if (idx < 4 && idx < pointHeader.limit()) {
+                    buf.append(pointHeader.get(idx), 9);
+                    if (idx == 0) {
+                      buf.append("  <- number of points");
+                    } else if (idx == 1) {
+                      buf.append("  <- number of floats/point");
+                    }
+                  } else if (idx >= 4 && idx - 4 < points.length) {
+                    buf.appendFloat(points[idx - 4]);
+                    if ((idx - 4) % 3 == 0) {
+                      buf.append("  <- index ").append((idx - 4) / 3);
+                    }
                   }
                 }
+                buf.newLine();
               }
-              out.println();
             }
           }
         }
+      } else {
+        throw new IllegalStateException("Unknown type: " + cObj);
       }
-    } else {
-      throw new IllegalStateException("Unknown type: " + cObj.toString());
     }
-  }
 
-  private void printHex (byte[] data, String indent, int ii) {
-    if ((ii & 3) == 0) {
-      out.print(indent);
-    } else if (showHexData) {
-      out.print(" ");
+    /*
+     * Prints the summary of a typed Data block shown by -summary in place of its elements
+     */
+    private void printSummary (BlobStats stats, String indent) throws IOException {
+      BlobStats.Layout layout = stats.layout;
+      buf.append(indent).append("// summary of ").append(layout.name).append(": ").append(stats.count)
+          .append(" elements (").append(String.join(", ", layout.components)).append(")");
+      buf.newLine();
+      for (int cc = 0; cc < layout.components.length; cc++) {
+        boolean isInt = layout.isInt[cc];
+        buf.append(indent).append(pad(layout.components[cc], 8));
+        if (stats.count - stats.nans[cc] > 0) {
+          buf.append("min ");
+          appendValue(stats.min[cc], isInt);
+          buf.append("  max ");
+          appendValue(stats.max[cc], isInt);
+          buf.append("  mean ").appendFloat((float) stats.getMean(cc));
+        } else {
+          buf.append("no values");
+        }
+        if (!isInt) {
+          buf.append("  NaN ").append(stats.nans[cc]).append("  denormal ").append(stats.denormals[cc]);
+        }
+        buf.newLine();
+        buf.append(indent).append(pad("", 8)).append("|").append(layout.components[cc]).append("|");
+        long[] hist = stats.histogram[cc];
+        for (int bb = 0; bb < hist.length; bb++) {
+          buf.append("  ").append(BlobStats.BUCKET_NAMES[bb]).append(": ").append(hist[bb]);
+        }
+        buf.newLine();
+      }
+      int first = Math.min(stats.count, BlobStats.EDGE_COUNT);
+      int last = Math.max(first, stats.count - BlobStats.EDGE_COUNT);
+      for (int ii = 0; ii < stats.count; ii = ii == first - 1 ? last : ii + 1) {
+        buf.append(indent).append(pad(ii == 0 ? "first" : ii == last ? "last" : "", 8));
+        buf.append("[").append(ii).append("]");
+        for (int cc = 0; cc < layout.components.length; cc++) {
+          buf.append(' ');
+          if (layout.isInt[cc]) {
+            buf.append(stats.getInt(ii, cc));
+          } else {
+            buf.appendFloat(stats.getFloat(ii, cc));
+          }
+        }
+        buf.newLine();
+      }
+      if (stats.trailing > 0) {
+        buf.append(indent).append(pad("", 8)).append(stats.trailing).append(" trailing bytes");
+        buf.newLine();
+      }
+      buf.append(indent).append(pad("sha256", 8)).append(stats.hash);
+      buf.newLine();
     }
-    if (showHexData) {
-      out.print(String.format("%02X", data[ii]) + ((ii & 3) == 3 ? " = " : ""));
+
+    private void appendValue (double val, boolean isInt) throws IOException {
+      if (isInt) {
+        buf.append((long) val);
+      } else {
+        buf.appendFloat((float) val);
+      }
     }
-  }
 
-  private static String getValue (List<NSObject> pList, int idx, String key) {
-    int pIdx = pList.size() + idx;
-    if (pIdx >= 0) {
-      NSObject obj = pList.get(pIdx);
-      if (obj instanceof NSDictionary) {
-        NSDictionary dObj = (NSDictionary) obj;
-        if (dObj.containsKey(key)) {
-          return dObj.objectForKey(key).toString();
+    private void printHex (byte[] data, String indent, int ii) throws IOException {
+      if ((ii & 3) == 0) {
+        buf.append(indent);
+      } else if (showHexData) {
+        buf.append(' ');
+      }
+      if (showHexData) {
+        buf.appendHex(data[ii]).append((ii & 3) == 3 ? " = " : "");
+      }
+    }
+
+    private void printXml (String indent, String xml) throws Exception {
+      Document document = parseXml(xml);
+      ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+      xmlPrinter.get().transform(new DOMSource(document), new StreamResult(bOut));
+      String[] lines = bOut.toString().split("\n");
+      for (String line : lines) {
+        if (!line.startsWith("<?xml")) {
+          buf.append(indent).append(line);
+          buf.newLine();
         }
       }
     }
-    return null;
   }
 
-  private static String getPath (List<String> path) {
-    StringBuilder buf = new StringBuilder();
-    for (String item : path) {
-      if (buf.length() > 0 && !item.startsWith("[")) {
-        buf.append('.');
+  private static String getValue (List<Map<String,Object>> pList, int idx, String key) {
+    int pIdx = pList.size() + idx;
+    if (pIdx >= 0) {
+      Map<String,Object> dObj = pList.get(pIdx);
+      if (dObj.containsKey(key)) {
+        return dObj.get(key).toString();
       }
-      buf.append(item);
     }
-    return buf.toString();
+    return null;
   }
 
   private static int getInt (byte[] data, int idx) {
@@ -1484,25 +2264,10 @@ public class Cheetah3DParser {
     return Float.intBitsToFloat(getInt(data, idx));
   }
 
-  private void printXml (String indent, String xml) throws Exception {
-    Document document = parseXml(xml);
-    Transformer tform = TransformerFactory.newInstance().newTransformer();
-    tform.setOutputProperty(OutputKeys.INDENT, "yes");
-    tform.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-    ByteArrayOutputStream bOut = new ByteArrayOutputStream();
-    tform.transform(new DOMSource(document), new StreamResult(bOut));
-    String[] lines = bOut.toString().split("\n");
-    for (String line : lines) {
-      if (!line.startsWith("<?xml")) {
-        out.println(indent + line);
-      }
-    }
-  }
-
-  private Document parseXml (String xml) throws Exception {
+  private static Document parseXml (String xml) throws Exception {
     InputStream xIn = new ByteArrayInputStream(xml.getBytes());
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    DocumentBuilder builder = factory.newDocumentBuilder();
+    DocumentBuilder builder = docBuilder.get();
+    builder.reset();
     return builder.parse(xIn);
   }
 }
@@ -0,0 +1,118 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/*
+ *  Decodes the typed arrays Cheetah 3D stores in Data blocks (see notes in Cheetah3DParser.java).  All values are
+ *  read through int and float views of the blob's ByteBuffer, so byte swapping is done by the JVM's buffer
+ *  intrinsics rather than by assembling each value from 4 bytes, and values are copied exactly once, directly
+ *  into the array the caller needs.
+ *
+ *    vertex, polygons, uvcoords, cdata, keys, transform matrices   big endian
+ *    pointArray ("value" of a "pointArray" tracks2 item)           little endian, 16 byte header
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+final class DataDecoder {
+  static final int  POINT_ARRAY_HEADER = 16;
+  static final int  KEYS_HEADER = 8;
+  static final int  KEY_SIZE = 27;
+
+  private DataDecoder () { }
+
+  static IntBuffer intView (ByteBuffer data, ByteOrder order) {
+    return data.duplicate().order(order).asIntBuffer();
+  }
+
+  static FloatBuffer floatView (ByteBuffer data, ByteOrder order) {
+    return data.duplicate().order(order).asFloatBuffer();
+  }
+
+  /**
+   * Decodes a big endian blob into an int[] with a single bulk get
+   */
+  static int[] getInts (ByteBuffer data) {
+    IntBuffer ints = intView(data, ByteOrder.BIG_ENDIAN);
+    int[] vals = new int[ints.remaining()];
+    ints.get(vals);
+    return vals;
+  }
+
+  /**
+   * Decodes a big endian blob into a float[] with a single bulk get
+   */
+  static float[] getFloats (ByteBuffer data) {
+    FloatBuffer floats = floatView(data, ByteOrder.BIG_ENDIAN);
+    float[] vals = new float[floats.remaining()];
+    floats.get(vals);
+    return vals;
+  }
+
+  /**
+   * Decodes interleaved big endian floats, such as the 4 float "vertex" records (x, y, z, soft selection) or the
+   * 4 float "uvcoords" records (u0, v0, u1, v1), keeping only the values needed
+   * @param data Data block
+   * @param offset index of the first float to keep in each record
+   * @param width number of floats to keep from each record
+   * @param stride number of floats in each record
+   * @return packed array of (data size / stride) * width values
+   */
+  static float[] getFloats (ByteBuffer data, int offset, int width, int stride) {
+    FloatBuffer floats = floatView(data, ByteOrder.BIG_ENDIAN);
+    int count = floats.remaining() / stride;
+    float[] vals = new float[count * width];
+    int src = offset;
+    int dst = 0;
+    for (int ii = 0; ii < count; ii++) {
+      for (int jj = 0; jj < width; jj++) {
+        vals[dst++] = floats.get(src + jj);
+      }
+      src += stride;
+    }
+    return vals;
+  }
+
+  /**
+   * Decodes a "keys" blob (see Note 8) into columns, in one pass over its 27 byte key records
+   * @return 6 arrays of one value per key: time, in and out tangent time offsets, in and out tangent value
+   *         offsets, then the key's value
+   */
+  static float[][] getKeys (ByteBuffer data) {
+    ByteBuffer keys = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+    int base = keys.position();
+    int count = keys.remaining() >= KEYS_HEADER ? Math.max(0, keys.getInt(base)) : 0;
+    count = Math.min(count, Math.max(0, keys.remaining() - KEYS_HEADER) / KEY_SIZE);
+    float[][] cols = new float[6][count];
+    int pos = base + KEYS_HEADER;
+    for (int ii = 0; ii < count; ii++, pos += KEY_SIZE) {
+      for (int jj = 0; jj < 6; jj++) {
+        cols[jj][ii] = keys.getFloat(pos + jj * 4);
+      }
+    }
+    return cols;
+  }
+
+  /**
+   * Returns the point count from the header of a little endian "pointArray" blob (see Note 2)
+   */
+  static int getPointCount (ByteBuffer data) {
+    return data.remaining() >= 4 ? data.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(data.position()) : 0;
+  }
+
+  /**
+   * Decodes a little endian "pointArray" blob (see Note 2) into packed x, y, z floats, skipping its header
+   */
+  static float[] getPointArray (ByteBuffer data) {
+    if (data.remaining() < POINT_ARRAY_HEADER) {
+      return new float[0];
+    }
+    ByteBuffer body = data.duplicate();
+    body.position(body.position() + POINT_ARRAY_HEADER);
+    FloatBuffer floats = floatView(body.slice(), ByteOrder.LITTLE_ENDIAN);
+    float[] vals = new float[floats.remaining()];
+    floats.get(vals);
+    return vals;
+  }
+}
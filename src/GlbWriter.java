@@ -0,0 +1,518 @@
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/*
+ *  Writes a Scene as a binary glTF 2.0 (.glb) file, as used by the -glb switch.  For each mesh there is one
+ *  triangle primitive with POSITION, TEXCOORD_0 and, for skinned meshes, JOINTS_0 and WEIGHTS_0 attributes, plus
+ *  a skin (with inverse bind matrices from the Joint data), a node for each joint and an animation for each take,
+ *  sampled at a fixed frame rate.  Materials are mapped to glTF metallic-roughness materials with their diffuse,
+ *  emissive and normal map textures, which are referenced by file name, as in the .mtl file written by -obj.
+ *
+ *  Cheetah 3D stores a UV coord for each point of each face (see Note 5), so face points are welded into glTF
+ *  vertexes by VertexWelder, with one vertex for each distinct vertex and UV coords, and faces are split into
+ *  triangles by Triangulator.  UV coords are written as stored, since glTF's V axis points down, like Cheetah
+ *  3D's.  Joint weights are reduced to the 4 largest for each vertex (see Skeleton.getInfluences()).
+ *
+ *  The file is written in two passes.  The first lays out every buffer view from the sizes of the arrays, which
+ *  gives the JSON chunk, and the second writes the arrays through a BinaryWriter into the file's channel, so no
+ *  binary data is formatted as text.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+final class GlbWriter {
+  static final float            DEFAULT_FPS = 30;
+  private static final int      MAGIC = 0x46546C67;             // "glTF"
+  private static final int      CHUNK_JSON = 0x4E4F534A;        // "JSON"
+  private static final int      CHUNK_BIN = 0x004E4942;         // "BIN\0"
+  private static final int      MAX_INFLUENCES = 4;
+  private static final int      UNSIGNED_SHORT = 5123, UNSIGNED_INT = 5125, FLOAT = 5126;
+  private static final int      ARRAY_BUFFER = 34962, ELEMENT_ARRAY_BUFFER = 34963;
+  private final float           fps;
+  private final List<View>      views = new ArrayList<>();
+  private int                   binLength;
+  private final AsciiWriter     bufferViews = new AsciiWriter(1024);
+  private final AsciiWriter     accessors = new AsciiWriter(1024);
+  private final AsciiWriter     meshes = new AsciiWriter(1024);
+  private final AsciiWriter     nodes = new AsciiWriter(1024);
+  private final AsciiWriter     skins = new AsciiWriter(1024);
+  private final AsciiWriter     animations = new AsciiWriter(1024);
+  private final AsciiWriter     materials = new AsciiWriter(1024);
+  private final AsciiWriter     textures = new AsciiWriter(256);
+  private final AsciiWriter     images = new AsciiWriter(256);
+  private final List<Integer>   sceneNodes = new ArrayList<>();
+  private final Map<String,Integer> textureIndex = new HashMap<>();
+  private int                   accessorCount, meshCount, nodeCount, skinCount;
+
+  /*
+   * Writes the contents of a buffer view
+   */
+  private interface BinData {
+    void write (BinaryWriter out) throws IOException;
+  }
+
+  private static final class View {
+    final int     length;
+    final BinData data;
+
+    View (int length, BinData data) {
+      this.length = length;
+      this.data = data;
+    }
+  }
+
+  private GlbWriter (float fps) {
+    this.fps = fps;
+  }
+
+  static void write (WritableByteChannel channel, Scene scene, float fps) throws IOException {
+    GlbWriter writer = new GlbWriter(fps);
+    Map<Material,Integer> matIndex = new IdentityHashMap<>();
+    for (Material material : scene.getMaterials()) {
+      matIndex.put(material, matIndex.size());
+      writer.addMaterial(material);
+    }
+    for (Mesh mesh : scene.getMeshes()) {
+      writer.addMesh(mesh, mesh.material != null ? matIndex.get(mesh.material) : null);
+    }
+    writer.write(channel);
+  }
+
+  /*
+   * Starts a new item in a JSON array section
+   */
+  private static AsciiWriter item (AsciiWriter section) throws IOException {
+    return section.size() > 0 ? section.append(',') : section;
+  }
+
+  private static AsciiWriter appendNumber (AsciiWriter out, float val) throws IOException {
+    return out.append(Float.isNaN(val) || Float.isInfinite(val) ? "0" : Float.toString(val));
+  }
+
+  private static AsciiWriter appendNumbers (AsciiWriter out, float[] vals, int from, int len) throws IOException {
+    out.append('[');
+    for (int ii = 0; ii < len; ii++) {
+      appendNumber(ii > 0 ? out.append(',') : out, vals[from + ii]);
+    }
+    return out.append(']');
+  }
+
+  private static AsciiWriter appendInts (AsciiWriter out, List<Integer> vals) throws IOException {
+    out.append('[');
+    for (int ii = 0; ii < vals.size(); ii++) {
+      (ii > 0 ? out.append(',') : out).append(vals.get(ii));
+    }
+    return out.append(']');
+  }
+
+  /*
+   * Adds a buffer view of length bytes, written by data
+   * @return index of the buffer view
+   */
+  private int addView (int length, Integer target, BinData data) throws IOException {
+    int index = views.size();
+    views.add(new View(length, data));
+    item(bufferViews).append("{\"buffer\":0,\"byteOffset\":").append(binLength).append(",\"byteLength\":")
+                     .append(length);
+    if (target != null) {
+      bufferViews.append(",\"target\":").append(target);
+    }
+    bufferViews.append('}');
+    // Keep every view 4 byte aligned
+    binLength += (length + 3) & ~3;
+    return index;
+  }
+
+  /*
+   * Adds a buffer view and an accessor for count elements of type, such as "VEC3"
+   * @param minMax min values followed by max values, or null
+   * @return index of the accessor
+   */
+  private int addAccessor (int count, String type, int componentType, int elementBytes, Integer target,
+                           float[] minMax, BinData data) throws IOException {
+    int view = addView(count * elementBytes, target, data);
+    item(accessors).append("{\"bufferView\":").append(view).append(",\"componentType\":").append(componentType)
+                   .append(",\"count\":").append(count).append(",\"type\":\"").append(type).append('"');
+    if (minMax != null) {
+      int half = minMax.length / 2;
+      appendNumbers(accessors.append(",\"min\":"), minMax, 0, half);
+      appendNumbers(accessors.append(",\"max\":"), minMax, half, half);
+    }
+    accessors.append('}');
+    return accessorCount++;
+  }
+
+  private void addMaterial (Material material) throws IOException {
+    item(materials).append("{\"name\":");
+    PListQuery.writeJsonString(materials, material.getName());
+    float[] diffuse = {1, 1, 1, 1};
+    if (material.diffColor != null) {
+      for (int ii = 0; ii < Math.min(4, material.diffColor.length); ii++) {
+        diffuse[ii] = Math.max(0, Math.min(1, material.diffColor[ii]));
+      }
+    }
+    // Convert the specular exponent into roughness, as for a Blinn-Phong lobe
+    float roughness = (float) Math.sqrt(2 / (Math.max(0, material.specSize) + 2));
+    appendNumbers(materials.append(",\"pbrMetallicRoughness\":{\"baseColorFactor\":"), diffuse, 0, 4);
+    materials.append(",\"metallicFactor\":0,\"roughnessFactor\":");
+    appendNumber(materials, roughness);
+    Material.Texture diffTex = null, emisTex = null, bumpTex = null;
+    for (Material.Texture texture : material.textures) {
+      String type = texture.getType();
+      if (texture.file == null) {
+        continue;
+      } else if ("diffColor".equals(type)) {
+        diffTex = texture;
+      } else if ("emisColor".equals(type)) {
+        emisTex = texture;
+      } else if (type.startsWith("bumpNormal")) {
+        bumpTex = texture;
+      }
+    }
+    if (diffTex != null) {
+      materials.append(",\"baseColorTexture\":{\"index\":").append(getTexture(diffTex.file)).append('}');
+    }
+    materials.append('}');
+    if (material.emisColor != null && material.emisColor.length >= 3) {
+      float[] emissive = new float[3];
+      for (int ii = 0; ii < 3; ii++) {
+        emissive[ii] = Math.max(0, Math.min(1, material.emisColor[ii]));
+      }
+      appendNumbers(materials.append(",\"emissiveFactor\":"), emissive, 0, 3);
+    }
+    if (emisTex != null) {
+      materials.append(",\"emissiveTexture\":{\"index\":").append(getTexture(emisTex.file)).append('}');
+    }
+    if (bumpTex != null) {
+      materials.append(",\"normalTexture\":{\"index\":").append(getTexture(bumpTex.file)).append('}');
+    }
+    if (material.transUseAlpha) {
+      materials.append(",\"alphaMode\":\"BLEND\"");
+    }
+    materials.append('}');
+  }
+
+  /*
+   * Returns the index of the texture for an image file, adding it if needed
+   */
+  private int getTexture (String file) throws IOException {
+    String name = file.substring(Math.max(file.lastIndexOf('/'), file.lastIndexOf('\\')) + 1);
+    Integer index = textureIndex.get(name);
+    if (index == null) {
+      textureIndex.put(name, index = textureIndex.size());
+      PListQuery.writeJsonString(item(images).append("{\"uri\":"), encodeUri(name));
+      images.append('}');
+      item(textures).append("{\"source\":").append(index).append('}');
+    }
+    return index;
+  }
+
+  /*
+   * Percent-encodes each UTF-8 byte of a file name except the unreserved characters, so it is a valid relative
+   * URI, even if it has spaces, or a colon which would otherwise read as a URI scheme
+   */
+  private static String encodeUri (String name) {
+    StringBuilder uri = new StringBuilder();
+    for (byte bb : name.getBytes(StandardCharsets.UTF_8)) {
+      char ch = (char) (bb & 0xFF);
+      if (ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch >= '0' && ch <= '9' || "-._~".indexOf(ch) >= 0) {
+        uri.append(ch);
+      } else {
+        uri.append('%').append(Character.toUpperCase(Character.forDigit(ch >> 4, 16)))
+           .append(Character.toUpperCase(Character.forDigit(ch & 15, 16)));
+      }
+    }
+    return uri.toString();
+  }
+
+  private void addMesh (Mesh mesh, Integer material) throws IOException {
+    float[] vertices = mesh.vertices;
+    int[] triangles = Triangulator.triangulate(mesh);
+    if (triangles.length == 0) {
+      return;
+    }
+    // Face points with the same vertex and UV coords share a glTF vertex
+    VertexWelder.Welded welded = VertexWelder.weld(mesh);
+    int[] welds = welded.vertices;
+    int count = welded.getVertexCount();
+    // Reverse each triangle's points, as the OBJ writer does, so they go counterclockwise seen from the front
+    for (int ii = 0; ii < triangles.length; ii += 3) {
+      int second = triangles[ii + 1];
+      triangles[ii] = welded.indices[triangles[ii]];
+      triangles[ii + 1] = welded.indices[triangles[ii + 2]];
+      triangles[ii + 2] = welded.indices[second];
+    }
+    float[] minMax = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE,
+                      -Float.MAX_VALUE};
+    for (int vv : welds) {
+      for (int kk = 0; kk < 3; kk++) {
+        minMax[kk] = Math.min(minMax[kk], vertices[vv * 3 + kk]);
+        minMax[kk + 3] = Math.max(minMax[kk + 3], vertices[vv * 3 + kk]);
+      }
+    }
+    int position = addAccessor(count, "VEC3", FLOAT, 12, ARRAY_BUFFER, minMax, out -> {
+      for (int vv : welds) {
+        out.room(12).putFloat(vertices[vv * 3]).putFloat(vertices[vv * 3 + 1]).putFloat(vertices[vv * 3 + 2]);
+      }
+    });
+    Integer texCoord = null;
+    if (welded.uvcoords.length > 0) {
+      texCoord = addAccessor(count, "VEC2", FLOAT, 8, ARRAY_BUFFER, null,
+                             out -> out.putFloats(welded.uvcoords, 0, count * 2));
+    }
+    int indices = addAccessor(triangles.length, "SCALAR", UNSIGNED_INT, 4, ELEMENT_ARRAY_BUFFER, null,
+                              out -> out.putInts(triangles, 0, triangles.length));
+    Integer joints = null, weights = null;
+    Skeleton skeleton = mesh.skeleton;
+    if (skeleton != null) {
+      Skeleton.Influences influences = mesh.getInfluences(MAX_INFLUENCES);
+      short[] jointIdx = influences.joints;
+      float[] weight = influences.weights;
+      joints = addAccessor(count, "VEC4", UNSIGNED_SHORT, 8, ARRAY_BUFFER, null, out -> {
+        for (int vv : welds) {
+          int base = vv * MAX_INFLUENCES;
+          out.room(8).putShort(jointIdx[base]).putShort(jointIdx[base + 1]).putShort(jointIdx[base + 2])
+             .putShort(jointIdx[base + 3]);
+        }
+      });
+      weights = addAccessor(count, "VEC4", FLOAT, 16, ARRAY_BUFFER, null, out -> {
+        for (int vv : welds) {
+          out.putFloats(weight, vv * MAX_INFLUENCES, MAX_INFLUENCES);
+        }
+      });
+    }
+    item(meshes).append("{\"name\":");
+    PListQuery.writeJsonString(meshes, mesh.meshName);
+    meshes.append(",\"primitives\":[{\"attributes\":{\"POSITION\":").append(position);
+    if (texCoord != null) {
+      meshes.append(",\"TEXCOORD_0\":").append(texCoord);
+    }
+    if (joints != null) {
+      meshes.append(",\"JOINTS_0\":").append(joints).append(",\"WEIGHTS_0\":").append(weights);
+    }
+    meshes.append("},\"indices\":").append(indices);
+    if (material != null) {
+      meshes.append(",\"material\":").append(material);
+    }
+    meshes.append("}]}");
+    int meshNode = nodeCount++;
+    item(nodes).append("{\"name\":");
+    PListQuery.writeJsonString(nodes, mesh.meshName);
+    nodes.append(",\"mesh\":").append(meshCount++);
+    if (skeleton != null) {
+      nodes.append(",\"skin\":").append(skinCount);
+    }
+    nodes.append('}');
+    sceneNodes.add(meshNode);
+    if (skeleton != null) {
+      addSkin(mesh);
+    }
+  }
+
+  /*
+   * Adds a node for each joint of mesh's skeleton, the skin and an animation for each take
+   */
+  private void addSkin (Mesh mesh) throws IOException {
+    Skeleton skeleton = mesh.skeleton;
+    Skeleton.Joint[] joints = skeleton.joints;
+    PoseEvaluator evaluator = new PoseEvaluator(skeleton);
+    List<Skeleton.Joint> tree = evaluator.getJoints();
+    int[] parents = evaluator.getParents();
+    Map<Skeleton.Joint,Integer> treeIdx = new IdentityHashMap<>();
+    for (int ii = 0; ii < tree.size(); ii++) {
+      treeIdx.put(tree.get(ii), ii);
+    }
+    // Joints in the tree get nodes in tree order, then any others follow
+    int firstNode = nodeCount;
+    Map<Skeleton.Joint,Integer> nodeIdx = new IdentityHashMap<>();
+    for (int ii = 0; ii < tree.size(); ii++) {
+      nodeIdx.put(tree.get(ii), nodeCount++);
+    }
+    List<Integer> skinJoints = new ArrayList<>();
+    int[] extra = new int[joints.length];
+    Arrays.fill(extra, -1);
+    for (int ii = 0; ii < joints.length; ii++) {
+      Integer node = joints[ii] != null ? nodeIdx.get(joints[ii]) : null;
+      if (node == null) {
+        node = nodeCount++;
+        extra[ii] = node;
+      }
+      skinJoints.add(node);
+    }
+    float[] rest = evaluator.getRestPose();
+    float[] quat = new float[4];
+    for (int ii = 0; ii < tree.size(); ii++) {
+      Skeleton.Joint joint = tree.get(ii);
+      int base = ii * TakeSampler.SLOT_SIZE;
+      item(nodes).append("{\"name\":");
+      PListQuery.writeJsonString(nodes, getJointName(joint));
+      getQuaternion(rest, base + 3, quat, 0);
+      appendNumbers(nodes.append(",\"translation\":"), rest, base, 3);
+      appendNumbers(nodes.append(",\"rotation\":"), quat, 0, 4);
+      appendNumbers(nodes.append(",\"scale\":"), rest, base + 6, 3);
+      List<Integer> children = new ArrayList<>();
+      for (int jj = ii + 1; jj < parents.length; jj++) {
+        if (parents[jj] == ii) {
+          children.add(firstNode + jj);
+        }
+      }
+      if (!children.isEmpty()) {
+        appendInts(nodes.append(",\"children\":"), children);
+      }
+      nodes.append('}');
+    }
+    if (!tree.isEmpty()) {
+      sceneNodes.add(firstNode);
+    }
+    for (int ii = 0; ii < joints.length; ii++) {
+      if (extra[ii] >= 0) {
+        // Joint is not under the root joint, so it's placed where it was bound
+        Skeleton.Joint joint = joints[ii];
+        item(nodes).append("{\"name\":");
+        PListQuery.writeJsonString(nodes, joint != null ? getJointName(joint) : "joint" + ii);
+        if (joint != null) {
+          appendNumbers(nodes.append(",\"matrix\":"), joint.transformLinkMatrix, 0, 16);
+        }
+        nodes.append('}');
+        sceneNodes.add(extra[ii]);
+      }
+    }
+    int inverseBind = addAccessor(joints.length, "MAT4", FLOAT, 64, null, null, out -> {
+      float[] mat = new float[PoseEvaluator.MATRIX_SIZE];
+      for (Skeleton.Joint joint : joints) {
+        if (joint != null) {
+          Skinner.getInverseBindMatrix(joint, mat, 0);
+        } else {
+          Skinner.setIdentity(mat, 0);
+        }
+        out.putFloats(mat, 0, mat.length);
+      }
+    });
+    item(skins).append("{\"inverseBindMatrices\":").append(inverseBind);
+    appendInts(skins.append(",\"joints\":"), skinJoints);
+    if (!tree.isEmpty()) {
+      skins.append(",\"skeleton\":").append(firstNode);
+    }
+    skins.append('}');
+    skinCount++;
+    for (Take take : mesh.takes.values()) {
+      if (!tree.isEmpty()) {
+        addAnimation(evaluator, take, firstNode);
+      }
+    }
+  }
+
+  private static String getJointName (Skeleton.Joint joint) {
+    return joint.jointName != null ? joint.jointName : "joint" + joint.jointId;
+  }
+
+  /*
+   * Adds an animation with translation, rotation and scale channels for every joint of evaluator's tree
+   */
+  private void addAnimation (PoseEvaluator evaluator, Take take, int firstNode) throws IOException {
+    TakeSampler sampler = evaluator.getSampler(take);
+    int frames = sampler.getFrameCount(fps);
+    int jointCount = evaluator.getJointCount();
+    float[] pose = sampler.bake(fps);
+    float[] times = new float[frames];
+    for (int ff = 0; ff < frames; ff++) {
+      times[ff] = ff / fps;
+    }
+    int input = addAccessor(frames, "SCALAR", FLOAT, 4, null, new float[] {0, times[frames - 1]},
+                            out -> out.putFloats(times, 0, frames));
+    AsciiWriter samplers = new AsciiWriter(1024);
+    AsciiWriter channels = new AsciiWriter(1024);
+    String[] paths = {"translation", "rotation", "scale"};
+    int samplerCount = 0;
+    for (int ii = 0; ii < jointCount; ii++) {
+      int base = ii * TakeSampler.SLOT_SIZE;
+      for (int pp = 0; pp < paths.length; pp++) {
+        int parm = pp;
+        int output;
+        if (parm == Take.ROTATION) {
+          output = addAccessor(frames, "VEC4", FLOAT, 16, null, null, out -> {
+            float[] quat = new float[4];
+            for (int ff = 0; ff < frames; ff++) {
+              getQuaternion(pose, ff * jointCount * TakeSampler.SLOT_SIZE + base + 3, quat, 0);
+              out.putFloats(quat, 0, 4);
+            }
+          });
+        } else {
+          output = addAccessor(frames, "VEC3", FLOAT, 12, null, null, out -> {
+            for (int ff = 0; ff < frames; ff++) {
+              out.putFloats(pose, ff * jointCount * TakeSampler.SLOT_SIZE + base + parm * 3, 3);
+            }
+          });
+        }
+        item(samplers).append("{\"input\":").append(input).append(",\"output\":").append(output)
+                      .append(",\"interpolation\":\"LINEAR\"}");
+        item(channels).append("{\"sampler\":").append(samplerCount++).append(",\"target\":{\"node\":")
+                      .append(firstNode + ii).append(",\"path\":\"").append(paths[pp]).append("\"}}");
+      }
+    }
+    item(animations).append("{\"name\":");
+    PListQuery.writeJsonString(animations, take.getName());
+    animations.append(",\"samplers\":[").append(samplers).append("],\"channels\":[").append(channels).append("]}");
+  }
+
+  /*
+   * Converts the Euler angles at vals[src] (degrees, applied as Ry * Rx * Rz, as in PoseEvaluator) into an x, y,
+   * z, w quaternion at out[dst]
+   */
+  static void getQuaternion (float[] vals, int src, float[] out, int dst) {
+    double hx = Math.toRadians(vals[src]) / 2, hy = Math.toRadians(vals[src + 1]) / 2;
+    double hz = Math.toRadians(vals[src + 2]) / 2;
+    double cx = Math.cos(hx), sx = Math.sin(hx);
+    double cy = Math.cos(hy), sy = Math.sin(hy);
+    double cz = Math.cos(hz), sz = Math.sin(hz);
+    out[dst] = (float) (cy * sx * cz + sy * cx * sz);
+    out[dst + 1] = (float) (sy * cx * cz - cy * sx * sz);
+    out[dst + 2] = (float) (cy * cx * sz - sy * sx * cz);
+    out[dst + 3] = (float) (cy * cx * cz + sy * sx * sz);
+  }
+
+  private void write (WritableByteChannel channel) throws IOException {
+    AsciiWriter json = new AsciiWriter(bufferViews.size() + accessors.size() + nodes.size() + 4096);
+    json.append("{\"asset\":{\"version\":\"2.0\",\"generator\":\"Cheetah3DParser\"},\"scene\":0,\"scenes\":[{\"nodes\":");
+    appendInts(json, sceneNodes).append("}]");
+    appendSection(json, "nodes", nodes);
+    appendSection(json, "meshes", meshes);
+    appendSection(json, "materials", materials);
+    appendSection(json, "textures", textures);
+    appendSection(json, "images", images);
+    appendSection(json, "skins", skins);
+    appendSection(json, "animations", animations);
+    appendSection(json, "accessors", accessors);
+    appendSection(json, "bufferViews", bufferViews);
+    if (binLength > 0) {
+      json.append(",\"buffers\":[{\"byteLength\":").append(binLength).append("}]");
+    }
+    json.append('}');
+    while ((json.size() & 3) != 0) {
+      json.append(' ');
+    }
+    int total = 12 + 8 + json.size() + (binLength > 0 ? 8 + binLength : 0);
+    BinaryWriter out = new BinaryWriter(channel, 1 << 20);
+    out.room(20).putInt(MAGIC).putInt(2).putInt(total).putInt(json.size()).putInt(CHUNK_JSON);
+    out.flush();
+    json.writeTo(channel);
+    if (binLength > 0) {
+      out.room(8).putInt(binLength).putInt(CHUNK_BIN);
+      for (View view : views) {
+        view.data.write(out);
+        for (int ii = view.length; (ii & 3) != 0; ii++) {
+          out.room(1).put((byte) 0);
+        }
+      }
+    }
+    out.flush();
+  }
+
+  private static void appendSection (AsciiWriter json, String name, AsciiWriter section) throws IOException {
+    if (section.size() > 0) {
+      json.append(",\"").append(name).append("\":[").append(section).append(']');
+    }
+  }
+}
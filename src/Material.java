@@ -0,0 +1,180 @@
+import java.util.*;
+
+/*
+ *  A material defined in a .jas file's "Materials3" section, along with the textures connected to it by its
+ *  "xmlDef" shader graph.  Built by Cheetah3DParser.load() and not modified afterwards.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class Material {
+  private static final String[] BUMP_TYPES = {"bumpHeight", "bumpNormalYPlus", "bumpNormalYMinus"};
+  private static final String[] FILTER_TYPES = {"Off", "Bilinear", "Trilinear", "Anisotropic"};
+  private static final String[] SAMPLE_TYPES = {"UV1", "UV2"};
+  final int                     index;
+  final int                     id;
+  final String                  materialName;
+  float[]                       diffColor, specColor, reflColor, transColor, emisColor;
+  float                         specSize, reflBlur, transBlur;
+  int                           reflSamples, transSamples, bumpType;
+  boolean                       reflFresnel, transUseAlpha;
+  final List<Texture>           textures = new ArrayList<>();
+  private final Map<String,Texture>  idToTexture = new HashMap<>();
+
+  Material (int index, String name, int id) {
+    this.index = index;
+    this.materialName = name;
+    this.id = id;
+  }
+
+  public final class Texture {
+    final String          type;
+    String                file;
+    float[]               background, mixcolor;
+    float[]               position, scale;
+    float                 intensity, mix;
+    int                   filtertype, sample;
+    boolean               tileU, tileV;
+
+    private Texture (String type) {
+      this.type = type;
+    }
+
+    /**
+     * @return name of the material parameter this texture drives, such as "diffColor", or the bump type
+     */
+    public String getType () {
+      if ("bump".equals(type)) {
+        return getBumpType();
+      }
+      return type;
+    }
+
+    public String getFile () {
+      return file;
+    }
+
+    public float[] getBackground () {
+      return copy(background);
+    }
+
+    public float[] getMixColor () {
+      return copy(mixcolor);
+    }
+
+    public float[] getPosition () {
+      return copy(position);
+    }
+
+    public float[] getScale () {
+      return copy(scale);
+    }
+
+    public float getIntensity () {
+      return intensity;
+    }
+
+    public float getMix () {
+      return mix;
+    }
+
+    public String getFilterType () {
+      return FILTER_TYPES[filtertype];
+    }
+
+    public String getSample () {
+      return SAMPLE_TYPES[sample];
+    }
+
+    public boolean isTileU () {
+      return tileU;
+    }
+
+    public boolean isTileV () {
+      return tileV;
+    }
+  }
+
+  Texture addTexture (String type, String conId) {
+    Texture texture = new Texture(type);
+    textures.add(texture);
+    idToTexture.put(conId, texture);
+    return texture;
+  }
+
+  Texture getTexture (String conId) {
+    return idToTexture.get(conId);
+  }
+
+  public String getName () {
+    return materialName;
+  }
+
+  public int getIndex () {
+    return index;
+  }
+
+  public int getId () {
+    return id;
+  }
+
+  public float[] getDiffuse () {
+    return copy(diffColor);
+  }
+
+  public float[] getSpecular () {
+    return copy(specColor);
+  }
+
+  public float getSpecularSize () {
+    return specSize;
+  }
+
+  public float[] getReflection () {
+    return copy(reflColor);
+  }
+
+  public float getReflectionBlur () {
+    return reflBlur;
+  }
+
+  public int getReflectionSamples () {
+    return reflSamples;
+  }
+
+  public boolean isFresnel () {
+    return reflFresnel;
+  }
+
+  public float[] getTransparency () {
+    return copy(transColor);
+  }
+
+  public float getTransparencyBlur () {
+    return transBlur;
+  }
+
+  public int getTransparencySamples () {
+    return transSamples;
+  }
+
+  public boolean isUseAlpha () {
+    return transUseAlpha;
+  }
+
+  public float[] getEmissive () {
+    return copy(emisColor);
+  }
+
+  public String getBumpType () {
+    return BUMP_TYPES[bumpType];
+  }
+
+  public List<Texture> getTextures () {
+    return Collections.unmodifiableList(textures);
+  }
+
+  static float[] copy (float[] vals) {
+    return vals != null ? vals.clone() : null;
+  }
+}
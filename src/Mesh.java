@@ -0,0 +1,132 @@
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+
+/*
+ *  A polygon mesh decoded from an NGON object (see Notes 1, 3 and 5 in Cheetah3DParser.java).  Geometry is held
+ *  in flat arrays, with faces stored as offsets into a single array of vertex indexes, and is exposed through
+ *  read-only buffers.  Built by Cheetah3DParser.load() and not modified afterwards.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class Mesh {
+  final String              meshName;
+  final Material            material;
+  final float[]             vertices;       // packed x, y, z values
+  final float[]             uvcoords;       // packed u, v values (one pair per face point)
+  final int[]               faceOffsets;    // face ii uses faceIndices[faceOffsets[ii]] to faceIndices[faceOffsets[ii + 1] - 1]
+  final int[]               faceIndices;    // vertex indexes for all faces
+  final int                 uvSet;
+  final Skeleton            skeleton;
+  final Map<String,Take>    takes = new LinkedHashMap<>();
+
+  Mesh (String name, Material material, float[] vertices, float[] uvcoords, int uvSet, int[] faceOffsets,
+        int[] faceIndices, Skeleton skeleton) {
+    this.meshName = name;
+    this.material = material;
+    this.vertices = vertices;
+    this.uvcoords = uvcoords;
+    this.uvSet = uvSet;
+    this.faceOffsets = faceOffsets;
+    this.faceIndices = faceIndices;
+    this.skeleton = skeleton;
+  }
+
+  Take getTake (String takeName) {
+    Take take = takes.get(takeName);
+    if (take == null) {
+      takes.put(takeName, take = new Take(takeName));
+    }
+    return take;
+  }
+
+  public String getName () {
+    return meshName;
+  }
+
+  /**
+   * @return material selected by the mesh's SHADERTAG, or null to use the default material
+   */
+  public Material getMaterial () {
+    return material;
+  }
+
+  public int getVertexCount () {
+    return vertices.length / 3;
+  }
+
+  public int getFaceCount () {
+    return faceOffsets.length - 1;
+  }
+
+  public int getUVCount () {
+    return uvcoords.length >> 1;
+  }
+
+  /**
+   * @return UV set selected by "activeuvset"
+   */
+  public int getUVSet () {
+    return uvSet;
+  }
+
+  /**
+   * @return read-only view of packed x, y, z vertex values
+   */
+  public FloatBuffer getVertices () {
+    return FloatBuffer.wrap(vertices).asReadOnlyBuffer();
+  }
+
+  /**
+   * @return read-only view of packed u, v values, one pair for each value in getFaceIndices().  V is as stored
+   * in the file, so use 1 - V for OBJ files (see Note 5)
+   */
+  public FloatBuffer getUVCoords () {
+    return FloatBuffer.wrap(uvcoords).asReadOnlyBuffer();
+  }
+
+  /**
+   * @return read-only view of getFaceCount() + 1 offsets into getFaceIndices() where face ii uses the indexes
+   * from offset ii up to, but not including offset ii + 1
+   */
+  public IntBuffer getFaceOffsets () {
+    return IntBuffer.wrap(faceOffsets).asReadOnlyBuffer();
+  }
+
+  /**
+   * @return read-only view of the vertex indexes for all faces
+   */
+  public IntBuffer getFaceIndices () {
+    return IntBuffer.wrap(faceIndices).asReadOnlyBuffer();
+  }
+
+  /**
+   * @return faces split into triangles, as 3 indexes into getFaceIndices() and getUVCoords() pairs for each
+   * triangle (see Triangulator)
+   */
+  public int[] getTriangles () {
+    return Triangulator.triangulate(this);
+  }
+
+  /**
+   * @return joints and weights linked to this mesh, or null if mesh is not skinned
+   */
+  public Skeleton getSkeleton () {
+    return skeleton;
+  }
+
+  /**
+   * @return vertex-major skin weights (see Skeleton.getInfluences()), or null if mesh is not skinned
+   */
+  public Skeleton.Influences getInfluences (int maxInfluences) {
+    return skeleton != null ? skeleton.getInfluences(getVertexCount(), maxInfluences) : null;
+  }
+
+  /**
+   * @return animation takes for this mesh's joints, keyed by take name
+   */
+  public Map<String,Take> getTakes () {
+    return Collections.unmodifiableMap(takes);
+  }
+}
@@ -0,0 +1,543 @@
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ *  Builds lower detail versions of a Mesh by quadric error metric edge collapse (Garland and Heckbert), as used by
+ *  the -lod switch.  Faces are split into triangles by Triangulator, and each vertex gets the sum of the quadrics
+ *  of the planes of its triangles, weighted by their area.  Collapsing an edge removes one of its vertexes and
+ *  moves its triangles to the other, which stays where it was, and the edge whose collapse adds the least error
+ *  is always collapsed next.  As no vertex ever moves, the vertexes which remain keep their positions and their
+ *  joint weights from "cdata" exactly.
+ *
+ *  Vertexes on UV seams (whose face points have more than one UV coord), on open borders and on edges shared by
+ *  more than two triangles are never removed, so seams and borders keep their shape and UV coords.  Other
+ *  vertexes have one UV coord, so when one is removed, its triangles take the UV coords of the kept vertex from
+ *  a triangle on the collapsed edge.  Collapses which would change the topology (see canCollapse()) or turn a
+ *  triangle over are skipped, so a level may keep more triangles than asked for.
+ *
+ *  Edges wait in a binary heap held in primitive arrays, keyed by cost, with the versions of both vertexes, so
+ *  entries made stale by a later collapse are dropped when popped.  Triangles of each vertex are found through a
+ *  vertex to triangle adjacency list in compressed sparse row form, plus a ring of the vertexes collapsed into it.
+ *  Levels are built in one pass, from the largest to the smallest, by copying the mesh as each one is reached.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class MeshSimplifier {
+  public static final float[] DEFAULT_LEVELS = {0.5f, 0.25f, 0.1f};
+  private static final float  MIN_NORMAL_COS = 0.2f;    // least cosine between a triangle's normals before and after
+  private static final int    QUADRIC_SIZE = 10;
+  private final Mesh          mesh;
+  private final boolean       hasUVs;
+  private final int[]         triVerts;       // vertex of each triangle corner, 3 per triangle
+  private final float[]       triUVs;         // u, v of each triangle corner, 6 per triangle
+  private final boolean[]     deadTri;
+  private final int[]         adjOffsets;     // vertex ii's triangles are adjTris[adjOffsets[ii]] to [adjOffsets[ii + 1] - 1]
+  private final int[]         adjTris;
+  private final int[]         parent;         // vertex each vertex was collapsed into, or itself
+  private final int[]         ring;           // next vertex in the ring of vertexes collapsed into the same vertex
+  private final int[]         version;        // incremented when a vertex's quadric or triangles change
+  private final boolean[]     locked;
+  private final double[]      quadrics;       // a2, ab, ac, ad, b2, bc, bd, c2, cd, d2 for each vertex
+  private final int[]         mark;           // vertexes seen by the current search hold markStamp
+  private int                 markStamp;
+  private int                 liveTris;
+  private final double[]      sum = new double[QUADRIC_SIZE];   // quadric of the edge being pushed
+  private int[]               scratchU = new int[64];         // live triangles of the vertex being removed
+  private int[]               scratchV = new int[64];         // live triangles of the vertex being kept
+  // Edge heap, ordered by cost
+  private float[]             heapCost = new float[1024];
+  private long[]              heapEdge = new long[1024];      // removed vertex << 32 | kept vertex
+  private long[]              heapStamp = new long[1024];     // version of removed vertex << 32 | version of kept vertex
+  private int                 heapSize;
+
+  private MeshSimplifier (Mesh mesh) {
+    this.mesh = mesh;
+    int vertexCount = mesh.getVertexCount();
+    int[] corners = Triangulator.triangulate(mesh);
+    int triCount = corners.length / 3;
+    hasUVs = mesh.uvcoords.length >= mesh.faceIndices.length * 2;
+    triVerts = new int[corners.length];
+    triUVs = new float[hasUVs ? corners.length * 2 : 0];
+    deadTri = new boolean[triCount];
+    for (int ii = 0; ii < corners.length; ii++) {
+      triVerts[ii] = mesh.faceIndices[corners[ii]];
+      if (hasUVs) {
+        triUVs[ii * 2] = mesh.uvcoords[corners[ii] * 2];
+        triUVs[ii * 2 + 1] = mesh.uvcoords[corners[ii] * 2 + 1];
+      }
+    }
+    adjOffsets = new int[vertexCount + 1];
+    for (int tt = 0; tt < triCount; tt++) {
+      int aa = triVerts[tt * 3], bb = triVerts[tt * 3 + 1], cc = triVerts[tt * 3 + 2];
+      if (aa == bb || bb == cc || cc == aa) {
+        deadTri[tt] = true;
+        continue;
+      }
+      liveTris++;
+      for (int kk = 0; kk < 3; kk++) {
+        adjOffsets[triVerts[tt * 3 + kk] + 1]++;
+      }
+    }
+    for (int ii = 0; ii < vertexCount; ii++) {
+      adjOffsets[ii + 1] += adjOffsets[ii];
+    }
+    adjTris = new int[adjOffsets[vertexCount]];
+    int[] fill = Arrays.copyOf(adjOffsets, vertexCount);
+    for (int tt = 0; tt < triCount; tt++) {
+      for (int kk = 0; kk < 3 && !deadTri[tt]; kk++) {
+        adjTris[fill[triVerts[tt * 3 + kk]]++] = tt;
+      }
+    }
+    parent = new int[vertexCount];
+    ring = new int[vertexCount];
+    for (int ii = 0; ii < vertexCount; ii++) {
+      parent[ii] = ring[ii] = ii;
+    }
+    version = new int[vertexCount];
+    mark = new int[vertexCount];
+    locked = new boolean[vertexCount];
+    quadrics = new double[vertexCount * QUADRIC_SIZE];
+    addQuadrics(triCount);
+    lockSeams(triCount);
+    lockBorders(vertexCount);
+    for (int ii = 0; ii < vertexCount; ii++) {
+      int count = gather(ii, false);
+      int stamp = ++markStamp;
+      for (int tt = 0; tt < count; tt++) {
+        for (int kk = 0; kk < 3; kk++) {
+          int other = triVerts[scratchU[tt] * 3 + kk];
+          if (other > ii && mark[other] != stamp) {
+            mark[other] = stamp;
+            push(ii, other);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @param ratios fraction of the mesh's triangles to keep in each level, such as 0.5 for half
+   * @return a mesh for each ratio, named "<mesh name>_LOD<n>", where n counts from 1 in the order of ratios
+   */
+  public static List<Mesh> simplify (Mesh mesh, float[] ratios) {
+    MeshSimplifier simplifier = new MeshSimplifier(mesh);
+    int triCount = simplifier.liveTris;
+    Integer[] order = new Integer[ratios.length];
+    for (int ii = 0; ii < ratios.length; ii++) {
+      order[ii] = ii;
+    }
+    Arrays.sort(order, (a1, a2) -> Float.compare(ratios[a2], ratios[a1]));
+    Mesh[] levels = new Mesh[ratios.length];
+    for (int idx : order) {
+      simplifier.collapse(Math.round(triCount * Math.max(0, Math.min(1, ratios[idx]))));
+      levels[idx] = simplifier.toMesh(mesh.meshName + "_LOD" + (idx + 1));
+    }
+    return Arrays.asList(levels);
+  }
+
+  /*
+   * Adds the area weighted quadric of the plane of each triangle to the quadric of each of its vertexes
+   */
+  private void addQuadrics (int triCount) {
+    float[] verts = mesh.vertices;
+    for (int tt = 0; tt < triCount; tt++) {
+      if (deadTri[tt]) {
+        continue;
+      }
+      int p0 = triVerts[tt * 3] * 3, p1 = triVerts[tt * 3 + 1] * 3, p2 = triVerts[tt * 3 + 2] * 3;
+      double ax = verts[p1] - verts[p0], ay = verts[p1 + 1] - verts[p0 + 1], az = verts[p1 + 2] - verts[p0 + 2];
+      double bx = verts[p2] - verts[p0], by = verts[p2 + 1] - verts[p0 + 1], bz = verts[p2 + 2] - verts[p0 + 2];
+      double nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+      double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+      if (len == 0) {
+        continue;
+      }
+      double area = len * 0.5;
+      nx /= len;
+      ny /= len;
+      nz /= len;
+      double dd = -(nx * verts[p0] + ny * verts[p0 + 1] + nz * verts[p0 + 2]);
+      double[] plane = {nx * nx, nx * ny, nx * nz, nx * dd, ny * ny, ny * nz, ny * dd, nz * nz, nz * dd, dd * dd};
+      for (int kk = 0; kk < 3; kk++) {
+        int base = triVerts[tt * 3 + kk] * QUADRIC_SIZE;
+        for (int qq = 0; qq < QUADRIC_SIZE; qq++) {
+          quadrics[base + qq] += plane[qq] * area;
+        }
+      }
+    }
+  }
+
+  /*
+   * Locks vertexes whose face points don't all have the same UV coords
+   */
+  private void lockSeams (int triCount) {
+    if (!hasUVs) {
+      return;
+    }
+    float[] first = new float[mesh.getVertexCount() * 2];
+    boolean[] seen = new boolean[mesh.getVertexCount()];
+    for (int ii = 0; ii < triCount * 3; ii++) {
+      if (deadTri[ii / 3]) {
+        continue;
+      }
+      int vv = triVerts[ii];
+      if (!seen[vv]) {
+        seen[vv] = true;
+        first[vv * 2] = triUVs[ii * 2];
+        first[vv * 2 + 1] = triUVs[ii * 2 + 1];
+      } else if (first[vv * 2] != triUVs[ii * 2] || first[vv * 2 + 1] != triUVs[ii * 2 + 1]) {
+        locked[vv] = true;
+      }
+    }
+  }
+
+  /*
+   * Locks both vertexes of each edge which isn't shared by exactly two triangles
+   */
+  private void lockBorders (int vertexCount) {
+    int[] count = new int[vertexCount];
+    for (int ii = 0; ii < vertexCount; ii++) {
+      int stamp = ++markStamp;
+      for (int jj = adjOffsets[ii]; jj < adjOffsets[ii + 1]; jj++) {
+        for (int kk = 0; kk < 3; kk++) {
+          int other = triVerts[adjTris[jj] * 3 + kk];
+          if (other != ii) {
+            count[other] = mark[other] == stamp ? count[other] + 1 : 1;
+            mark[other] = stamp;
+          }
+        }
+      }
+      for (int jj = adjOffsets[ii]; jj < adjOffsets[ii + 1]; jj++) {
+        for (int kk = 0; kk < 3; kk++) {
+          int other = triVerts[adjTris[jj] * 3 + kk];
+          if (other != ii && count[other] != 2) {
+            locked[ii] = locked[other] = true;
+          }
+        }
+      }
+    }
+  }
+
+  /*
+   * Collects the live triangles of vertex vv into scratchV if toV, or else scratchU, and returns their count
+   */
+  private int gather (int vv, boolean toV) {
+    int[] tris = toV ? scratchV : scratchU;
+    int count = 0;
+    int ww = vv;
+    do {
+      for (int ii = adjOffsets[ww]; ii < adjOffsets[ww + 1]; ii++) {
+        int tt = adjTris[ii];
+        if (!deadTri[tt]) {
+          if (count == tris.length) {
+            tris = Arrays.copyOf(tris, count * 2);
+          }
+          tris[count++] = tt;
+        }
+      }
+      ww = ring[ww];
+    } while (ww != vv);
+    if (toV) {
+      scratchV = tris;
+    } else {
+      scratchU = tris;
+    }
+    return count;
+  }
+
+  /*
+   * Error of quadric at the position of vertex vv
+   */
+  private static double error (double[] qq, float[] verts, int vv) {
+    double xx = verts[vv * 3], yy = verts[vv * 3 + 1], zz = verts[vv * 3 + 2];
+    return qq[0] * xx * xx + 2 * qq[1] * xx * yy + 2 * qq[2] * xx * zz + 2 * qq[3] * xx + qq[4] * yy * yy +
+           2 * qq[5] * yy * zz + 2 * qq[6] * yy + qq[7] * zz * zz + 2 * qq[8] * zz + qq[9];
+  }
+
+  /*
+   * Adds the cheaper allowed direction of collapsing edge aa, bb to the heap
+   */
+  private void push (int aa, int bb) {
+    if (locked[aa] && locked[bb]) {
+      return;
+    }
+    for (int qq = 0; qq < QUADRIC_SIZE; qq++) {
+      sum[qq] = quadrics[aa * QUADRIC_SIZE + qq] + quadrics[bb * QUADRIC_SIZE + qq];
+    }
+    double removeA = locked[aa] ? Double.MAX_VALUE : error(sum, mesh.vertices, bb);
+    double removeB = locked[bb] ? Double.MAX_VALUE : error(sum, mesh.vertices, aa);
+    int from = removeA <= removeB ? aa : bb;
+    int to = from == aa ? bb : aa;
+    float cost = (float) Math.max(0, Math.min(removeA, removeB));
+    if (heapSize == heapCost.length) {
+      heapCost = Arrays.copyOf(heapCost, heapSize * 2);
+      heapEdge = Arrays.copyOf(heapEdge, heapSize * 2);
+      heapStamp = Arrays.copyOf(heapStamp, heapSize * 2);
+    }
+    long edge = (long) from << 32 | to;
+    long stamp = (long) version[from] << 32 | version[to] & 0xFFFFFFFFL;
+    // Sift up
+    int pos = heapSize++;
+    while (pos > 0) {
+      int up = (pos - 1) >> 1;
+      if (heapCost[up] <= cost) {
+        break;
+      }
+      heapCost[pos] = heapCost[up];
+      heapEdge[pos] = heapEdge[up];
+      heapStamp[pos] = heapStamp[up];
+      pos = up;
+    }
+    heapCost[pos] = cost;
+    heapEdge[pos] = edge;
+    heapStamp[pos] = stamp;
+  }
+
+  /*
+   * Removes the cheapest edge from the heap, returning its edge and stamp in out
+   */
+  private void pop (long[] out) {
+    out[0] = heapEdge[0];
+    out[1] = heapStamp[0];
+    float cost = heapCost[--heapSize];
+    long edge = heapEdge[heapSize];
+    long stamp = heapStamp[heapSize];
+    // Sift down
+    int pos = 0;
+    int half = heapSize >> 1;
+    while (pos < half) {
+      int child = pos * 2 + 1;
+      if (child + 1 < heapSize && heapCost[child + 1] < heapCost[child]) {
+        child++;
+      }
+      if (cost <= heapCost[child]) {
+        break;
+      }
+      heapCost[pos] = heapCost[child];
+      heapEdge[pos] = heapEdge[child];
+      heapStamp[pos] = heapStamp[child];
+      pos = child;
+    }
+    heapCost[pos] = cost;
+    heapEdge[pos] = edge;
+    heapStamp[pos] = stamp;
+  }
+
+  /*
+   * Collapses the cheapest edges until no more than target triangles are left, or no edge can be collapsed
+   */
+  private void collapse (int target) {
+    long[] entry = new long[2];
+    while (liveTris > target && heapSize > 0) {
+      pop(entry);
+      int from = (int) (entry[0] >>> 32);
+      int to = (int) entry[0];
+      if (parent[from] != from || parent[to] != to ||
+          entry[1] != ((long) version[from] << 32 | version[to] & 0xFFFFFFFFL)) {
+        continue;
+      }
+      int fromCount = gather(from, false);
+      int toCount = gather(to, true);
+      if (canCollapse(from, to, fromCount, toCount)) {
+        collapse(from, to, fromCount);
+      }
+    }
+  }
+
+  /*
+   * Returns true if removing vertex from, whose triangles are in scratchU, and moving its triangles to vertex to,
+   * whose triangles are in scratchV, keeps the mesh's topology, which is true when the vertexes next to both are
+   * just the third vertexes of the triangles on the edge, and turns no triangle over
+   */
+  private boolean canCollapse (int from, int to, int fromCount, int toCount) {
+    int[] fromTris = scratchU;
+    int[] toTris = scratchV;
+    int shared = 0;
+    int near = ++markStamp;
+    for (int ii = 0; ii < fromCount; ii++) {
+      int tt = fromTris[ii] * 3;
+      shared += triVerts[tt] == to || triVerts[tt + 1] == to || triVerts[tt + 2] == to ? 1 : 0;
+      for (int kk = 0; kk < 3; kk++) {
+        mark[triVerts[tt + kk]] = near;
+      }
+    }
+    if (shared == 0) {
+      return false;
+    }
+    int common = 0;
+    int counted = ++markStamp;
+    mark[from] = mark[to] = counted;
+    for (int ii = 0; ii < toCount; ii++) {
+      int tt = toTris[ii] * 3;
+      for (int kk = 0; kk < 3; kk++) {
+        int other = triVerts[tt + kk];
+        if (mark[other] == near) {
+          mark[other] = counted;
+          common++;
+        }
+      }
+    }
+    if (common != shared) {
+      return false;
+    }
+    float[] verts = mesh.vertices;
+    for (int ii = 0; ii < fromCount; ii++) {
+      int tt = fromTris[ii] * 3;
+      if (triVerts[tt] == to || triVerts[tt + 1] == to || triVerts[tt + 2] == to) {
+        continue;
+      }
+      int kk = triVerts[tt] == from ? 0 : triVerts[tt + 1] == from ? 1 : 2;
+      int p1 = triVerts[tt + (kk + 1) % 3] * 3;
+      int p2 = triVerts[tt + (kk + 2) % 3] * 3;
+      int p0 = from * 3;
+      int q0 = to * 3;
+      float ax = verts[p1] - verts[p0], ay = verts[p1 + 1] - verts[p0 + 1], az = verts[p1 + 2] - verts[p0 + 2];
+      float bx = verts[p2] - verts[p0], by = verts[p2 + 1] - verts[p0 + 1], bz = verts[p2 + 2] - verts[p0 + 2];
+      float nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+      ax = verts[p1] - verts[q0];
+      ay = verts[p1 + 1] - verts[q0 + 1];
+      az = verts[p1 + 2] - verts[q0 + 2];
+      bx = verts[p2] - verts[q0];
+      by = verts[p2 + 1] - verts[q0 + 1];
+      bz = verts[p2 + 2] - verts[q0 + 2];
+      float mx = ay * bz - az * by, my = az * bx - ax * bz, mz = ax * by - ay * bx;
+      double dot = (double) nx * mx + (double) ny * my + (double) nz * mz;
+      double lens = Math.sqrt(((double) nx * nx + (double) ny * ny + (double) nz * nz) *
+                              ((double) mx * mx + (double) my * my + (double) mz * mz));
+      if (!(dot > MIN_NORMAL_COS * lens)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /*
+   * Removes vertex from, whose triangles are in scratchU, moving its triangles to vertex to
+   */
+  private void collapse (int from, int to, int fromCount) {
+    int[] fromTris = scratchU;
+    // UV coords of to on the side of the edge where from is
+    float uu = 0, vv = 0;
+    for (int ii = 0; ii < fromCount; ii++) {
+      int tt = fromTris[ii] * 3;
+      for (int kk = 0; kk < 3; kk++) {
+        if (triVerts[tt + kk] == to) {
+          uu = hasUVs ? triUVs[(tt + kk) * 2] : 0;
+          vv = hasUVs ? triUVs[(tt + kk) * 2 + 1] : 0;
+          deadTri[fromTris[ii]] = true;
+          liveTris--;
+        }
+      }
+    }
+    for (int ii = 0; ii < fromCount; ii++) {
+      int tt = fromTris[ii] * 3;
+      if (deadTri[fromTris[ii]]) {
+        continue;
+      }
+      for (int kk = 0; kk < 3; kk++) {
+        if (triVerts[tt + kk] == from) {
+          triVerts[tt + kk] = to;
+          if (hasUVs) {
+            triUVs[(tt + kk) * 2] = uu;
+            triUVs[(tt + kk) * 2 + 1] = vv;
+          }
+        }
+      }
+    }
+    for (int qq = 0; qq < QUADRIC_SIZE; qq++) {
+      quadrics[to * QUADRIC_SIZE + qq] += quadrics[from * QUADRIC_SIZE + qq];
+    }
+    parent[from] = to;
+    int next = ring[from];
+    ring[from] = ring[to];
+    ring[to] = next;
+    version[to]++;
+    // The cost of every edge of to has changed
+    int count = gather(to, true);
+    int stamp = ++markStamp;
+    mark[to] = stamp;
+    for (int ii = 0; ii < count; ii++) {
+      int tt = scratchV[ii] * 3;
+      for (int kk = 0; kk < 3; kk++) {
+        int other = triVerts[tt + kk];
+        if (mark[other] != stamp) {
+          mark[other] = stamp;
+          push(to, other);
+        }
+      }
+    }
+  }
+
+  /*
+   * Copies the remaining triangles into a new mesh, with the vertexes they use, in their original order
+   */
+  private Mesh toMesh (String name) {
+    int vertexCount = mesh.getVertexCount();
+    int[] newIndex = new int[vertexCount];
+    Arrays.fill(newIndex, -1);
+    for (int tt = 0; tt < deadTri.length; tt++) {
+      for (int kk = 0; kk < 3 && !deadTri[tt]; kk++) {
+        newIndex[triVerts[tt * 3 + kk]] = 0;
+      }
+    }
+    int used = 0;
+    for (int ii = 0; ii < vertexCount; ii++) {
+      newIndex[ii] = newIndex[ii] == 0 ? used++ : -1;
+    }
+    float[] vertices = new float[used * 3];
+    for (int ii = 0; ii < vertexCount; ii++) {
+      if (newIndex[ii] >= 0) {
+        System.arraycopy(mesh.vertices, ii * 3, vertices, newIndex[ii] * 3, 3);
+      }
+    }
+    int[] faceOffsets = new int[liveTris + 1];
+    int[] faceIndices = new int[liveTris * 3];
+    float[] uvcoords = new float[hasUVs ? liveTris * 6 : 0];
+    int face = 0;
+    for (int tt = 0; tt < deadTri.length; tt++) {
+      if (deadTri[tt]) {
+        continue;
+      }
+      for (int kk = 0; kk < 3; kk++) {
+        faceIndices[face * 3 + kk] = newIndex[triVerts[tt * 3 + kk]];
+      }
+      if (hasUVs) {
+        System.arraycopy(triUVs, tt * 6, uvcoords, face * 6, 6);
+      }
+      faceOffsets[++face] = face * 3;
+    }
+    Mesh lod = new Mesh(name, mesh.material, vertices, uvcoords, mesh.uvSet, faceOffsets, faceIndices,
+                        toSkeleton(mesh.skeleton, newIndex));
+    lod.takes.putAll(mesh.takes);
+    return lod;
+  }
+
+  /*
+   * Copies the weights of skeleton's joints for vertexes which remain, using their new indexes
+   */
+  private static Skeleton toSkeleton (Skeleton skeleton, int[] newIndex) {
+    if (skeleton == null) {
+      return null;
+    }
+    int[] offsets = new int[skeleton.weightOffsets.length];
+    int[] weightVertex = new int[skeleton.weightVertex.length];
+    float[] weightValue = new float[skeleton.weightValue.length];
+    int count = 0;
+    for (int jj = 0; jj < skeleton.joints.length; jj++) {
+      offsets[jj] = count;
+      for (int ii = skeleton.weightOffsets[jj]; ii < skeleton.weightOffsets[jj + 1]; ii++) {
+        int vertex = skeleton.weightVertex[ii];
+        if (vertex >= 0 && vertex < newIndex.length && newIndex[vertex] >= 0) {
+          weightVertex[count] = newIndex[vertex];
+          weightValue[count++] = skeleton.weightValue[ii];
+        }
+      }
+    }
+    offsets[skeleton.joints.length] = count;
+    Skeleton lod = new Skeleton(skeleton.joints, offsets, Arrays.copyOf(weightVertex, count),
+                                Arrays.copyOf(weightValue, count));
+    lod.rootJoint = skeleton.rootJoint;
+    return lod;
+  }
+}
@@ -0,0 +1,247 @@
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/*
+ *  Computes smooth vertex normals for a Mesh, as .jas files don't store any (see Note 10).  The normal of each
+ *  face point is the weighted sum of the normals of the faces around its vertex, skipping faces whose normal is
+ *  more than the crease angle away from its own face's normal, so hard edges stay sharp.  Faces are weighted by
+ *  the angle of their corner at the vertex, or by their area.  Face normals point out of the side of the face
+ *  that the OBJ writer makes its front, which is the side the points, written in reverse order, go counterclockwise
+ *  when seen from.
+ *
+ *  The work is split into passes, run with Parallel.forRanges(), which each only write their own elements.  The
+ *  first computes face normals and corner weights over ranges of faces.  Then, using a vertex to face point
+ *  adjacency list in compressed sparse row form (built with a counting sort), the second gathers the normals of
+ *  face points over ranges of vertexes.  Face points of a vertex which end up with the same normal share one entry
+ *  in the normals table, so a fully smooth mesh has one normal per vertex, and a last pass over ranges of vertexes
+ *  copies these into the table, at offsets from a running total of each vertex's distinct normals.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class NormalGenerator {
+  public static final float DEFAULT_CREASE_ANGLE = 60;
+  private static final int  MIN_ITEMS_PER_TASK = 16384;
+
+  private NormalGenerator () { }
+
+  /*
+   * Vertex normals for a Mesh, where face point ii uses the normal at normals[indices[ii] * 3]
+   */
+  public static final class Normals {
+    final float[]     normals;      // packed x, y, z values
+    final int[]       indices;      // normal index of each face point
+
+    private Normals (float[] normals, int[] indices) {
+      this.normals = normals;
+      this.indices = indices;
+    }
+
+    public int getNormalCount () {
+      return normals.length / 3;
+    }
+
+    /**
+     * @return read-only view of packed x, y, z unit normals
+     */
+    public FloatBuffer getNormals () {
+      return FloatBuffer.wrap(normals).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return read-only view of the normal index of each face point, in Mesh.getFaceIndices() order
+     */
+    public IntBuffer getIndices () {
+      return IntBuffer.wrap(indices).asReadOnlyBuffer();
+    }
+  }
+
+  /*
+   * Inputs and intermediate arrays shared by the tasks of one generate() call
+   */
+  private static final class Pass {
+    final Mesh    mesh;
+    final float   minCos;           // cosine of the crease angle
+    final boolean angleWeighted;
+    final int[]   pointFace;        // face of each face point
+    final float[] faceNormals;      // unit normal of each face
+    final float[] pointWeights;     // weight of each face point's face in its vertex's normal
+    int[]         adjOffsets;       // vertex ii's face points are adjPoints[adjOffsets[ii]] to [adjOffsets[ii + 1] - 1]
+    int[]         adjPoints;
+    float[]       pointNormals;     // normal of each face point
+    int[]         counts;           // number of distinct normals of each vertex, then their offset in the table
+
+    Pass (Mesh mesh, float creaseAngle, boolean angleWeighted) {
+      this.mesh = mesh;
+      this.minCos = creaseAngle >= 180 ? -2 : (float) Math.cos(Math.toRadians(creaseAngle));
+      this.angleWeighted = angleWeighted;
+      pointFace = new int[mesh.faceIndices.length];
+      faceNormals = new float[mesh.getFaceCount() * 3];
+      pointWeights = new float[mesh.faceIndices.length];
+    }
+  }
+
+  /**
+   * @param creaseAngle largest angle, in degrees, between the normals of two faces whose normals are smoothed
+   * together where they meet (180 smooths every face)
+   * @param angleWeighted true to weight each face by the angle of its corner at the vertex, or false to weight it
+   * by its area
+   */
+  public static Normals generate (Mesh mesh, float creaseAngle, boolean angleWeighted) {
+    Pass pass = new Pass(mesh, creaseAngle, angleWeighted);
+    int faceCount = mesh.getFaceCount();
+    int vertexCount = mesh.getVertexCount();
+    int[] faceIndices = mesh.faceIndices;
+    Parallel.forRanges(faceCount, MIN_ITEMS_PER_TASK, (from, to) -> faceNormals(pass, from, to));
+    // Vertex to face point adjacency, with each vertex's points in face order
+    int[] adjOffsets = pass.adjOffsets = new int[vertexCount + 1];
+    for (int vv : faceIndices) {
+      adjOffsets[vv + 1]++;
+    }
+    for (int ii = 0; ii < vertexCount; ii++) {
+      adjOffsets[ii + 1] += adjOffsets[ii];
+    }
+    int[] adjPoints = pass.adjPoints = new int[faceIndices.length];
+    int[] fill = new int[vertexCount];
+    for (int ii = 0; ii < faceIndices.length; ii++) {
+      int vv = faceIndices[ii];
+      adjPoints[adjOffsets[vv] + fill[vv]++] = ii;
+    }
+    pass.pointNormals = new float[faceIndices.length * 3];
+    pass.counts = new int[vertexCount + 1];
+    int[] indices = new int[faceIndices.length];
+    Parallel.forRanges(vertexCount, MIN_ITEMS_PER_TASK, (from, to) -> pointNormals(pass, from, to, indices));
+    // Offset of each vertex's first normal in the table
+    int[] counts = pass.counts;
+    int total = 0;
+    for (int ii = 0; ii < vertexCount; ii++) {
+      int count = counts[ii];
+      counts[ii] = total;
+      total += count;
+    }
+    float[] normals = new float[total * 3];
+    Parallel.forRanges(vertexCount, MIN_ITEMS_PER_TASK, (from, to) -> collect(pass, from, to, indices, normals));
+    return new Normals(normals, indices);
+  }
+
+  /*
+   * First pass: computes the unit normal of faces from up to, but not including to, using Newell's method, and
+   * the weight of each of their points
+   */
+  private static void faceNormals (Pass pass, int from, int to) {
+    int[] faceOffsets = pass.mesh.faceOffsets;
+    int[] faceIndices = pass.mesh.faceIndices;
+    float[] verts = pass.mesh.vertices;
+    for (int ii = from; ii < to; ii++) {
+      int first = faceOffsets[ii];
+      int last = faceOffsets[ii + 1] - 1;
+      float nx = 0, ny = 0, nz = 0;
+      for (int jj = first, prev = last; jj <= last; prev = jj++) {
+        pass.pointFace[jj] = ii;
+        int aa = faceIndices[prev] * 3;
+        int bb = faceIndices[jj] * 3;
+        // Reversed, as the OBJ writer reverses the points
+        nx += (verts[bb + 1] - verts[aa + 1]) * (verts[aa + 2] + verts[bb + 2]);
+        ny += (verts[bb + 2] - verts[aa + 2]) * (verts[aa] + verts[bb]);
+        nz += (verts[bb] - verts[aa]) * (verts[aa + 1] + verts[bb + 1]);
+      }
+      float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+      float scale = len > 0 ? 1 / len : 0;
+      pass.faceNormals[ii * 3] = nx * scale;
+      pass.faceNormals[ii * 3 + 1] = ny * scale;
+      pass.faceNormals[ii * 3 + 2] = nz * scale;
+      for (int jj = first; jj <= last; jj++) {
+        pass.pointWeights[jj] = pass.angleWeighted ? cornerAngle(pass.mesh, first, last, jj) : len * 0.5f;
+      }
+    }
+  }
+
+  /*
+   * Returns the angle, in radians, between the edges of a face which meet at face point jj
+   */
+  private static float cornerAngle (Mesh mesh, int first, int last, int jj) {
+    int[] faceIndices = mesh.faceIndices;
+    float[] verts = mesh.vertices;
+    int pp = faceIndices[jj] * 3;
+    int aa = faceIndices[jj == first ? last : jj - 1] * 3;
+    int bb = faceIndices[jj == last ? first : jj + 1] * 3;
+    float ax = verts[aa] - verts[pp], ay = verts[aa + 1] - verts[pp + 1], az = verts[aa + 2] - verts[pp + 2];
+    float bx = verts[bb] - verts[pp], by = verts[bb + 1] - verts[pp + 1], bz = verts[bb + 2] - verts[pp + 2];
+    float cx = ay * bz - az * by, cy = az * bx - ax * bz, cz = ax * by - ay * bx;
+    return (float) Math.atan2(Math.sqrt(cx * cx + cy * cy + cz * cz), ax * bx + ay * by + az * bz);
+  }
+
+  /*
+   * Second pass: computes the normal of each face point of vertexes from up to, but not including to, and numbers
+   * the distinct normals of each vertex, from 0, in indices
+   */
+  private static void pointNormals (Pass pass, int from, int to, int[] indices) {
+    int[] adjOffsets = pass.adjOffsets;
+    int[] adjPoints = pass.adjPoints;
+    int[] pointFace = pass.pointFace;
+    float[] faceNormals = pass.faceNormals;
+    float[] weights = pass.pointWeights;
+    float[] out = pass.pointNormals;
+    for (int vv = from; vv < to; vv++) {
+      int start = adjOffsets[vv];
+      int end = adjOffsets[vv + 1];
+      int distinct = 0;
+      for (int ii = start; ii < end; ii++) {
+        int point = adjPoints[ii];
+        int face = pointFace[point] * 3;
+        float fx = faceNormals[face], fy = faceNormals[face + 1], fz = faceNormals[face + 2];
+        float nx = 0, ny = 0, nz = 0;
+        for (int jj = start; jj < end; jj++) {
+          int other = adjPoints[jj];
+          int oFace = pointFace[other] * 3;
+          float ox = faceNormals[oFace], oy = faceNormals[oFace + 1], oz = faceNormals[oFace + 2];
+          if (other == point || fx * ox + fy * oy + fz * oz >= pass.minCos) {
+            float ww = weights[other];
+            nx += ox * ww;
+            ny += oy * ww;
+            nz += oz * ww;
+          }
+        }
+        float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        float scale = len > 0 ? 1 / len : 0;
+        int dst = point * 3;
+        out[dst] = nx * scale;
+        out[dst + 1] = ny * scale;
+        out[dst + 2] = nz * scale;
+        // Share the number of an earlier point of this vertex with the same normal
+        int index = -1;
+        for (int jj = start; jj < ii && index < 0; jj++) {
+          int src = adjPoints[jj] * 3;
+          if (out[src] == out[dst] && out[src + 1] == out[dst + 1] && out[src + 2] == out[dst + 2]) {
+            index = indices[adjPoints[jj]];
+          }
+        }
+        indices[point] = index >= 0 ? index : distinct++;
+      }
+      pass.counts[vv] = distinct;
+    }
+  }
+
+  /*
+   * Third pass: offsets the normal indexes of face points of vertexes from up to, but not including to, by the
+   * vertex's first normal in the table, and copies each distinct normal into the table
+   */
+  private static void collect (Pass pass, int from, int to, int[] indices, float[] normals) {
+    int[] adjOffsets = pass.adjOffsets;
+    int[] adjPoints = pass.adjPoints;
+    float[] pointNormals = pass.pointNormals;
+    for (int vv = from; vv < to; vv++) {
+      int base = pass.counts[vv];
+      int next = 0;
+      for (int ii = adjOffsets[vv]; ii < adjOffsets[vv + 1]; ii++) {
+        int point = adjPoints[ii];
+        int index = indices[point];
+        if (index == next) {
+          System.arraycopy(pointNormals, point * 3, normals, (base + index) * 3, 3);
+          next++;
+        }
+        indices[point] = base + index;
+      }
+    }
+  }
+}
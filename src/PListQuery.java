@@ -0,0 +1,456 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/*
+ *  Implements the -query switch, which selects values from a .jas file's plist tree using paths in the same form
+ *  as those printed by -raw mode, extended with wildcards, index ranges, predicates and recursive descent:
+ *
+ *    Objects[1].name                         a single value
+ *    Objects[*].name                         name of every top-level object
+ *    Objects[1:3]                            items 1 and 2 (end is exclusive, negative indexes count from the end)
+ *    Objects..[type=NGON].vertexcount        vertexcount of every NGON object, at any depth
+ *    Materials3[name=skin_M].nodes[0].diffColor
+ *    Objects..[type=NGON].vertex[0:10]       first 10 elements of a typed Data block
+ *
+ *  A predicate [key=value], or [key!=value] keeps the dictionaries (or, applied to an array, the items) whose key
+ *  has the given value, and "*" matches every key of a dictionary.  A step following ".." is applied to a node and
+ *  all of its descendants.  Evaluation only follows the matching branches of the lazily decoded tree and Data
+ *  blocks are only decoded when they are selected, so a query on a large file only reads the parts it needs.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+final class PListQuery {
+  private final String      expr;
+  private final List<Step>  steps = new ArrayList<>();
+
+  private static final class Step {
+    final char      kind;           // 'k' key, 'i' index range, 'f' predicate
+    final boolean   recursive;      // applies to the node and all its descendants
+    String          name;           // key, or predicate's key
+    String          value;          // predicate's value
+    boolean         negate;         // predicate uses !=
+    Integer         from, to;       // index range (null for an open end)
+
+    Step (char kind, boolean recursive) {
+      this.kind = kind;
+      this.recursive = recursive;
+    }
+  }
+
+  /*
+   * A selected node, or element of a Data block
+   */
+  static final class Result {
+    final String            path;
+    final Object            value;      // Map, List, ByteBuffer, String, Number, Boolean, or Number[] Data element
+    final BlobStats.Layout  layout;     // layout if value is a typed Data block, or null
+
+    Result (String path, Object value, BlobStats.Layout layout) {
+      this.path = path;
+      this.value = value;
+      this.layout = layout;
+    }
+  }
+
+  private PListQuery (String expr) {
+    this.expr = expr;
+  }
+
+  /**
+   * Parses a query
+   * @throws IllegalArgumentException if expr is not a valid query
+   */
+  static PListQuery parse (String expr) {
+    PListQuery query = new PListQuery(expr);
+    int pos = 0;
+    boolean first = true;
+    while (pos < expr.length()) {
+      boolean recursive = false;
+      if (expr.startsWith("..", pos)) {
+        recursive = true;
+        pos += 2;
+      } else if (expr.charAt(pos) == '.' && !first) {
+        pos++;
+      }
+      Step step;
+      if (pos < expr.length() && expr.charAt(pos) == '[') {
+        int end = expr.indexOf(']', pos);
+        if (end < 0) {
+          throw new IllegalArgumentException("Missing ']' in query: " + expr);
+        }
+        step = parseBracket(expr.substring(pos + 1, end), recursive, expr);
+        pos = end + 1;
+      } else {
+        int end = pos;
+        while (end < expr.length() && expr.charAt(end) != '.' && expr.charAt(end) != '[') {
+          end++;
+        }
+        if (end == pos) {
+          throw new IllegalArgumentException("Missing key at position " + pos + " in query: " + expr);
+        }
+        step = new Step('k', recursive);
+        step.name = expr.substring(pos, end);
+        pos = end;
+      }
+      query.steps.add(step);
+      first = false;
+    }
+    if (query.steps.isEmpty()) {
+      throw new IllegalArgumentException("Empty query");
+    }
+    return query;
+  }
+
+  private static Step parseBracket (String text, boolean recursive, String expr) {
+    int eq = text.indexOf('=');
+    if (eq > 0) {
+      Step step = new Step('f', recursive);
+      step.negate = text.charAt(eq - 1) == '!';
+      step.name = text.substring(0, step.negate ? eq - 1 : eq).trim();
+      step.value = text.substring(eq + 1).trim();
+      return step;
+    }
+    Step step = new Step('i', recursive);
+    try {
+      if (!"*".equals(text.trim())) {
+        int colon = text.indexOf(':');
+        if (colon < 0) {
+          step.from = Integer.parseInt(text.trim());
+          step.to = step.from == -1 ? null : step.from + 1;
+        } else {
+          String from = text.substring(0, colon).trim();
+          String to = text.substring(colon + 1).trim();
+          step.from = from.isEmpty() ? null : Integer.valueOf(from);
+          step.to = to.isEmpty() ? null : Integer.valueOf(to);
+        }
+      }
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid index [" + text + "] in query: " + expr);
+    }
+    return step;
+  }
+
+  String getExpression () {
+    return expr;
+  }
+
+  /**
+   * @return nodes selected from the plist tree root, in file order
+   */
+  List<Result> evaluate (Object root) {
+    List<Result> nodes = Collections.singletonList(new Result("", root, null));
+    for (Step step : steps) {
+      List<Result> next = new ArrayList<>();
+      for (Result node : nodes) {
+        if (step.recursive) {
+          descend(node, step, next);
+        } else {
+          apply(node, step, next);
+        }
+      }
+      nodes = next;
+    }
+    return nodes;
+  }
+
+  private static void descend (Result node, Step step, List<Result> out) {
+    apply(node, step, out);
+    if (node.value instanceof Map) {
+      for (Map.Entry<String,Object> entry : asDict(node.value).entrySet()) {
+        Object value = entry.getValue();
+        if (value instanceof Map || value instanceof List) {
+          descend(new Result(getPath(node.path, entry.getKey()), value, null), step, out);
+        }
+      }
+    } else if (node.value instanceof List) {
+      List<?> list = (List<?>) node.value;
+      for (int ii = 0; ii < list.size(); ii++) {
+        Object value = list.get(ii);
+        if (value instanceof Map || value instanceof List) {
+          descend(new Result(node.path + "[" + ii + "]", value, null), step, out);
+        }
+      }
+    }
+  }
+
+  private static void apply (Result node, Step step, List<Result> out) {
+    Object value = node.value;
+    switch (step.kind) {
+    case 'k':
+      if (value instanceof Map) {
+        Map<String,Object> dict = asDict(value);
+        if ("*".equals(step.name)) {
+          for (String key : dict.keySet()) {
+            out.add(getChild(node, dict, key));
+          }
+        } else if (dict.containsKey(step.name)) {
+          out.add(getChild(node, dict, step.name));
+        }
+      }
+      break;
+    case 'i':
+      if (value instanceof List) {
+        List<?> list = (List<?>) value;
+        int[] range = getRange(step, list.size());
+        for (int ii = range[0]; ii < range[1]; ii++) {
+          out.add(new Result(node.path + "[" + ii + "]", list.get(ii), null));
+        }
+      } else if (value instanceof ByteBuffer && node.layout != null) {
+        ByteBuffer data = ((ByteBuffer) value).duplicate().order(node.layout.order);
+        int[] range = getRange(step, node.layout.getCount(data));
+        for (int ii = range[0]; ii < range[1]; ii++) {
+          out.add(new Result(node.path + "[" + ii + "]", getElement(data, node.layout, ii), null));
+        }
+      }
+      break;
+    case 'f':
+      if (value instanceof Map) {
+        if (matches(asDict(value), step)) {
+          out.add(node);
+        }
+      } else if (value instanceof List && !step.recursive) {
+        // Recursive predicates skip arrays, as their items are also checked as descendants
+        List<?> list = (List<?>) value;
+        for (int ii = 0; ii < list.size(); ii++) {
+          Object item = list.get(ii);
+          if (item instanceof Map && matches(asDict(item), step)) {
+            out.add(new Result(node.path + "[" + ii + "]", item, null));
+          }
+        }
+      }
+      break;
+    }
+  }
+
+  private static Result getChild (Result node, Map<String,Object> dict, String key) {
+    Object value = dict.get(key);
+    BlobStats.Layout layout = value instanceof ByteBuffer ? BlobStats.getLayout(key, dict) : null;
+    return new Result(getPath(node.path, key), value, layout);
+  }
+
+  private static String getPath (String path, String key) {
+    return path.isEmpty() ? key : path + "." + key;
+  }
+
+  /*
+   * Returns the start and end (exclusive) of step's index range, clamped to an array of size items
+   */
+  private static int[] getRange (Step step, int size) {
+    int from = step.from == null ? 0 : step.from < 0 ? step.from + size : step.from;
+    int to = step.to == null ? size : step.to < 0 ? step.to + size : step.to;
+    return new int[] {Math.max(0, from), Math.min(size, to)};
+  }
+
+  private static boolean matches (Map<String,Object> dict, Step step) {
+    Object val = dict.get(step.name);
+    boolean match = false;
+    if (val instanceof Number) {
+      try {
+        match = ((Number) val).doubleValue() == Double.parseDouble(step.value);
+      } catch (NumberFormatException ex) {
+        match = false;
+      }
+    } else if (val != null) {
+      match = val.toString().equals(step.value);
+    }
+    return match != step.negate;
+  }
+
+  private static Number[] getElement (ByteBuffer data, BlobStats.Layout layout, int idx) {
+    Number[] vals = new Number[layout.components.length];
+    for (int cc = 0; cc < vals.length; cc++) {
+      vals[cc] = layout.getValue(data, idx, cc);
+    }
+    return vals;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String,Object> asDict (Object obj) {
+    return (Map<String,Object>) obj;
+  }
+
+  /**
+   * Writes results as "path = value" lines, one for each scalar value, or Data element, in the selected nodes
+   */
+  static void writeText (AsciiWriter out, List<Result> results) throws IOException {
+    for (Result res : results) {
+      writeText(out, res.path, res.value, res.layout);
+    }
+  }
+
+  private static void writeText (AsciiWriter out, String path, Object value, BlobStats.Layout layout)
+      throws IOException {
+    if (value instanceof Map) {
+      Map<String,Object> dict = asDict(value);
+      for (Map.Entry<String,Object> entry : dict.entrySet()) {
+        Object child = entry.getValue();
+        BlobStats.Layout cLayout = child instanceof ByteBuffer ? BlobStats.getLayout(entry.getKey(), dict) : null;
+        writeText(out, getPath(path, entry.getKey()), child, cLayout);
+      }
+    } else if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      for (int ii = 0; ii < list.size(); ii++) {
+        writeText(out, path + "[" + ii + "]", list.get(ii), null);
+      }
+    } else if (value instanceof ByteBuffer && layout != null) {
+      ByteBuffer data = ((ByteBuffer) value).duplicate().order(layout.order);
+      int count = layout.getCount(data);
+      for (int ii = 0; ii < count; ii++) {
+        out.append(path).append('[').append(ii).append("] =");
+        writeElement(out, getElement(data, layout, ii));
+        out.newLine();
+      }
+    } else {
+      out.append(path).append(" =");
+      if (value instanceof Number[]) {
+        writeElement(out, (Number[]) value);
+      } else if (value instanceof ByteBuffer) {
+        ByteBuffer data = (ByteBuffer) value;
+        out.append(" Data (").append(data.remaining()).append(" bytes) ");
+        for (int ii = data.position(); ii < data.limit(); ii++) {
+          out.appendHex(data.get(ii));
+        }
+      } else if (value instanceof String) {
+        out.append(" '").append(value.toString().replace("\n", "\\n").replace("\r", "\\r")).append('\'');
+      } else if (value instanceof Double || value instanceof Float) {
+        out.append(' ').appendFloat(((Number) value).floatValue());
+      } else {
+        out.append(' ').append(String.valueOf(value));
+      }
+      out.newLine();
+    }
+  }
+
+  private static void writeElement (AsciiWriter out, Number[] vals) throws IOException {
+    for (Number val : vals) {
+      if (val instanceof Float) {
+        out.append(' ').appendFloat(val.floatValue());
+      } else {
+        out.append(' ').append(val.longValue());
+      }
+    }
+  }
+
+  /**
+   * Writes the results of each query as a JSON object with the query as the key and an array of {"path", "value"}
+   * objects as the value.  Data blocks are written as an array of elements (each an array if the layout has more
+   * than one component), or a hex string if their layout is not known.
+   */
+  static void writeJson (AsciiWriter out, Map<String,List<Result>> results) throws IOException {
+    out.append('{').newLine();
+    int qq = 0;
+    for (Map.Entry<String,List<Result>> entry : results.entrySet()) {
+      out.append("  ");
+      writeJsonString(out, entry.getKey());
+      out.append(": [");
+      List<Result> list = entry.getValue();
+      for (int ii = 0; ii < list.size(); ii++) {
+        Result res = list.get(ii);
+        out.newLine().append("    {\"path\": ");
+        writeJsonString(out, res.path);
+        out.append(", \"value\": ");
+        writeJson(out, res.value, res.layout);
+        out.append(ii < list.size() - 1 ? "}," : "}");
+      }
+      if (!list.isEmpty()) {
+        out.newLine().append("  ");
+      }
+      out.append(++qq < results.size() ? "]," : "]").newLine();
+    }
+    out.append('}').newLine();
+  }
+
+  private static void writeJson (AsciiWriter out, Object value, BlobStats.Layout layout) throws IOException {
+    if (value instanceof Map) {
+      Map<String,Object> dict = asDict(value);
+      out.append('{');
+      String sep = "";
+      for (Map.Entry<String,Object> entry : dict.entrySet()) {
+        Object child = entry.getValue();
+        out.append(sep);
+        writeJsonString(out, entry.getKey());
+        out.append(": ");
+        writeJson(out, child, child instanceof ByteBuffer ? BlobStats.getLayout(entry.getKey(), dict) : null);
+        sep = ", ";
+      }
+      out.append('}');
+    } else if (value instanceof List) {
+      out.append('[');
+      String sep = "";
+      for (Object item : (List<?>) value) {
+        out.append(sep);
+        writeJson(out, item, null);
+        sep = ", ";
+      }
+      out.append(']');
+    } else if (value instanceof ByteBuffer && layout != null) {
+      ByteBuffer data = ((ByteBuffer) value).duplicate().order(layout.order);
+      int count = layout.getCount(data);
+      out.append('[');
+      for (int ii = 0; ii < count; ii++) {
+        if (ii > 0) {
+          out.append(", ");
+        }
+        writeJson(out, getElement(data, layout, ii), null);
+      }
+      out.append(']');
+    } else if (value instanceof ByteBuffer) {
+      ByteBuffer data = (ByteBuffer) value;
+      out.append('"');
+      for (int ii = data.position(); ii < data.limit(); ii++) {
+        out.appendHex(data.get(ii));
+      }
+      out.append('"');
+    } else if (value instanceof Number[]) {
+      Number[] vals = (Number[]) value;
+      if (vals.length == 1) {
+        writeJson(out, vals[0], null);
+      } else {
+        out.append('[');
+        for (int ii = 0; ii < vals.length; ii++) {
+          if (ii > 0) {
+            out.append(", ");
+          }
+          writeJson(out, vals[ii], null);
+        }
+        out.append(']');
+      }
+    } else if (value instanceof Float || value instanceof Double) {
+      double val = ((Number) value).doubleValue();
+      // JSON has no NaN, or Infinity.  Cheetah 3D stores floats as doubles, so write these as the shorter float.
+      out.append(Double.isNaN(val) || Double.isInfinite(val) ? "null" :
+                 (float) val == val ? Float.toString((float) val) : Double.toString(val));
+    } else if (value instanceof Number || value instanceof Boolean) {
+      out.append(value.toString());
+    } else if (value == null) {
+      out.append("null");
+    } else {
+      writeJsonString(out, value.toString());
+    }
+  }
+
+  static void writeJsonString (AsciiWriter out, String str) throws IOException {
+    out.append('"');
+    for (int ii = 0; ii < str.length(); ii++) {
+      char cc = str.charAt(ii);
+      if (cc == '"' || cc == '\\') {
+        out.append('\\').append(cc);
+      } else if (cc < 0x20) {
+        out.append("\\u00").appendHex((byte) cc);
+      } else if (cc > 0x7F) {
+        // Let AsciiWriter encode each run of non ASCII chars
+        int end = ii + 1;
+        while (end < str.length() && str.charAt(end) > 0x7F) {
+          end++;
+        }
+        out.append(str.substring(ii, end));
+        ii = end - 1;
+      } else {
+        out.append(cc);
+      }
+    }
+    out.append('"');
+  }
+}
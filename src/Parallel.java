@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+ *  Runs data parallel loops on the common ForkJoinPool.  forRanges() splits count items into contiguous ranges of
+ *  at least minPerTask items, and up to four per core, so small inputs run on the calling thread.  All but the last range
+ *  are submitted to the pool, the last is run by the calling thread, then it waits for the others.  Each range
+ *  must only write its own part of any shared output, so no locks are needed.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+final class Parallel {
+  private Parallel () { }
+
+  interface RangeTask {
+    void run (int from, int to);
+  }
+
+  interface IndexTask {
+    void run (int index);
+  }
+
+  /**
+   * @return number of ranges forRanges() splits count items into
+   */
+  static int getRangeCount (int count, int minPerTask) {
+    return Math.max(1, Math.min(ForkJoinPool.commonPool().getParallelism() * 4, count / minPerTask));
+  }
+
+  /**
+   * @return index of the first item of range, when count items are split into ranges ranges (range == ranges
+   * gives count)
+   */
+  static int getRangeStart (int count, int ranges, int range) {
+    return (int) ((long) count * range / ranges);
+  }
+
+  /*
+   * Splits count items into contiguous ranges, and runs body on each in parallel, with the items from up to, but
+   * not including to
+   */
+  static void forRanges (int count, int minPerTask, RangeTask body) {
+    int ranges = getRangeCount(count, minPerTask);
+    forEach(ranges, rr -> body.run(getRangeStart(count, ranges, rr), getRangeStart(count, ranges, rr + 1)));
+  }
+
+  /*
+   * Runs body for each index from 0 up to, but not including count, in parallel
+   */
+  static void forEach (int count, IndexTask body) {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    List<ForkJoinTask<?>> pending = new ArrayList<>();
+    for (int ii = 0; ii < count - 1; ii++) {
+      int index = ii;
+      pending.add(pool.submit(() -> body.run(index)));
+    }
+    if (count > 0) {
+      body.run(count - 1);
+    }
+    for (ForkJoinTask<?> task : pending) {
+      task.join();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/*
+ *  Writes the meshes of a Scene as one binary little endian PLY file, as used by the -ply switch.  The vertices
+ *  of all the meshes form one "vertex" element and each face is a "face" element with a list of vertex indexes
+ *  and a list of the u, v values of each of its points (see Note 5 in Cheetah3DParser.java), so faces keep their
+ *  original number of points.  As with the -obj switch, V is written as stored unless flipV is set.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+final class PlyWriter {
+  private PlyWriter () { }
+
+  static void write (WritableByteChannel channel, List<Mesh> meshes, boolean flipV) throws IOException {
+    int vertexCount = 0;
+    int faceCount = 0;
+    int maxPoints = 0;
+    for (Mesh mesh : meshes) {
+      vertexCount += mesh.getVertexCount();
+      faceCount += mesh.getFaceCount();
+      for (int ii = 0; ii < mesh.getFaceCount(); ii++) {
+        maxPoints = Math.max(maxPoints, mesh.faceOffsets[ii + 1] - mesh.faceOffsets[ii]);
+      }
+    }
+    // List lengths are one byte, unless a face has too many points
+    boolean bigFaces = maxPoints * 2 > 255;
+    String countType = bigFaces ? "int" : "uchar";
+    BinaryWriter out = new BinaryWriter(channel, 1 << 20);
+    out.putAscii("ply\n" +
+                 "format binary_little_endian 1.0\n" +
+                 "comment generated by Cheetah3DParser\n" +
+                 "element vertex " + vertexCount + "\n" +
+                 "property float x\n" +
+                 "property float y\n" +
+                 "property float z\n" +
+                 "element face " + faceCount + "\n" +
+                 "property list " + countType + " int vertex_indices\n" +
+                 "property list " + countType + " float texcoord\n" +
+                 "end_header\n");
+    for (Mesh mesh : meshes) {
+      out.putFloats(mesh.vertices, 0, mesh.vertices.length);
+    }
+    int vertexBase = 0;
+    for (Mesh mesh : meshes) {
+      int[] faceOffsets = mesh.faceOffsets;
+      int[] faceIndices = mesh.faceIndices;
+      float[] uvcoords = mesh.uvcoords;
+      boolean hasUVs = uvcoords.length >= faceIndices.length * 2;
+      for (int ii = 0; ii < faceOffsets.length - 1; ii++) {
+        int from = faceOffsets[ii];
+        int points = faceOffsets[ii + 1] - from;
+        ByteBuffer buf = out.room(2 * (bigFaces ? 4 : 1) + points * 12);
+        if (bigFaces) {
+          buf.putInt(points);
+        } else {
+          buf.put((byte) points);
+        }
+        // Visit points in reverse order, as the OBJ writer does
+        for (int jj = from + points - 1; jj >= from; jj--) {
+          buf.putInt(faceIndices[jj] + vertexBase);
+        }
+        if (bigFaces) {
+          buf.putInt(points * 2);
+        } else {
+          buf.put((byte) (points * 2));
+        }
+        for (int jj = from + points - 1; jj >= from; jj--) {
+          float uu = hasUVs ? uvcoords[jj * 2] : 0;
+          float vv = hasUVs ? uvcoords[jj * 2 + 1] : 0;
+          buf.putFloat(uu).putFloat(flipV ? 1 - vv : vv);
+        }
+      }
+      vertexBase += mesh.getVertexCount();
+    }
+    out.flush();
+  }
+}
@@ -0,0 +1,176 @@
+import java.util.*;
+
+/*
+ *  Forward kinematics for a Skeleton.  The joint tree under the skeleton's root joint is flattened into a parent
+ *  first order, so each joint's world matrix can be computed in one pass by multiplying its parent's (already
+ *  computed) world matrix by its local matrix.  A joint's local matrix is T * R * S, built from its translate,
+ *  rotation and scale, where the rotation is Euler angles in degrees about the x, y and z axes applied in
+ *  heading, pitch, bank order, as R = Ry * Rx * Rz.  Joints and values with no animation channel in a take keep
+ *  the rest values from their JOINT object.
+ *
+ *  Matrices are 4x4 in the same layout as the transposed matrices of Skeleton.Joint, with the translation in
+ *  elements 12, 13 and 14.  evaluate() fills one packed float[] for every frame of a take, computing ranges of
+ *  frames with Parallel.forRanges(), each with its own TakeSampler.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class PoseEvaluator {
+  public static final int             MATRIX_SIZE = 16;
+  private static final int            MIN_FRAMES_PER_TASK = 16;
+  private final Skeleton.Joint[]      joints;       // parent first order
+  private final int[]                 parents;      // index of each joint's parent, or -1 for the root
+  private final List<String>          names;
+  private final float[]               rest;         // TakeSampler.SLOT_SIZE rest values for each joint
+
+  public PoseEvaluator (Skeleton skeleton) {
+    List<Skeleton.Joint> order = new ArrayList<>();
+    List<Integer> parentList = new ArrayList<>();
+    Set<Skeleton.Joint> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    if (skeleton.rootJoint != null) {
+      order.add(skeleton.rootJoint);
+      parentList.add(-1);
+      seen.add(skeleton.rootJoint);
+    }
+    // Breadth first, so every joint follows its parent
+    for (int ii = 0; ii < order.size(); ii++) {
+      for (Skeleton.Joint child : order.get(ii).children) {
+        if (child != null && seen.add(child)) {
+          order.add(child);
+          parentList.add(ii);
+        }
+      }
+    }
+    joints = order.toArray(new Skeleton.Joint[0]);
+    parents = new int[joints.length];
+    names = new ArrayList<>();
+    rest = new float[joints.length * TakeSampler.SLOT_SIZE];
+    for (int ii = 0; ii < joints.length; ii++) {
+      Skeleton.Joint joint = joints[ii];
+      parents[ii] = parentList.get(ii);
+      names.add(joint.jointName);
+      int base = ii * TakeSampler.SLOT_SIZE;
+      copy(joint.translate, rest, base, 0);
+      copy(joint.rotation, rest, base + 3, 0);
+      copy(joint.scale, rest, base + 6, 1);
+    }
+  }
+
+  private static void copy (float[] src, float[] dst, int offset, float missing) {
+    for (int ii = 0; ii < 3; ii++) {
+      dst[offset + ii] = src != null && ii < src.length ? src[ii] : missing;
+    }
+  }
+
+  /**
+   * @return joints reachable from the skeleton's root joint, with every joint after its parent
+   */
+  public List<Skeleton.Joint> getJoints () {
+    return Collections.unmodifiableList(Arrays.asList(joints));
+  }
+
+  /**
+   * @return index in getJoints() of each joint's parent, or -1 for the root joint
+   */
+  public int[] getParents () {
+    return parents.clone();
+  }
+
+  public int getJointCount () {
+    return joints.length;
+  }
+
+  /**
+   * @return TakeSampler.SLOT_SIZE rest values (translate, rotation and scale from each JOINT object) for each joint
+   */
+  float[] getRestPose () {
+    return rest.clone();
+  }
+
+  /**
+   * Returns a sampler for take which writes the translate, rotation and scale of each joint, in getJoints() order,
+   * using the joint's rest values where take has no channel
+   */
+  public TakeSampler getSampler (Take take) {
+    return new TakeSampler(take, names, rest);
+  }
+
+  /**
+   * Computes the local to world matrix of every joint for every frame of take at fps
+   * @return getJointCount() matrices for each of getSampler(take).getFrameCount(fps) frames
+   */
+  public float[] evaluate (Take take, float fps) {
+    TakeSampler sampler = getSampler(take);
+    int frames = sampler.getFrameCount(fps);
+    float start = sampler.getStartTime();
+    int frameSize = joints.length * MATRIX_SIZE;
+    float[] out = new float[frames * frameSize];
+    Parallel.forRanges(frames, MIN_FRAMES_PER_TASK, (from, to) -> {
+      TakeSampler rangeSampler = getSampler(take);
+      float[] pose = new float[joints.length * TakeSampler.SLOT_SIZE];
+      for (int ff = from; ff < to; ff++) {
+        rangeSampler.sample(start + ff / fps, pose, 0);
+        getWorldMatrices(pose, out, ff * frameSize);
+      }
+    });
+    return out;
+  }
+
+  /**
+   * Computes the local to world matrix of every joint from a pose written by a getSampler() sampler
+   * @param out receives getJointCount() matrices, starting at offset
+   */
+  public void getWorldMatrices (float[] pose, float[] out, int offset) {
+    for (int ii = 0; ii < joints.length; ii++) {
+      int dst = offset + ii * MATRIX_SIZE;
+      setLocal(pose, ii * TakeSampler.SLOT_SIZE, out, dst);
+      if (parents[ii] >= 0) {
+        multiply(out, offset + parents[ii] * MATRIX_SIZE, out, dst);
+      }
+    }
+  }
+
+  /*
+   * Writes T * Ry * Rx * Rz * S for the translate, rotation and scale at pose[src] to out[dst]
+   */
+  static void setLocal (float[] pose, int src, float[] out, int dst) {
+    double rx = Math.toRadians(pose[src + 3]);
+    double ry = Math.toRadians(pose[src + 4]);
+    double rz = Math.toRadians(pose[src + 5]);
+    float cx = (float) Math.cos(rx), sx = (float) Math.sin(rx);
+    float cy = (float) Math.cos(ry), sy = (float) Math.sin(ry);
+    float cz = (float) Math.cos(rz), sz = (float) Math.sin(rz);
+    float sclX = pose[src + 6], sclY = pose[src + 7], sclZ = pose[src + 8];
+    // Columns of Ry * Rx * Rz, each scaled by the matching scale value
+    out[dst] = (cy * cz + sy * sx * sz) * sclX;
+    out[dst + 1] = cx * sz * sclX;
+    out[dst + 2] = (-sy * cz + cy * sx * sz) * sclX;
+    out[dst + 3] = 0;
+    out[dst + 4] = (-cy * sz + sy * sx * cz) * sclY;
+    out[dst + 5] = cx * cz * sclY;
+    out[dst + 6] = (sy * sz + cy * sx * cz) * sclY;
+    out[dst + 7] = 0;
+    out[dst + 8] = sy * cx * sclZ;
+    out[dst + 9] = -sx * sclZ;
+    out[dst + 10] = cy * cx * sclZ;
+    out[dst + 11] = 0;
+    out[dst + 12] = pose[src];
+    out[dst + 13] = pose[src + 1];
+    out[dst + 14] = pose[src + 2];
+    out[dst + 15] = 1;
+  }
+
+  /*
+   * Replaces the matrix at mat[dst] with parent[src] * mat[dst]
+   */
+  static void multiply (float[] parent, int src, float[] mat, int dst) {
+    for (int col = 0; col < 4; col++) {
+      int cc = dst + col * 4;
+      float m0 = mat[cc], m1 = mat[cc + 1], m2 = mat[cc + 2], m3 = mat[cc + 3];
+      for (int row = 0; row < 4; row++) {
+        mat[cc + row] = parent[src + row] * m0 + parent[src + 4 + row] * m1 + parent[src + 8 + row] * m2 +
+                        parent[src + 12 + row] * m3;
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+import java.util.*;
+
+/*
+ *  The materials, meshes and animation takes decoded from a .jas file by Cheetah3DParser.load().  A Scene and
+ *  all the objects reachable from it are fully built before load() returns and are never modified afterwards,
+ *  so they can be cached and shared between threads without locking.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class Scene {
+  private final List<Material>  materials;
+  private final List<Mesh>      meshes;
+  private final List<Folder>    folders;
+  private final List<String>    takeNames;
+  private final String          currentTake;
+
+  /*
+   * A FOLDER object, which only groups other objects
+   */
+  public static final class Folder {
+    private final String  name;
+    private final int     depth;
+
+    Folder (String name, int depth) {
+      this.name = name;
+      this.depth = depth;
+    }
+
+    public String getName () {
+      return name;
+    }
+
+    /**
+     * @return nesting level in the object hierarchy (0 for top level objects)
+     */
+    public int getDepth () {
+      return depth;
+    }
+  }
+
+  Scene (List<Material> materials, List<Mesh> meshes, List<Folder> folders, List<String> takeNames,
+         String currentTake) {
+    this.materials = Collections.unmodifiableList(new ArrayList<>(materials));
+    this.meshes = Collections.unmodifiableList(new ArrayList<>(meshes));
+    this.folders = Collections.unmodifiableList(new ArrayList<>(folders));
+    this.takeNames = Collections.unmodifiableList(new ArrayList<>(takeNames));
+    this.currentTake = currentTake;
+  }
+
+  public List<Material> getMaterials () {
+    return materials;
+  }
+
+  /**
+   * @return NGON objects, in file order
+   */
+  public List<Mesh> getMeshes () {
+    return meshes;
+  }
+
+  /**
+   * @return FOLDER objects, in file order
+   */
+  public List<Folder> getFolders () {
+    return folders;
+  }
+
+  /**
+   * @return names of the animation takes listed in the "Takes" section
+   */
+  public List<String> getTakeNames () {
+    return takeNames;
+  }
+
+  /**
+   * @return name of the current take, or null if none is set
+   */
+  public String getCurrentTake () {
+    return currentTake;
+  }
+}
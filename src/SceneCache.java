@@ -0,0 +1,591 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/*
+ *  Persistent cache of decoded Scenes, used by the -cache switch, so files that are exported many times with
+ *  different switches are only decoded once.  Entries are named by the SHA-256 hash of the .jas file's contents
+ *  plus FORMAT_VERSION, so an edited file, or a change to the format, simply misses the cache.  Small index files
+ *  record the hash of each file by path, size and modification time, so unchanged files are not hashed again.
+ *
+ *  Each entry is a little endian binary file that is memory mapped and read with bulk gets into the Scene's
+ *  arrays.  Strings are stored as an int length (-1 for null) followed by UTF-8 bytes, and arrays as an int
+ *  length (-1 for null) followed by their values:
+ *
+ *    "C3DS", FORMAT_VERSION
+ *    materials   count, then name, id, index, colors, sizes, flags and textures of each material
+ *    folders     count, then name and depth of each folder
+ *    takes       count, take names, then current take
+ *    meshes      count, then name, material index (-1 for default), uvSet, vertex, uv and face arrays,
+ *                skeleton (joints, weight arrays and root joint index) and the channels of each take of
+ *                each mesh
+ *
+ *  New entries are written to a temporary file which is then renamed, so concurrent writers (such as -batch jobs)
+ *  never see partial entries.  Each hit updates the modification time of the entry and its index file and, when
+ *  an entry is added, the least recently used entries and index files are deleted until the cache fits in its
+ *  size limit.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+class SceneCache {
+  static final int              FORMAT_VERSION = 2;
+  static final long             DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+  private static final int      MAGIC = 0x53443343;         // "C3DS" in little endian
+  private static final String   SUFFIX = ".scene";
+  private static final String   INDEX_SUFFIX = ".idx";
+  private final Path            dir;
+  private final long            maxBytes;
+
+  SceneCache (Path dir, long maxBytes) throws IOException {
+    this.dir = dir;
+    this.maxBytes = maxBytes;
+    Files.createDirectories(dir);
+  }
+
+  static Path getDefaultDir () {
+    return Paths.get(System.getProperty("user.home"), ".Cheetah3DParser", "cache");
+  }
+
+  /**
+   * Returns the Scene for file from the cache or, if not cached, decodes file with Cheetah3DParser.load() and
+   * adds the result to the cache
+   */
+  Scene load (Path file) throws IOException {
+    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+    Path index = dir.resolve(hash(ByteBuffer.wrap(file.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8))) +
+                             INDEX_SUFFIX);
+    String key = readIndex(index, attrs);
+    ByteBuffer data = null;
+    if (key != null) {
+      touch(index);
+    } else {
+      data = BinaryPList.map(file.toFile());
+      key = hash(data) + "-v" + FORMAT_VERSION;
+      writeIndex(index, attrs, key);
+    }
+    Path entry = dir.resolve(key + SUFFIX);
+    if (Files.isRegularFile(entry)) {
+      try {
+        Scene scene = read(entry);
+        touch(entry);
+        return scene;
+      } catch (IOException | RuntimeException ex) {
+        // Damaged, or truncated entry, so replace it
+        Files.deleteIfExists(entry);
+      }
+    }
+    Scene scene = Cheetah3DParser.load(data != null ? data : BinaryPList.map(file.toFile()));
+    write(scene, entry);
+    evict();
+    return scene;
+  }
+
+  /*
+   * Index files remember the content hash of a file at a given path, size and modification time, so hashing
+   * can be skipped if the file is unchanged.  As with git's index, a file modified within a second of being
+   * hashed could change again without changing its modification time, so its hash is not trusted.
+   */
+  private static String readIndex (Path index, BasicFileAttributes attrs) {
+    try {
+      String[] vals = new String(Files.readAllBytes(index), StandardCharsets.US_ASCII).trim().split(" ");
+      long modified = attrs.lastModifiedTime().toMillis();
+      if (vals.length == 4 && Long.parseLong(vals[0]) == attrs.size() && Long.parseLong(vals[1]) == modified &&
+          Long.parseLong(vals[2]) - modified > 1000 && vals[3].endsWith("-v" + FORMAT_VERSION)) {
+        return vals[3];
+      }
+    } catch (IOException | RuntimeException ex) {
+      // Missing, or damaged index, so hash file
+    }
+    return null;
+  }
+
+  private static void writeIndex (Path index, BasicFileAttributes attrs, String key) throws IOException {
+    String line = attrs.size() + " " + attrs.lastModifiedTime().toMillis() + " " + System.currentTimeMillis() + " " +
+                  key + "\n";
+    Path tmp = Files.createTempFile(index.getParent(), "tmp", ".part");
+    try {
+      Files.write(tmp, line.getBytes(StandardCharsets.US_ASCII));
+      Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  static String hash (ByteBuffer data) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(data.duplicate());
+      StringBuilder buf = new StringBuilder();
+      for (byte val : digest.digest()) {
+        buf.append(String.format("%02x", val));
+      }
+      return buf.toString();
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static void touch (Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException ex) {
+      // Only affects eviction order
+    }
+  }
+
+  /*
+   * Deletes least recently used entries and index files until their total size is no more than maxBytes.  Index
+   * files are counted too, as there is one for every path ever loaded.
+   */
+  private void evict () throws IOException {
+    List<File> entries = new ArrayList<>();
+    long total = 0;
+    File[] files = dir.toFile().listFiles((fDir, name) -> name.endsWith(SUFFIX) || name.endsWith(INDEX_SUFFIX));
+    for (File file : files != null ? files : new File[0]) {
+      entries.add(file);
+      total += file.length();
+    }
+    if (total <= maxBytes) {
+      return;
+    }
+    Map<File,Long> lastUsed = new HashMap<>();
+    for (File file : entries) {
+      lastUsed.put(file, file.lastModified());
+    }
+    entries.sort(Comparator.comparingLong(lastUsed::get));
+    for (File file : entries) {
+      if (total <= maxBytes) {
+        break;
+      }
+      long len = file.length();
+      if (file.delete()) {
+        total -= len;
+      }
+    }
+  }
+
+  /*
+   * Writer for entry files which fills a direct buffer and flushes it to the file's channel as needed
+   */
+  private static final class Output implements AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer  buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+    Output (Path file) throws IOException {
+      channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                 StandardOpenOption.WRITE);
+    }
+
+    private void ensure (int len) throws IOException {
+      if (buf.remaining() < len) {
+        flush();
+      }
+    }
+
+    private void flush () throws IOException {
+      buf.flip();
+      while (buf.hasRemaining()) {
+        channel.write(buf);
+      }
+      buf.clear();
+    }
+
+    void putInt (int val) throws IOException {
+      ensure(4);
+      buf.putInt(val);
+    }
+
+    void putFloat (float val) throws IOException {
+      ensure(4);
+      buf.putFloat(val);
+    }
+
+    void putBoolean (boolean val) throws IOException {
+      putInt(val ? 1 : 0);
+    }
+
+    void putString (String str) throws IOException {
+      if (str == null) {
+        putInt(-1);
+        return;
+      }
+      byte[] data = str.getBytes(StandardCharsets.UTF_8);
+      putInt(data.length);
+      for (int off = 0; off < data.length; ) {
+        ensure(1);
+        int len = Math.min(data.length - off, buf.remaining());
+        buf.put(data, off, len);
+        off += len;
+      }
+    }
+
+    void putFloats (float[] vals) throws IOException {
+      if (vals == null) {
+        putInt(-1);
+        return;
+      }
+      putInt(vals.length);
+      for (int off = 0; off < vals.length; ) {
+        ensure(4);
+        int len = Math.min(vals.length - off, buf.remaining() >> 2);
+        buf.asFloatBuffer().put(vals, off, len);
+        buf.position(buf.position() + len * 4);
+        off += len;
+      }
+    }
+
+    void putInts (int[] vals) throws IOException {
+      if (vals == null) {
+        putInt(-1);
+        return;
+      }
+      putInt(vals.length);
+      for (int off = 0; off < vals.length; ) {
+        ensure(4);
+        int len = Math.min(vals.length - off, buf.remaining() >> 2);
+        buf.asIntBuffer().put(vals, off, len);
+        buf.position(buf.position() + len * 4);
+        off += len;
+      }
+    }
+
+    @Override
+    public void close () throws IOException {
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  private static void write (Scene scene, Path entry) throws IOException {
+    Path tmp = Files.createTempFile(entry.getParent(), "tmp", ".part");
+    try {
+      try (Output out = new Output(tmp)) {
+        out.putInt(MAGIC);
+        out.putInt(FORMAT_VERSION);
+        List<Material> materials = scene.getMaterials();
+        out.putInt(materials.size());
+        for (Material material : materials) {
+          writeMaterial(out, material);
+        }
+        out.putInt(scene.getFolders().size());
+        for (Scene.Folder folder : scene.getFolders()) {
+          out.putString(folder.getName());
+          out.putInt(folder.getDepth());
+        }
+        out.putInt(scene.getTakeNames().size());
+        for (String take : scene.getTakeNames()) {
+          out.putString(take);
+        }
+        out.putString(scene.getCurrentTake());
+        out.putInt(scene.getMeshes().size());
+        for (Mesh mesh : scene.getMeshes()) {
+          writeMesh(out, mesh, materials);
+        }
+      }
+      Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static void writeMaterial (Output out, Material material) throws IOException {
+    out.putString(material.materialName);
+    out.putInt(material.id);
+    out.putInt(material.index);
+    out.putFloats(material.diffColor);
+    out.putFloats(material.specColor);
+    out.putFloats(material.reflColor);
+    out.putFloats(material.transColor);
+    out.putFloats(material.emisColor);
+    out.putFloat(material.specSize);
+    out.putFloat(material.reflBlur);
+    out.putFloat(material.transBlur);
+    out.putInt(material.reflSamples);
+    out.putInt(material.transSamples);
+    out.putInt(material.bumpType);
+    out.putBoolean(material.reflFresnel);
+    out.putBoolean(material.transUseAlpha);
+    out.putInt(material.textures.size());
+    for (Material.Texture texture : material.textures) {
+      out.putString(texture.type);
+      out.putString(texture.file);
+      out.putFloats(texture.background);
+      out.putFloats(texture.mixcolor);
+      out.putFloats(texture.position);
+      out.putFloats(texture.scale);
+      out.putFloat(texture.intensity);
+      out.putFloat(texture.mix);
+      out.putInt(texture.filtertype);
+      out.putInt(texture.sample);
+      out.putBoolean(texture.tileU);
+      out.putBoolean(texture.tileV);
+    }
+  }
+
+  private static void writeMesh (Output out, Mesh mesh, List<Material> materials) throws IOException {
+    out.putString(mesh.meshName);
+    out.putInt(indexOf(materials, mesh.material));
+    out.putInt(mesh.uvSet);
+    out.putFloats(mesh.vertices);
+    out.putFloats(mesh.uvcoords);
+    out.putInts(mesh.faceOffsets);
+    out.putInts(mesh.faceIndices);
+    Skeleton skeleton = mesh.skeleton;
+    out.putBoolean(skeleton != null);
+    if (skeleton != null) {
+      List<Skeleton.Joint> joints = Arrays.asList(skeleton.joints);
+      out.putInt(joints.size());
+      for (Skeleton.Joint joint : joints) {
+        out.putBoolean(joint != null);
+        if (joint != null) {
+          out.putInt(joint.jointId);
+          out.putFloats(joint.bindPoseT);
+          out.putFloats(joint.bindPoseR);
+          out.putFloats(joint.bindPoseS);
+          out.putFloats(joint.transformMatrix);
+          out.putFloats(joint.transformAssociateModelMatrix);
+          out.putFloats(joint.transformLinkMatrix);
+        }
+      }
+      // Joint info and hierarchy are written after all joints, as children are written as indexes
+      for (Skeleton.Joint joint : joints) {
+        if (joint != null) {
+          out.putString(joint.jointName);
+          out.putFloats(joint.translate);
+          out.putFloats(joint.rotation);
+          out.putFloats(joint.scale);
+          out.putInt(joint.children.length);
+          for (Skeleton.Joint child : joint.children) {
+            out.putInt(indexOf(joints, child));
+          }
+        }
+      }
+      out.putInts(skeleton.weightOffsets);
+      out.putInts(skeleton.weightVertex);
+      out.putFloats(skeleton.weightValue);
+      out.putInt(indexOf(joints, skeleton.rootJoint));
+    }
+    out.putInt(mesh.takes.size());
+    for (Take take : mesh.takes.values()) {
+      out.putString(take.getName());
+      out.putInt(take.getChannels().size());
+      for (Take.Channel channel : take.getChannels()) {
+        out.putString(channel.target);
+        out.putInt(channel.parameter);
+        out.putInt(channel.axis);
+        out.putFloats(channel.times);
+        out.putFloats(channel.inTime);
+        out.putFloats(channel.outTime);
+        out.putFloats(channel.inValue);
+        out.putFloats(channel.outValue);
+        out.putFloats(channel.values);
+      }
+    }
+  }
+
+  /*
+   * Returns index of obj in list, by identity, or -1 if obj is null, or not in list
+   */
+  private static int indexOf (List<?> list, Object obj) {
+    for (int ii = 0; obj != null && ii < list.size(); ii++) {
+      if (list.get(ii) == obj) {
+        return ii;
+      }
+    }
+    return -1;
+  }
+
+  /*
+   * Reader for mapped entry files
+   */
+  private static final class Input {
+    private final ByteBuffer  buf;
+
+    Input (ByteBuffer buf) {
+      this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    int getInt () {
+      return buf.getInt();
+    }
+
+    float getFloat () {
+      return buf.getFloat();
+    }
+
+    boolean getBoolean () {
+      return buf.getInt() != 0;
+    }
+
+    String getString () {
+      int len = buf.getInt();
+      if (len < 0) {
+        return null;
+      }
+      byte[] data = new byte[len];
+      buf.get(data);
+      return new String(data, StandardCharsets.UTF_8);
+    }
+
+    float[] getFloats () {
+      int len = buf.getInt();
+      if (len < 0) {
+        return null;
+      }
+      if (len > buf.remaining() >> 2) {
+        throw new BufferUnderflowException();
+      }
+      float[] vals = new float[len];
+      buf.asFloatBuffer().get(vals);
+      buf.position(buf.position() + len * 4);
+      return vals;
+    }
+
+    int[] getInts () {
+      int len = buf.getInt();
+      if (len < 0) {
+        return null;
+      }
+      if (len > buf.remaining() >> 2) {
+        throw new BufferUnderflowException();
+      }
+      int[] vals = new int[len];
+      buf.asIntBuffer().get(vals);
+      buf.position(buf.position() + len * 4);
+      return vals;
+    }
+  }
+
+  private static Scene read (Path entry) throws IOException {
+    Input in = new Input(BinaryPList.map(entry.toFile()));
+    if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+      throw new IOException("Not a scene cache entry: " + entry);
+    }
+    List<Material> materials = new ArrayList<>();
+    int count = in.getInt();
+    for (int ii = 0; ii < count; ii++) {
+      materials.add(readMaterial(in));
+    }
+    List<Scene.Folder> folders = new ArrayList<>();
+    count = in.getInt();
+    for (int ii = 0; ii < count; ii++) {
+      folders.add(new Scene.Folder(in.getString(), in.getInt()));
+    }
+    List<String> takeNames = new ArrayList<>();
+    count = in.getInt();
+    for (int ii = 0; ii < count; ii++) {
+      takeNames.add(in.getString());
+    }
+    String currentTake = in.getString();
+    List<Mesh> meshes = new ArrayList<>();
+    count = in.getInt();
+    for (int ii = 0; ii < count; ii++) {
+      meshes.add(readMesh(in, materials));
+    }
+    return new Scene(materials, meshes, folders, takeNames, currentTake);
+  }
+
+  private static Material readMaterial (Input in) {
+    String name = in.getString();
+    int id = in.getInt();
+    Material material = new Material(in.getInt(), name, id);
+    material.diffColor = in.getFloats();
+    material.specColor = in.getFloats();
+    material.reflColor = in.getFloats();
+    material.transColor = in.getFloats();
+    material.emisColor = in.getFloats();
+    material.specSize = in.getFloat();
+    material.reflBlur = in.getFloat();
+    material.transBlur = in.getFloat();
+    material.reflSamples = in.getInt();
+    material.transSamples = in.getInt();
+    material.bumpType = in.getInt();
+    material.reflFresnel = in.getBoolean();
+    material.transUseAlpha = in.getBoolean();
+    int count = in.getInt();
+    for (int ii = 0; ii < count; ii++) {
+      Material.Texture texture = material.addTexture(in.getString(), null);
+      texture.file = in.getString();
+      texture.background = in.getFloats();
+      texture.mixcolor = in.getFloats();
+      texture.position = in.getFloats();
+      texture.scale = in.getFloats();
+      texture.intensity = in.getFloat();
+      texture.mix = in.getFloat();
+      texture.filtertype = in.getInt();
+      texture.sample = in.getInt();
+      texture.tileU = in.getBoolean();
+      texture.tileV = in.getBoolean();
+    }
+    return material;
+  }
+
+  private static Mesh readMesh (Input in, List<Material> materials) {
+    String name = in.getString();
+    int matIdx = in.getInt();
+    int uvSet = in.getInt();
+    float[] vertices = in.getFloats();
+    float[] uvcoords = in.getFloats();
+    int[] faceOffsets = in.getInts();
+    int[] faceIndices = in.getInts();
+    Skeleton skeleton = null;
+    if (in.getBoolean()) {
+      Skeleton.Joint[] joints = new Skeleton.Joint[in.getInt()];
+      for (int ii = 0; ii < joints.length; ii++) {
+        if (in.getBoolean()) {
+          joints[ii] = new Skeleton.Joint(in.getInt(), in.getFloats(), in.getFloats(), in.getFloats(), in.getFloats(),
+                                          in.getFloats(), in.getFloats());
+        }
+      }
+      for (Skeleton.Joint joint : joints) {
+        if (joint != null) {
+          String jointName = in.getString();
+          float[] translate = in.getFloats();
+          float[] rotation = in.getFloats();
+          float[] scale = in.getFloats();
+          Skeleton.Joint[] children = new Skeleton.Joint[in.getInt()];
+          for (int ii = 0; ii < children.length; ii++) {
+            int idx = in.getInt();
+            children[ii] = idx >= 0 ? joints[idx] : null;
+          }
+          joint.setInfo(jointName, translate, rotation, scale, children);
+        }
+      }
+      skeleton = new Skeleton(joints, in.getInts(), in.getInts(), in.getFloats());
+      int rootIdx = in.getInt();
+      skeleton.rootJoint = rootIdx >= 0 ? joints[rootIdx] : null;
+    }
+    Mesh mesh = new Mesh(name, matIdx >= 0 ? materials.get(matIdx) : null, vertices, uvcoords, uvSet, faceOffsets,
+                         faceIndices, skeleton);
+    int takeCount = in.getInt();
+    for (int ii = 0; ii < takeCount; ii++) {
+      Take take = mesh.getTake(in.getString());
+      int channelCount = in.getInt();
+      for (int jj = 0; jj < channelCount; jj++) {
+        String target = in.getString();
+        int parameter = in.getInt();
+        int axis = in.getInt();
+        float[][] keys = new float[6][];
+        for (int kk = 0; kk < keys.length; kk++) {
+          keys[kk] = in.getFloats();
+        }
+        take.addChannel(new Take.Channel(target, parameter, axis, keys));
+      }
+    }
+    return mesh;
+  }
+}
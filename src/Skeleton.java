@@ -0,0 +1,254 @@
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+
+/*
+ *  The joints linked to a mesh by its "linkData" tag (see Notes 6 and 7 in Cheetah3DParser.java) and the
+ *  vertex weights each joint applies to the mesh.  Weights are stored joint-major, as in the file, in three
+ *  parallel arrays.  Built by Cheetah3DParser.load() and not modified afterwards.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class Skeleton {
+  final Joint[]             joints;
+  final int[]               weightOffsets;  // joint ii's weights are at weightOffsets[ii] up to weightOffsets[ii + 1] - 1
+  final int[]               weightVertex;   // vertex index for each weight
+  final float[]             weightValue;    // weight value for each weight
+  final Map<Integer,Joint>  idToJoint = new HashMap<>();
+  Joint                     rootJoint;
+
+  Skeleton (Joint[] joints, int[] weightOffsets, int[] weightVertex, float[] weightValue) {
+    this.joints = joints;
+    this.weightOffsets = weightOffsets;
+    this.weightVertex = weightVertex;
+    this.weightValue = weightValue;
+    for (Joint joint : joints) {
+      if (joint != null) {
+        idToJoint.put(joint.jointId, joint);
+      }
+    }
+  }
+
+  public static final class Joint {
+    final int         jointId;
+    final float[]     transformMatrix, transformLinkMatrix, transformAssociateModelMatrix;
+    final float[]     bindPoseT, bindPoseR, bindPoseS;
+    String            jointName;
+    float[]           translate, rotation, scale;
+    Joint[]           children = new Joint[0];
+
+    /*
+     * Note: matrices must already be transposed (see transpose())
+     */
+    Joint (int jointId, float[] bindPoseT, float[] bindPoseR, float[] bindPoseS, float[] transformMatrix,
+           float[] transformAssociateModelMatrix, float[] transformLinkMatrix) {
+      this.jointId = jointId;
+      this.bindPoseT = bindPoseT;
+      this.bindPoseR = bindPoseR;
+      this.bindPoseS = bindPoseS;
+      this.transformMatrix = transformMatrix;
+      this.transformAssociateModelMatrix = transformAssociateModelMatrix;
+      this.transformLinkMatrix = transformLinkMatrix;
+    }
+
+    void setInfo (String jointName, float[] translate, float[] rotation, float[] scale, Joint[] children) {
+      this.jointName = jointName;
+      this.translate = translate;
+      this.rotation = rotation;
+      this.scale = scale;
+      this.children = children;
+    }
+
+    public int getId () {
+      return jointId;
+    }
+
+    /**
+     * @return joint's name, or null if joint has no JOINT object (not all joints have names)
+     */
+    public String getName () {
+      return jointName;
+    }
+
+    public float[] getTranslate () {
+      return Material.copy(translate);
+    }
+
+    public float[] getRotation () {
+      return Material.copy(rotation);
+    }
+
+    public float[] getScale () {
+      return Material.copy(scale);
+    }
+
+    public float[] getBindPoseT () {
+      return Material.copy(bindPoseT);
+    }
+
+    public float[] getBindPoseR () {
+      return Material.copy(bindPoseR);
+    }
+
+    public float[] getBindPoseS () {
+      return Material.copy(bindPoseS);
+    }
+
+    /**
+     * @return transposed copy of the 4x4 "transformMatrix"
+     */
+    public float[] getTransformMatrix () {
+      return transformMatrix.clone();
+    }
+
+    /**
+     * @return transposed copy of the 4x4 "transformLinkMatrix"
+     */
+    public float[] getTransformLinkMatrix () {
+      return transformLinkMatrix.clone();
+    }
+
+    /**
+     * @return transposed copy of the 4x4 "transformAssociateModelMatrix"
+     */
+    public float[] getTransformAssociateModelMatrix () {
+      return transformAssociateModelMatrix.clone();
+    }
+
+    /**
+     * @return child joints (entries can be null if a child is not linked to the mesh)
+     */
+    public List<Joint> getChildren () {
+      return Collections.unmodifiableList(Arrays.asList(children));
+    }
+  }
+
+  /*
+   * Vertex-major skin weights, as used for GPU skinning, with a fixed number of influences per vertex.  Unused
+   * influences have a weight of 0.
+   */
+  public static final class Influences {
+    final int     count;        // influences per vertex
+    final short[] joints;       // index into getJoints() for influence jj of vertex ii at [ii * count + jj]
+    final float[] weights;      // matching weights, in descending order for each vertex
+
+    Influences (int count, short[] joints, float[] weights) {
+      this.count = count;
+      this.joints = joints;
+      this.weights = weights;
+    }
+
+    public int getCount () {
+      return count;
+    }
+
+    public short[] getJoints () {
+      return joints.clone();
+    }
+
+    public float[] getWeights () {
+      return weights.clone();
+    }
+  }
+
+  /*
+   * Returns a transposed copy of a 4x4 matrix
+   */
+  static float[] transpose (float[] mat) {
+    if (mat.length != 16) {
+      throw new IllegalStateException("Matrix not 4x4");
+    }
+    float[] out = new float[mat.length];
+    for (int ii = 0; ii < 4; ii++) {
+      for (int jj = 0; jj < 4; jj++) {
+        out[jj * 4 + ii] = mat[ii * 4 + jj];
+      }
+    }
+    return out;
+  }
+
+  public List<Joint> getJoints () {
+    return Collections.unmodifiableList(Arrays.asList(joints));
+  }
+
+  /**
+   * @return joint with the given "linkID", or null
+   */
+  public Joint getJoint (int id) {
+    return idToJoint.get(id);
+  }
+
+  /**
+   * @return first joint found in the JOINT object hierarchy, or null
+   */
+  public Joint getRootJoint () {
+    return rootJoint;
+  }
+
+  public int getWeightCount () {
+    return weightVertex.length;
+  }
+
+  /**
+   * @return read-only view of getJoints().size() + 1 offsets into getWeightVertices() and getWeightValues() where
+   * joint ii's weights are from offset ii up to, but not including offset ii + 1
+   */
+  public IntBuffer getWeightOffsets () {
+    return IntBuffer.wrap(weightOffsets).asReadOnlyBuffer();
+  }
+
+  public IntBuffer getWeightVertices () {
+    return IntBuffer.wrap(weightVertex).asReadOnlyBuffer();
+  }
+
+  public FloatBuffer getWeightValues () {
+    return FloatBuffer.wrap(weightValue).asReadOnlyBuffer();
+  }
+
+  /**
+   * Transposes the joint-major weights into vertex-major form keeping, for each vertex, only the maxInfluences
+   * joints with the largest weights and renormalizing these so they add up to 1.0
+   * @param vertexCount number of vertices in mesh
+   * @param maxInfluences number of influences per vertex, such as 4
+   * @return Influences
+   */
+  public Influences getInfluences (int vertexCount, int maxInfluences) {
+    short[] jointIdx = new short[vertexCount * maxInfluences];
+    float[] weight = new float[vertexCount * maxInfluences];
+    // Insert each weight into its vertex's slots, which are kept sorted by descending weight
+    for (int ii = 0; ii < joints.length; ii++) {
+      for (int jj = weightOffsets[ii]; jj < weightOffsets[ii + 1]; jj++) {
+        int vertex = weightVertex[jj];
+        float val = weightValue[jj];
+        if (vertex < 0 || vertex >= vertexCount || !(val > 0)) {
+          continue;
+        }
+        int base = vertex * maxInfluences;
+        int slot = base + maxInfluences - 1;
+        if (val <= weight[slot]) {
+          continue;
+        }
+        while (slot > base && weight[slot - 1] < val) {
+          weight[slot] = weight[slot - 1];
+          jointIdx[slot] = jointIdx[slot - 1];
+          slot--;
+        }
+        weight[slot] = val;
+        jointIdx[slot] = (short) ii;
+      }
+    }
+    for (int base = 0; base < weight.length; base += maxInfluences) {
+      float sum = 0;
+      for (int kk = 0; kk < maxInfluences; kk++) {
+        sum += weight[base + kk];
+      }
+      if (sum > 0) {
+        for (int kk = 0; kk < maxInfluences; kk++) {
+          weight[base + kk] /= sum;
+        }
+      }
+    }
+    return new Influences(maxInfluences, jointIdx, weight);
+  }
+}
@@ -0,0 +1,206 @@
+import java.util.*;
+
+/*
+ *  CPU linear blend skinning of a Mesh, which moves its bind pose vertices to follow a pose of its Skeleton, such
+ *  as a frame computed by PoseEvaluator.  The skin matrix of each joint is:
+ *
+ *    world (from the pose) * inverse(transformLinkMatrix) * transformMatrix * bind pose
+ *
+ *  where transformLinkMatrix is the joint's world matrix when the mesh was bound (see Note 6 in Cheetah3DParser.java)
+ *  and the bind pose is the matrix built from bindPoseT, bindPoseR and bindPoseS.  Each skinned vertex is the sum of
+ *  its bind position transformed by the skin matrix of each joint which influences it, scaled by the joint's
+ *  weight.  Vertices with no weights keep their bind position.
+ *
+ *  The "cdata" weights are converted once into vertex-major form (see Skeleton.getInfluences()), with enough
+ *  influences per vertex to keep every weight, so each vertex is computed from flat arrays in one tight loop.
+ *  skin() works on ranges of vertices with Parallel.forRanges().  A Skinner is not modified by skin(), so it can be
+ *  shared between threads.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class Skinner {
+  private static final int      MIN_VERTICES_PER_TASK = 16384;
+  private final float[]         vertices;       // bind pose x, y, z values
+  private final int             count;          // influences per vertex
+  private final short[]         jointIdx;
+  private final float[]         weights;
+  private final float[]         unbind;         // inverse(transformLinkMatrix) * transformMatrix * bind pose, per joint
+  private final int[]           poseIdx;        // index in PoseEvaluator.getJoints() of each joint, or -1
+  private final float[]         linkMatrices;   // world matrix of each joint at bind time
+
+  public Skinner (Mesh mesh, PoseEvaluator evaluator) {
+    Skeleton skeleton = mesh.skeleton;
+    if (skeleton == null) {
+      throw new IllegalArgumentException("Mesh '" + mesh.meshName + "' is not skinned");
+    }
+    vertices = mesh.vertices;
+    int vertexCount = mesh.getVertexCount();
+    // Find the largest number of weights for any vertex, so getInfluences() keeps them all
+    int[] perVertex = new int[vertexCount];
+    int maxCount = 1;
+    for (int ii = 0; ii < skeleton.weightVertex.length; ii++) {
+      int vertex = skeleton.weightVertex[ii];
+      if (vertex >= 0 && vertex < vertexCount && skeleton.weightValue[ii] > 0) {
+        maxCount = Math.max(maxCount, ++perVertex[vertex]);
+      }
+    }
+    Skeleton.Influences influences = skeleton.getInfluences(vertexCount, maxCount);
+    count = influences.count;
+    jointIdx = influences.joints;
+    weights = influences.weights;
+    Skeleton.Joint[] joints = skeleton.joints;
+    Map<Skeleton.Joint,Integer> index = new IdentityHashMap<>();
+    List<Skeleton.Joint> poseJoints = evaluator.getJoints();
+    for (int ii = 0; ii < poseJoints.size(); ii++) {
+      index.put(poseJoints.get(ii), ii);
+    }
+    int size = PoseEvaluator.MATRIX_SIZE;
+    unbind = new float[joints.length * size];
+    poseIdx = new int[joints.length];
+    linkMatrices = new float[joints.length * size];
+    for (int ii = 0; ii < joints.length; ii++) {
+      Skeleton.Joint joint = joints[ii];
+      Integer idx = joint != null ? index.get(joint) : null;
+      poseIdx[ii] = idx != null ? idx : -1;
+      int dst = ii * size;
+      if (joint == null) {
+        setIdentity(unbind, dst);
+        setIdentity(linkMatrices, dst);
+        continue;
+      }
+      System.arraycopy(joint.transformLinkMatrix, 0, linkMatrices, dst, size);
+      getInverseBindMatrix(joint, unbind, dst);
+    }
+  }
+
+  /**
+   * Writes inverse(transformLinkMatrix) * transformMatrix * bind pose of joint to out[dst], which moves a vertex
+   * from where the mesh was bound into the joint's local space
+   */
+  static void getInverseBindMatrix (Skeleton.Joint joint, float[] out, int dst) {
+    float[] bindPose = new float[TakeSampler.SLOT_SIZE];
+    copy(joint.bindPoseT, bindPose, 0, 0);
+    copy(joint.bindPoseR, bindPose, 3, 0);
+    copy(joint.bindPoseS, bindPose, 6, 1);
+    PoseEvaluator.setLocal(bindPose, 0, out, dst);
+    PoseEvaluator.multiply(joint.transformMatrix, 0, out, dst);
+    PoseEvaluator.multiply(invertAffine(joint.transformLinkMatrix), 0, out, dst);
+  }
+
+  private static void copy (float[] src, float[] dst, int offset, float missing) {
+    for (int ii = 0; ii < 3; ii++) {
+      dst[offset + ii] = src != null && ii < src.length ? src[ii] : missing;
+    }
+  }
+
+  static void setIdentity (float[] mat, int dst) {
+    Arrays.fill(mat, dst, dst + 16, 0);
+    mat[dst] = mat[dst + 5] = mat[dst + 10] = mat[dst + 15] = 1;
+  }
+
+  /*
+   * Returns the inverse of a 4x4 matrix whose bottom row is 0, 0, 0, 1, or the identity matrix if it is singular
+   */
+  static float[] invertAffine (float[] mat) {
+    float a = mat[0], b = mat[4], c = mat[8];
+    float d = mat[1], e = mat[5], f = mat[9];
+    float g = mat[2], h = mat[6], k = mat[10];
+    float c0 = e * k - f * h, c1 = f * g - d * k, c2 = d * h - e * g;
+    float det = a * c0 + b * c1 + c * c2;
+    float[] out = new float[16];
+    if (det == 0 || det != det) {
+      setIdentity(out, 0);
+      return out;
+    }
+    float inv = 1 / det;
+    out[0] = c0 * inv;
+    out[1] = c1 * inv;
+    out[2] = c2 * inv;
+    out[4] = (c * h - b * k) * inv;
+    out[5] = (a * k - c * g) * inv;
+    out[6] = (b * g - a * h) * inv;
+    out[8] = (b * f - c * e) * inv;
+    out[9] = (c * d - a * f) * inv;
+    out[10] = (a * e - b * d) * inv;
+    float tx = mat[12], ty = mat[13], tz = mat[14];
+    out[12] = -(out[0] * tx + out[4] * ty + out[8] * tz);
+    out[13] = -(out[1] * tx + out[5] * ty + out[9] * tz);
+    out[14] = -(out[2] * tx + out[6] * ty + out[10] * tz);
+    out[15] = 1;
+    return out;
+  }
+
+  public int getVertexCount () {
+    return vertices.length / 3;
+  }
+
+  /**
+   * @return number of joint influences stored for each vertex (the most weights of any vertex)
+   */
+  public int getInfluenceCount () {
+    return count;
+  }
+
+  /**
+   * Computes the skin matrix of every joint of the mesh's Skeleton, in Skeleton.getJoints() order
+   * @param world world matrices of the PoseEvaluator's joints, as computed by PoseEvaluator.getWorldMatrices()
+   * @param offset index in world of the first joint's matrix
+   */
+  public float[] getSkinMatrices (float[] world, int offset) {
+    int size = PoseEvaluator.MATRIX_SIZE;
+    float[] skin = unbind.clone();
+    for (int ii = 0; ii < poseIdx.length; ii++) {
+      if (poseIdx[ii] >= 0) {
+        PoseEvaluator.multiply(world, offset + poseIdx[ii] * size, skin, ii * size);
+      } else {
+        // Joint is not in the pose, so it stays where it was bound
+        PoseEvaluator.multiply(linkMatrices, ii * size, skin, ii * size);
+      }
+    }
+    return skin;
+  }
+
+  /**
+   * Writes the skinned x, y, z of every vertex to out, using the joints' world matrices from world (see
+   * getSkinMatrices()), computing ranges of vertices in parallel
+   */
+  public void skin (float[] world, int offset, float[] out) {
+    float[] skin = getSkinMatrices(world, offset);
+    Parallel.forRanges(getVertexCount(), MIN_VERTICES_PER_TASK, (from, to) -> skin(skin, from, to, out));
+  }
+
+  /**
+   * Writes the skinned x, y, z of vertices from up to, but not including to, to out, using skin matrices from
+   * getSkinMatrices()
+   */
+  void skin (float[] skin, int from, int to, float[] out) {
+    float[] verts = vertices;
+    short[] joint = jointIdx;
+    float[] weight = weights;
+    int num = count;
+    for (int vv = from; vv < to; vv++) {
+      int src = vv * 3;
+      float xx = verts[src], yy = verts[src + 1], zz = verts[src + 2];
+      int inf = vv * num;
+      if (weight[inf] == 0) {
+        // No weights (they are sorted by weight, so the first is the largest)
+        out[src] = xx;
+        out[src + 1] = yy;
+        out[src + 2] = zz;
+        continue;
+      }
+      float px = 0, py = 0, pz = 0;
+      for (int kk = inf; kk < inf + num; kk++) {
+        float ww = weight[kk];
+        int mm = joint[kk] << 4;
+        px += ww * (skin[mm] * xx + skin[mm + 4] * yy + skin[mm + 8] * zz + skin[mm + 12]);
+        py += ww * (skin[mm + 1] * xx + skin[mm + 5] * yy + skin[mm + 9] * zz + skin[mm + 13]);
+        pz += ww * (skin[mm + 2] * xx + skin[mm + 6] * yy + skin[mm + 10] * zz + skin[mm + 14]);
+      }
+      out[src] = px;
+      out[src + 1] = py;
+      out[src + 2] = pz;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ *  Writes the meshes of a Scene as one binary STL file, as used by the -stl switch.  STL only holds triangles, so
+ *  faces are split by Triangulator, and each triangle's record holds its unit normal, computed from its points, its
+ *  three points and an unused 16 bit attribute count.  UV coords and materials are not written.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+final class StlWriter {
+  private static final int  HEADER_SIZE = 80;
+  private static final int  TRIANGLE_SIZE = 50;
+
+  private StlWriter () { }
+
+  static void write (WritableByteChannel channel, List<Mesh> meshes) throws IOException {
+    List<int[]> meshTriangles = new ArrayList<>();
+    long triangles = 0;
+    for (Mesh mesh : meshes) {
+      int[] corners = Triangulator.triangulate(mesh);
+      meshTriangles.add(corners);
+      triangles += corners.length / 3;
+    }
+    BinaryWriter out = new BinaryWriter(channel, 1 << 20);
+    ByteBuffer header = out.room(HEADER_SIZE + 4);
+    byte[] title = "binary STL generated by Cheetah3DParser".getBytes(StandardCharsets.US_ASCII);
+    header.put(title).put(new byte[HEADER_SIZE - title.length]).putInt((int) triangles);
+    for (int mm = 0; mm < meshes.size(); mm++) {
+      int[] corners = meshTriangles.get(mm);
+      int[] faceIndices = meshes.get(mm).faceIndices;
+      float[] verts = meshes.get(mm).vertices;
+      for (int ii = 0; ii < corners.length; ii += 3) {
+        int v0 = faceIndices[corners[ii]] * 3;
+        // Reverse the points, as the OBJ writer does, so they go counterclockwise seen from the front
+        int v1 = faceIndices[corners[ii + 2]] * 3;
+        int v2 = faceIndices[corners[ii + 1]] * 3;
+        float ax = verts[v1] - verts[v0], ay = verts[v1 + 1] - verts[v0 + 1], az = verts[v1 + 2] - verts[v0 + 2];
+        float bx = verts[v2] - verts[v0], by = verts[v2 + 1] - verts[v0 + 1], bz = verts[v2 + 2] - verts[v0 + 2];
+        float nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+        float len = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        float scale = len > 0 ? 1 / len : 0;
+        out.room(TRIANGLE_SIZE).putFloat(nx * scale).putFloat(ny * scale).putFloat(nz * scale)
+           .putFloat(verts[v0]).putFloat(verts[v0 + 1]).putFloat(verts[v0 + 2])
+           .putFloat(verts[v1]).putFloat(verts[v1 + 1]).putFloat(verts[v1 + 2])
+           .putFloat(verts[v2]).putFloat(verts[v2 + 1]).putFloat(verts[v2 + 2])
+           .putShort((short) 0);
+      }
+    }
+    out.flush();
+  }
+}
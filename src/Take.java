@@ -0,0 +1,182 @@
+import java.util.*;
+
+/*
+ *  An animation take (see Notes 8 and 9 in Cheetah3DParser.java) holding, for each animated joint, or mesh, the
+ *  fcurve of every animated axis of its position, rotation and scale.  Each fcurve is stored as a Channel, which
+ *  keeps the fields of its key records in columns of primitive floats.  Built by Cheetah3DParser.load() and not
+ *  modified afterwards.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class Take {
+  public static final int         POSITION = 0, ROTATION = 1, SCALE = 2;
+  private final String            takeName;
+  private final List<Channel>     channels = new ArrayList<>();
+  private final Set<String>       targets = new LinkedHashSet<>();
+
+  Take (String takeName) {
+    this.takeName = takeName;
+  }
+
+  /*
+   * The fcurve for one axis of one parameter of a target, with one entry per key in each array
+   */
+  public static final class Channel {
+    final String  target;         // joint, or mesh name
+    final int     parameter;      // POSITION, ROTATION, or SCALE
+    final int     axis;           // 0 = x, 1 = y, 2 = z
+    final float[] times;          // seconds
+    final float[] inTime, outTime, inValue, outValue;   // tangent handles, relative to each key
+    final float[] values;
+
+    /**
+     * @param keys columns decoded by DataDecoder.getKeys()
+     */
+    Channel (String target, int parameter, int axis, float[][] keys) {
+      this.target = target;
+      this.parameter = parameter;
+      this.axis = axis;
+      times = keys[0];
+      inTime = keys[1];
+      outTime = keys[2];
+      inValue = keys[3];
+      outValue = keys[4];
+      values = keys[5];
+    }
+
+    public String getTarget () {
+      return target;
+    }
+
+    public int getParameter () {
+      return parameter;
+    }
+
+    public int getAxis () {
+      return axis;
+    }
+
+    public int getKeyCount () {
+      return values.length;
+    }
+
+    public float[] getTimes () {
+      return times.clone();
+    }
+
+    public float[] getValues () {
+      return values.clone();
+    }
+
+    /**
+     * @return time offsets of the incoming tangent handles
+     */
+    public float[] getInTimes () {
+      return inTime.clone();
+    }
+
+    /**
+     * @return time offsets of the outgoing tangent handles
+     */
+    public float[] getOutTimes () {
+      return outTime.clone();
+    }
+
+    /**
+     * @return value offsets of the incoming tangent handles
+     */
+    public float[] getInValues () {
+      return inValue.clone();
+    }
+
+    /**
+     * @return value offsets of the outgoing tangent handles
+     */
+    public float[] getOutValues () {
+      return outValue.clone();
+    }
+  }
+
+  public static final class Keyframe {
+    final float[] translate, rotation, scale;
+
+    Keyframe (float[] translate, float[] rotation, float[] scale) {
+      this.translate = translate;
+      this.rotation = rotation;
+      this.scale = scale;
+    }
+
+    public float[] getTranslate () {
+      return translate.clone();
+    }
+
+    public float[] getRotation () {
+      return rotation.clone();
+    }
+
+    public float[] getScale () {
+      return scale.clone();
+    }
+  }
+
+  void addChannel (Channel channel) {
+    channels.add(channel);
+    targets.add(channel.target);
+  }
+
+  public String getName () {
+    return takeName;
+  }
+
+  /**
+   * @return names of the joints, or meshes animated by this take, in file order
+   */
+  public Set<String> getTargets () {
+    return Collections.unmodifiableSet(targets);
+  }
+
+  /**
+   * @return every channel of this take, in file order
+   */
+  public List<Channel> getChannels () {
+    return Collections.unmodifiableList(channels);
+  }
+
+  /**
+   * @return channels of target, in file order, or an empty list if target is not animated
+   */
+  public List<Channel> getChannels (String target) {
+    List<Channel> list = new ArrayList<>();
+    for (Channel channel : channels) {
+      if (channel.target.equals(target)) {
+        list.add(channel);
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Returns the position, rotation and scale of each key of target, pairing the keys of its channels by index.  Axes
+   * with no channel, or with fewer keys, are 0 for position and rotation and 1 for scale.
+   * @return keyframes for target, or an empty list if target is not animated
+   */
+  public List<Keyframe> getKeyframes (String target) {
+    List<Channel> list = getChannels(target);
+    int count = 0;
+    for (Channel channel : list) {
+      count = Math.max(count, channel.values.length);
+    }
+    Keyframe[] frames = new Keyframe[count];
+    for (int ii = 0; ii < count; ii++) {
+      float[][] vals = {{0, 0, 0}, {0, 0, 0}, {1, 1, 1}};
+      for (Channel channel : list) {
+        if (ii < channel.values.length) {
+          vals[channel.parameter][channel.axis] = channel.values[ii];
+        }
+      }
+      frames[ii] = new Keyframe(vals[POSITION], vals[ROTATION], vals[SCALE]);
+    }
+    return Collections.unmodifiableList(Arrays.asList(frames));
+  }
+}
@@ -0,0 +1,244 @@
+import java.util.*;
+
+/*
+ *  Evaluates the channels of a Take at arbitrary times, such as when baking a take at a fixed frame rate for an
+ *  engine that doesn't use key tangents.  Each channel is a cubic Bezier curve through its keys, with the control
+ *  points of each segment set by the out tangent handle of its first key and the in tangent handle of its last key
+ *  (see Note 8 in Cheetah3DParser.java).  Before the first key and after the last key a channel holds its value.
+ *
+ *  One call to sample() fills a flat float[] with SLOT_SIZE values for each target: translate x, y, z, rotation
+ *  x, y, z, then scale x, y, z.  Values for axes with no channel come from the defaults given to the constructor.
+ *  Each channel keeps a cursor on the segment used by its last sample, along with that segment's coefficients, so
+ *  sampling at increasing times costs amortized O(1) per channel.  Because of this, a TakeSampler must not be
+ *  shared between threads, but any number of TakeSamplers can be used on the same Take.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class TakeSampler {
+  public static final int         SLOT_SIZE = 9;
+  private static final int        MAX_STEPS = 4;          // segments stepped through before a binary search
+  private static final int        NEWTON_STEPS = 6;
+  private static final float      EPSILON = 1e-6f;
+  private final List<String>      targets;
+  private final Curve[]           curves;
+  private final float[]           defaults;
+  private final float             startTime, endTime;
+
+  /*
+   * A channel, with the index of its value in the sample() output and its segment cursor
+   */
+  private static final class Curve {
+    final Take.Channel  channel;
+    final int           slot;
+    int                 seg = -1;
+    float               t0, dt;                 // start time and length of segment seg
+    float               ax, bx, cx;             // normalized time, as a cubic in the curve parameter
+    float               ay, by, cy, dy;         // value, as a cubic in the curve parameter
+
+    Curve (Take.Channel channel, int slot) {
+      this.channel = channel;
+      this.slot = slot;
+    }
+
+    float evaluate (float time) {
+      float[] times = channel.times;
+      int last = times.length - 1;
+      if (time <= times[0]) {
+        return channel.values[0];
+      }
+      if (time >= times[last]) {
+        return channel.values[last];
+      }
+      int ss = Math.max(seg, 0);
+      if (time < times[ss]) {
+        ss = find(times, time);
+      } else {
+        int steps = 0;
+        while (time >= times[ss + 1]) {
+          if (++steps > MAX_STEPS) {
+            ss = find(times, time);
+            break;
+          }
+          ss++;
+        }
+      }
+      if (ss != seg) {
+        setSegment(ss);
+      }
+      float uu = (time - t0) / dt;
+      float param = solve(uu);
+      return ((ay * param + by) * param + cy) * param + dy;
+    }
+
+    /*
+     * Returns the last segment which starts at, or before time, where times[0] < time < times[last]
+     */
+    private static int find (float[] times, float time) {
+      int lo = 0;
+      int hi = times.length - 1;
+      while (hi - lo > 1) {
+        int mid = (lo + hi) >>> 1;
+        if (times[mid] <= time) {
+          lo = mid;
+        } else {
+          hi = mid;
+        }
+      }
+      return lo;
+    }
+
+    private void setSegment (int ss) {
+      Take.Channel ch = channel;
+      seg = ss;
+      t0 = ch.times[ss];
+      dt = ch.times[ss + 1] - t0;
+      // Keep the handles inside the segment, so time increases along the curve
+      float x1 = clamp(ch.outTime[ss] / dt);
+      float x2 = clamp(1 + ch.inTime[ss + 1] / dt);
+      cx = 3 * x1;
+      bx = 3 * (x2 - x1) - cx;
+      ax = 1 - cx - bx;
+      float v0 = ch.values[ss];
+      float v1 = ch.values[ss + 1];
+      float y1 = v0 + ch.outValue[ss];
+      float y2 = v1 + ch.inValue[ss + 1];
+      dy = v0;
+      cy = 3 * (y1 - v0);
+      by = 3 * (y2 - y1) - cy;
+      ay = v1 - v0 - cy - by;
+    }
+
+    private static float clamp (float val) {
+      return val < 0 ? 0 : val > 1 ? 1 : val != val ? 0 : val;
+    }
+
+    /*
+     * Returns the curve parameter where the normalized time is uu, using Newton's method, or bisection if that
+     * fails to converge
+     */
+    private float solve (float uu) {
+      float ss = uu;
+      for (int ii = 0; ii < NEWTON_STEPS; ii++) {
+        float err = ((ax * ss + bx) * ss + cx) * ss - uu;
+        if (Math.abs(err) < EPSILON) {
+          return ss;
+        }
+        float slope = (3 * ax * ss + 2 * bx) * ss + cx;
+        if (Math.abs(slope) < EPSILON) {
+          break;
+        }
+        ss -= err / slope;
+      }
+      float lo = 0, hi = 1;
+      ss = uu;
+      for (int ii = 0; ii < 24; ii++) {
+        float xx = ((ax * ss + bx) * ss + cx) * ss;
+        if (Math.abs(xx - uu) < EPSILON) {
+          break;
+        }
+        if (xx < uu) {
+          lo = ss;
+        } else {
+          hi = ss;
+        }
+        ss = (lo + hi) * 0.5f;
+      }
+      return ss;
+    }
+  }
+
+  /**
+   * Creates a sampler for every target of take, in the order of take.getTargets(), with defaults of 0 for
+   * translate and rotation and 1 for scale
+   */
+  public TakeSampler (Take take) {
+    this(take, new ArrayList<>(take.getTargets()), null);
+  }
+
+  /**
+   * @param targets names of the targets to sample, in output order (channels of other targets are ignored)
+   * @param defaults SLOT_SIZE values for each target, used for axes with no channel, or null to use 0 for
+   *                 translate and rotation and 1 for scale
+   */
+  public TakeSampler (Take take, List<String> targets, float[] defaults) {
+    this.targets = Collections.unmodifiableList(new ArrayList<>(targets));
+    this.defaults = new float[targets.size() * SLOT_SIZE];
+    if (defaults != null) {
+      System.arraycopy(defaults, 0, this.defaults, 0, this.defaults.length);
+    } else {
+      for (int ii = 0; ii < targets.size(); ii++) {
+        Arrays.fill(this.defaults, ii * SLOT_SIZE + 6, ii * SLOT_SIZE + 9, 1);
+      }
+    }
+    Map<String,Integer> index = new HashMap<>();
+    for (int ii = 0; ii < targets.size(); ii++) {
+      index.putIfAbsent(targets.get(ii), ii);
+    }
+    List<Curve> list = new ArrayList<>();
+    float start = Float.POSITIVE_INFINITY, end = Float.NEGATIVE_INFINITY;
+    for (Take.Channel channel : take.getChannels()) {
+      Integer idx = index.get(channel.target);
+      if (idx != null && channel.times.length > 0) {
+        list.add(new Curve(channel, idx * SLOT_SIZE + channel.parameter * 3 + channel.axis));
+        start = Math.min(start, channel.times[0]);
+        end = Math.max(end, channel.times[channel.times.length - 1]);
+      }
+    }
+    curves = list.toArray(new Curve[0]);
+    startTime = list.isEmpty() ? 0 : start;
+    endTime = list.isEmpty() ? 0 : end;
+  }
+
+  /**
+   * @return names of the targets, in the order their values are written by sample()
+   */
+  public List<String> getTargets () {
+    return targets;
+  }
+
+  /**
+   * @return time of the first key of any sampled channel, in seconds
+   */
+  public float getStartTime () {
+    return startTime;
+  }
+
+  /**
+   * @return time of the last key of any sampled channel, in seconds
+   */
+  public float getEndTime () {
+    return endTime;
+  }
+
+  /**
+   * @return number of frames needed to cover the take, from its start time to its end time, at fps
+   */
+  public int getFrameCount (float fps) {
+    return (int) Math.floor((endTime - startTime) * fps + 0.5f) + 1;
+  }
+
+  /**
+   * Writes the values of every target at time to out, SLOT_SIZE values per target, starting at offset
+   */
+  public void sample (float time, float[] out, int offset) {
+    System.arraycopy(defaults, 0, out, offset, defaults.length);
+    for (Curve curve : curves) {
+      out[offset + curve.slot] = curve.evaluate(time);
+    }
+  }
+
+  /**
+   * Samples the take at fps, from its start time to its end time
+   * @return getFrameCount(fps) frames of values, each the size of getTargets().size() * SLOT_SIZE
+   */
+  public float[] bake (float fps) {
+    int frames = getFrameCount(fps);
+    int size = defaults.length;
+    float[] out = new float[frames * size];
+    for (int ii = 0; ii < frames; ii++) {
+      sample(startTime + ii / fps, out, ii * size);
+    }
+    return out;
+  }
+}
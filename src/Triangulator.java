@@ -0,0 +1,215 @@
+/*
+ *  Splits the n-gon faces of a Mesh (see Note 3 in Cheetah3DParser.java) into triangles, as one flat array with
+ *  3 face point indexes for each triangle.  A face point index is the position of the point in the mesh's face
+ *  indexes, which is also the index of its UV coords (see Note 5), so the triangle's vertexes are faceIndices[n]
+ *  and its UV coords are uvcoords[n * 2] and uvcoords[n * 2 + 1], as numbered by coordsIndex in the OBJ writer.
+ *  Triangles keep the winding of their face and are in face order, with n - 2 triangles for a face of n points.
+ *
+ *  Triangles and convex faces, which include nearly all quads, are split as fans from their first point.  Other
+ *  faces are projected onto the axis plane most nearly parallel to them and split by ear clipping.  Faces with
+ *  fewer than 3 points give no triangles.
+ *
+ *  The offset of each face's first triangle comes from a running total of face sizes, so each range of faces
+ *  run by Parallel.forRanges() knows where its triangles go in the array.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class Triangulator {
+  private static final int  MIN_FACES_PER_TASK = 16384;
+  private final Mesh        mesh;
+  private float[]           xs = new float[16];     // projected points of the current face
+  private float[]           ys = new float[16];
+  private int[]             prev = new int[16];     // remaining points of the current face, as a linked ring
+  private int[]             next = new int[16];
+
+  private Triangulator (Mesh mesh) {
+    this.mesh = mesh;
+  }
+
+  /**
+   * @return face point indexes of every triangle, 3 per triangle
+   */
+  public static int[] triangulate (Mesh mesh) {
+    int[] faceOffsets = mesh.faceOffsets;
+    int faceCount = mesh.getFaceCount();
+    int[] triOffsets = new int[faceCount + 1];
+    for (int ii = 0; ii < faceCount; ii++) {
+      triOffsets[ii + 1] = triOffsets[ii] + Math.max(0, faceOffsets[ii + 1] - faceOffsets[ii] - 2);
+    }
+    int[] out = new int[triOffsets[faceCount] * 3];
+    Parallel.forRanges(faceCount, MIN_FACES_PER_TASK,
+                       (from, to) -> new Triangulator(mesh).triangulate(triOffsets, from, to, out));
+    return out;
+  }
+
+  /*
+   * Writes the triangles of faces from up to, but not including to, to out, where triOffsets[ii] is the index
+   * of face ii's first triangle
+   */
+  void triangulate (int[] triOffsets, int from, int to, int[] out) {
+    int[] faceOffsets = mesh.faceOffsets;
+    for (int ii = from; ii < to; ii++) {
+      int first = faceOffsets[ii];
+      int points = faceOffsets[ii + 1] - first;
+      int dst = triOffsets[ii] * 3;
+      if (points < 3) {
+        continue;
+      }
+      if (points == 3 || isConvex(first, points) || !project(first, points)) {
+        for (int cc = first + 1; cc < first + points - 1; cc++) {
+          out[dst++] = first;
+          out[dst++] = cc;
+          out[dst++] = cc + 1;
+        }
+      } else {
+        clipEars(first, points, out, dst);
+      }
+    }
+  }
+
+  /*
+   * Sets xs and ys to the face's points projected onto the axis plane most nearly parallel to it, ordered so the
+   * face winds counterclockwise, using Newell's method for the face normal
+   * @return false if the face has no area
+   */
+  private boolean project (int first, int points) {
+    if (xs.length < points) {
+      int size = Math.max(points, xs.length * 2);
+      xs = new float[size];
+      ys = new float[size];
+      prev = new int[size];
+      next = new int[size];
+    }
+    int[] faceIndices = mesh.faceIndices;
+    float[] verts = mesh.vertices;
+    float nx = 0, ny = 0, nz = 0;
+    int last = faceIndices[first + points - 1] * 3;
+    for (int ii = 0; ii < points; ii++) {
+      int cur = faceIndices[first + ii] * 3;
+      nx += (verts[last + 1] - verts[cur + 1]) * (verts[last + 2] + verts[cur + 2]);
+      ny += (verts[last + 2] - verts[cur + 2]) * (verts[last] + verts[cur]);
+      nz += (verts[last] - verts[cur]) * (verts[last + 1] + verts[cur + 1]);
+      last = cur;
+    }
+    float ax = Math.abs(nx), ay = Math.abs(ny), az = Math.abs(nz);
+    if (ax == 0 && ay == 0 && az == 0) {
+      return false;
+    }
+    // Drop the normal's largest axis, keeping the other two in cyclic order, and mirror if the normal points away
+    int uu, vv;
+    float sign;
+    if (az >= ax && az >= ay) {
+      uu = 0;
+      vv = 1;
+      sign = nz;
+    } else if (ax >= ay) {
+      uu = 1;
+      vv = 2;
+      sign = nx;
+    } else {
+      uu = 2;
+      vv = 0;
+      sign = ny;
+    }
+    float flip = sign < 0 ? -1 : 1;
+    for (int ii = 0; ii < points; ii++) {
+      int cur = faceIndices[first + ii] * 3;
+      xs[ii] = verts[cur + uu] * flip;
+      ys[ii] = verts[cur + vv];
+    }
+    return true;
+  }
+
+  /*
+   * @return true if no corner of the face turns against the cross product of two diagonals, which is the normal
+   * of a quad, so convex quads are found without projecting them.  Faces where the diagonals are parallel return
+   * false, and are checked by project().
+   */
+  private boolean isConvex (int first, int points) {
+    int[] faceIndices = mesh.faceIndices;
+    float[] verts = mesh.vertices;
+    int p0 = faceIndices[first] * 3;
+    int p1 = faceIndices[first + (points >> 1)] * 3;
+    int p2 = faceIndices[first + (points >> 2)] * 3;
+    int p3 = faceIndices[first + (points >> 1) + (points >> 2)] * 3;
+    float ax = verts[p1] - verts[p0], ay = verts[p1 + 1] - verts[p0 + 1], az = verts[p1 + 2] - verts[p0 + 2];
+    float bx = verts[p3] - verts[p2], by = verts[p3 + 1] - verts[p2 + 1], bz = verts[p3 + 2] - verts[p2 + 2];
+    float nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+    if (nx == 0 && ny == 0 && nz == 0) {
+      return false;
+    }
+    int last = faceIndices[first + points - 2] * 3;
+    int cur = faceIndices[first + points - 1] * 3;
+    float ex = verts[cur] - verts[last], ey = verts[cur + 1] - verts[last + 1], ez = verts[cur + 2] - verts[last + 2];
+    for (int ii = 0; ii < points; ii++) {
+      int nxt = faceIndices[first + ii] * 3;
+      float fx = verts[nxt] - verts[cur], fy = verts[nxt + 1] - verts[cur + 1], fz = verts[nxt + 2] - verts[cur + 2];
+      float turn = (ey * fz - ez * fy) * nx + (ez * fx - ex * fz) * ny + (ex * fy - ey * fx) * nz;
+      if (turn < 0) {
+        return false;
+      }
+      cur = nxt;
+      ex = fx;
+      ey = fy;
+      ez = fz;
+    }
+    return true;
+  }
+
+  private float cross (int aa, int bb, int cc) {
+    return (xs[bb] - xs[aa]) * (ys[cc] - ys[bb]) - (ys[bb] - ys[aa]) * (xs[cc] - xs[bb]);
+  }
+
+  /*
+   * Splits the projected face by repeatedly cutting off an ear, a convex corner whose triangle contains no other
+   * remaining point, writing each triangle to out from dst
+   */
+  private void clipEars (int first, int points, int[] out, int dst) {
+    for (int ii = 0; ii < points; ii++) {
+      prev[ii] = ii == 0 ? points - 1 : ii - 1;
+      next[ii] = ii == points - 1 ? 0 : ii + 1;
+    }
+    int remaining = points;
+    int cur = 0;
+    int misses = 0;
+    while (remaining > 3) {
+      int aa = prev[cur];
+      int cc = next[cur];
+      // If no ear is left, the face crosses itself, or is degenerate, so the corner is cut off anyway
+      if (misses >= remaining || isEar(aa, cur, cc)) {
+        out[dst++] = first + aa;
+        out[dst++] = first + cur;
+        out[dst++] = first + cc;
+        next[aa] = cc;
+        prev[cc] = aa;
+        remaining--;
+        misses = 0;
+        cur = cc;
+      } else {
+        misses++;
+        cur = cc;
+      }
+    }
+    out[dst++] = first + prev[cur];
+    out[dst++] = first + cur;
+    out[dst] = first + next[cur];
+  }
+
+  private boolean isEar (int aa, int bb, int cc) {
+    if (cross(aa, bb, cc) <= 0) {
+      return false;
+    }
+    for (int pp = next[cc]; pp != aa; pp = next[pp]) {
+      // Only a point at a reflex corner can lie inside the triangle of a convex corner
+      if (cross(prev[pp], pp, next[pp]) < 0 && inTriangle(pp, aa, bb, cc)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean inTriangle (int pp, int aa, int bb, int cc) {
+    return cross(aa, bb, pp) >= 0 && cross(bb, cc, pp) >= 0 && cross(cc, aa, pp) >= 0;
+  }
+}
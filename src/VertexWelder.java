@@ -0,0 +1,282 @@
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/*
+ *  Builds an indexed vertex table for a Mesh, as used by GPU vertex buffers.  Cheetah 3D stores a UV coord for
+ *  each point of each face (see Note 5), so exporters which need one UV coord per vertex would otherwise have to
+ *  emit a vertex for every face point.  Face points which share a mesh vertex and UV coord are welded into one
+ *  vertex, which is usually all the points around a vertex, except along UV seams.
+ *
+ *  UV coords are quantized to 16 bits across the range of the mesh's finite UV coords, with the top three steps
+ *  kept for NaN and infinities, so each (vertex, u, v) triple packs into one long key, which is looked up in an
+ *  open addressing hash table of primitive longs and ints.  The key is only a hash, as an outlier can stretch
+ *  the range until nearby UV coords share a step, so points only weld when their UV coords' bits also match.  Ranges of face points are welded in parallel (see
+ *  Parallel), each with its own table, then the ranges' tables are merged in order, so vertexes are numbered in
+ *  order of first use, just as a single table would number them.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+public final class VertexWelder {
+  private static final int  MIN_POINTS_PER_TASK = 65536;
+  private static final int  UV_STEPS = 0xFFFC;         // largest step of a finite UV coord
+  private static final long NEG_INFINITY = 0xFFFD;    // steps of non-finite UV coords, which only weld to their own kind
+  private static final long POS_INFINITY = 0xFFFE;
+  private static final long NOT_A_NUMBER = 0xFFFF;
+
+  private VertexWelder () { }
+
+  /*
+   * Welded vertex table for a Mesh, where unique vertex ii uses mesh vertex vertices[ii] and the UV coords in
+   * uvcoords[ii * 2] and uvcoords[ii * 2 + 1], which are those of its first face point
+   */
+  public static final class Welded {
+    final int[]       vertices;     // mesh vertex index of each unique vertex
+    final float[]     uvcoords;     // packed u, v values (one pair per unique vertex)
+    final int[]       indices;      // unique vertex index of each face point
+
+    private Welded (int[] vertices, float[] uvcoords, int[] indices) {
+      this.vertices = vertices;
+      this.uvcoords = uvcoords;
+      this.indices = indices;
+    }
+
+    public int getVertexCount () {
+      return vertices.length;
+    }
+
+    /**
+     * @return read-only view of the mesh vertex index of each unique vertex
+     */
+    public IntBuffer getVertices () {
+      return IntBuffer.wrap(vertices).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return read-only view of packed u, v values, one pair for each unique vertex, or an empty buffer if the
+     * mesh has no UV coords
+     */
+    public FloatBuffer getUVCoords () {
+      return FloatBuffer.wrap(uvcoords).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return read-only view of the unique vertex index of each face point, in Mesh.getFaceIndices() order
+     */
+    public IntBuffer getIndices () {
+      return IntBuffer.wrap(indices).asReadOnlyBuffer();
+    }
+  }
+
+  /*
+   * Open addressing hash table from long keys, which must not be negative, and the exact bits of their UV coords,
+   * to int values, with linear probing.  Entries with the same key but different UV coords are kept apart.
+   */
+  private static final class LongIntMap {
+    private long[]      keys;
+    private int[]       uBits;
+    private int[]       vBits;
+    private int[]       values;
+    private int         mask;
+    private int         size;
+
+    LongIntMap (int expected) {
+      int capacity = Integer.highestOneBit(Math.max(16, expected) * 2 - 1) << 1;
+      keys = new long[capacity];
+      uBits = new int[capacity];
+      vBits = new int[capacity];
+      values = new int[capacity];
+      Arrays.fill(keys, -1);
+      mask = capacity - 1;
+    }
+
+    /**
+     * @return value for key and UV bits, or -1 after adding them with value if there was none
+     */
+    int putIfAbsent (long key, int uu, int vv, int value) {
+      int slot = hash(key) & mask;
+      long found;
+      while ((found = keys[slot]) != -1) {
+        if (found == key && uBits[slot] == uu && vBits[slot] == vv) {
+          return values[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      uBits[slot] = uu;
+      vBits[slot] = vv;
+      values[slot] = value;
+      if (++size * 2 > keys.length) {
+        grow();
+      }
+      return -1;
+    }
+
+    private static int hash (long key) {
+      long hh = key * 0x9E3779B97F4A7C15L;
+      return (int) (hh ^ (hh >>> 32));
+    }
+
+    private void grow () {
+      long[] oldKeys = keys;
+      int[] oldU = uBits;
+      int[] oldV = vBits;
+      int[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      uBits = new int[oldKeys.length * 2];
+      vBits = new int[oldKeys.length * 2];
+      values = new int[oldKeys.length * 2];
+      Arrays.fill(keys, -1);
+      mask = keys.length - 1;
+      for (int ii = 0; ii < oldKeys.length; ii++) {
+        if (oldKeys[ii] != -1) {
+          int slot = hash(oldKeys[ii]) & mask;
+          while (keys[slot] != -1) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[ii];
+          uBits[slot] = oldU[ii];
+          vBits[slot] = oldV[ii];
+          values[slot] = oldValues[ii];
+        }
+      }
+    }
+  }
+
+  /*
+   * The unique keys and UV bits of a range of face points, in order of first use, with the first face point
+   * using each
+   */
+  private static final class Shard {
+    private long[]      keys = new long[1024];
+    private int[]       uBits = new int[1024];
+    private int[]       vBits = new int[1024];
+    private int[]       firstPoint = new int[1024];
+    private int         count;
+
+    void add (long key, int uu, int vv, int point) {
+      if (count == keys.length) {
+        keys = Arrays.copyOf(keys, count * 2);
+        uBits = Arrays.copyOf(uBits, count * 2);
+        vBits = Arrays.copyOf(vBits, count * 2);
+        firstPoint = Arrays.copyOf(firstPoint, count * 2);
+      }
+      keys[count] = key;
+      uBits[count] = uu;
+      vBits[count] = vv;
+      firstPoint[count++] = point;
+    }
+  }
+
+  public static Welded weld (Mesh mesh) {
+    int[] faceIndices = mesh.faceIndices;
+    float[] uvcoords = mesh.uvcoords;
+    int points = faceIndices.length;
+    boolean hasUVs = uvcoords.length >= points * 2;
+    // Quantization grid over the range of the finite UV coords (Math.min() and Math.max() would keep a NaN)
+    float[] range = {Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+    for (int ii = 0; hasUVs && ii < points * 2; ii++) {
+      float val = uvcoords[ii];
+      int axis = ii & 1;
+      if (val - val == 0) {                 // Only false for NaN and infinities
+        range[axis] = val < range[axis] ? val : range[axis];
+        range[axis + 2] = val > range[axis + 2] ? val : range[axis + 2];
+      }
+    }
+    float[] grid = {range[0], range[1], getScale(range[0], range[2]), getScale(range[1], range[3])};
+    int[] indices = new int[points];
+    int tasks = Parallel.getRangeCount(points, MIN_POINTS_PER_TASK);
+    Shard[] shards = new Shard[tasks];
+    Parallel.forEach(tasks, tt -> {
+      int from = Parallel.getRangeStart(points, tasks, tt);
+      int to = Parallel.getRangeStart(points, tasks, tt + 1);
+      weld(mesh, hasUVs, grid, from, to, indices, shards[tt] = new Shard());
+    });
+    // Merge each shard's keys, in order, into one table, mapping each shard's vertexes to merged vertexes
+    int count = shards[0].count;
+    int[] firstPoint = shards[0].firstPoint;
+    int[][] merged = new int[tasks][];
+    if (tasks > 1) {
+      int total = 0;
+      for (Shard shard : shards) {
+        total += shard.count;
+      }
+      LongIntMap map = new LongIntMap(total);
+      firstPoint = new int[total];
+      count = 0;
+      for (int tt = 0; tt < tasks; tt++) {
+        Shard shard = shards[tt];
+        int[] local = merged[tt] = new int[shard.count];
+        for (int ii = 0; ii < shard.count; ii++) {
+          int idx = map.putIfAbsent(shard.keys[ii], shard.uBits[ii], shard.vBits[ii], count);
+          if (idx < 0) {
+            firstPoint[count] = shard.firstPoint[ii];
+            idx = count++;
+          }
+          local[ii] = idx;
+        }
+      }
+      Parallel.forEach(tasks, tt -> {
+        int[] local = merged[tt];
+        int to = Parallel.getRangeStart(points, tasks, tt + 1);
+        for (int ii = Parallel.getRangeStart(points, tasks, tt); ii < to; ii++) {
+          indices[ii] = local[indices[ii]];
+        }
+      });
+    }
+    int[] vertices = new int[count];
+    float[] uvs = new float[hasUVs ? count * 2 : 0];
+    for (int ii = 0; ii < count; ii++) {
+      int point = firstPoint[ii];
+      vertices[ii] = faceIndices[point];
+      if (hasUVs) {
+        uvs[ii * 2] = uvcoords[point * 2];
+        uvs[ii * 2 + 1] = uvcoords[point * 2 + 1];
+      }
+    }
+    return new Welded(vertices, uvs, indices);
+  }
+
+  /*
+   * Welds face points from up to, but not including to, writing the index of each point's vertex in shard to
+   * indices.  grid holds the smallest u and v, then the scale from u and v to steps.
+   */
+  private static void weld (Mesh mesh, boolean hasUVs, float[] grid, int from, int to, int[] indices, Shard shard) {
+    int[] faceIndices = mesh.faceIndices;
+    float[] uvcoords = mesh.uvcoords;
+    LongIntMap map = new LongIntMap((to - from) / 4);
+    for (int ii = from; ii < to; ii++) {
+      long key = (long) faceIndices[ii] << 32;
+      int uBits = 0, vBits = 0;
+      if (hasUVs) {
+        key |= quantize(uvcoords[ii * 2], grid[0], grid[2]) << 16 | quantize(uvcoords[ii * 2 + 1], grid[1], grid[3]);
+        uBits = Float.floatToIntBits(uvcoords[ii * 2]);
+        vBits = Float.floatToIntBits(uvcoords[ii * 2 + 1]);
+      }
+      int idx = map.putIfAbsent(key, uBits, vBits, shard.count);
+      if (idx < 0) {
+        idx = shard.count;
+        shard.add(key, uBits, vBits, ii);
+      }
+      indices[ii] = idx;
+    }
+  }
+
+  /*
+   * Returns the scale from UV coords from min to max to steps, or 0 if there are none, or they are all the same
+   */
+  private static float getScale (float min, float max) {
+    return max > min ? (float) (UV_STEPS / ((double) max - min)) : 0;
+  }
+
+  private static long quantize (float val, float min, float scale) {
+    if (Float.isNaN(val)) {
+      return NOT_A_NUMBER;
+    } else if (Float.isInfinite(val)) {
+      return val > 0 ? POS_INFINITY : NEG_INFINITY;
+    }
+    float step = (val - min) * scale + 0.5f;
+    return step >= 0 ? Math.min(UV_STEPS, (int) step) : 0;
+  }
+}
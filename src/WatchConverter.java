@@ -0,0 +1,148 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/*
+ *  Implements the -watch switch, which converts every .jas file in a directory (and its subdirectories) using the
+ *  other switches given, then keeps running and re-converts each file as it is saved, such as:
+ *
+ *    java -jar Cheetah3DParser.jar -watch -obj assets/
+ *
+ *  Cheetah 3D can write a file several times in quick succession, so a file is only converted once no events
+ *  have been seen for it for DEBOUNCE_MS.  Files whose content hash is unchanged since the last conversion are
+ *  skipped.  With -obj, the OBJ text rendered for each file is kept in memory, in chunks, so when a file changes
+ *  only the chunks whose vertices, UVs, faces or material changed are rendered again.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+class WatchConverter {
+  private static final long                             DEBOUNCE_MS = 250;
+  private final String[]                                switches;
+  private final Map<WatchKey,Path>                      keys = new HashMap<>();
+  private final Map<Path,String>                        hashes = new HashMap<>();
+  private final Map<Path,Cheetah3DParser.ObjCache>      objCaches = new HashMap<>();
+
+  WatchConverter (String[] switches) {
+    this.switches = switches;
+  }
+
+  /**
+   * Converts all the .jas files under dir, then watches for changes until interrupted
+   */
+  void run (Path dir) throws IOException, InterruptedException {
+    try (WatchService watcher = dir.getFileSystem().newWatchService()) {
+      register(watcher, dir);
+      for (File file : BatchConverter.findFiles(dir.toString())) {
+        convert(file.toPath());
+      }
+      System.out.println("Watching " + dir + " for changes (Ctrl-C to stop)");
+      // Files with events, and the time of each file's last event
+      Map<Path,Long> pending = new LinkedHashMap<>();
+      while (true) {
+        long wait = Long.MAX_VALUE;
+        for (long time : pending.values()) {
+          wait = Math.min(wait, time + DEBOUNCE_MS - System.currentTimeMillis());
+        }
+        WatchKey key = wait > 0 ? watcher.poll(wait, TimeUnit.MILLISECONDS) : watcher.poll();
+        if (key != null) {
+          Path base = keys.get(key);
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+              // Events were lost, so check every file (unchanged files are skipped by their hash)
+              for (File file : BatchConverter.findFiles(dir.toString())) {
+                pending.put(file.toPath(), System.currentTimeMillis());
+              }
+              continue;
+            }
+            Path path = base.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+              register(watcher, path);
+              for (File file : BatchConverter.findFiles(path.toString())) {
+                pending.put(file.toPath(), System.currentTimeMillis());
+              }
+            } else if (path.toString().toLowerCase().endsWith(".jas")) {
+              if (event.kind() == ENTRY_DELETE) {
+                pending.remove(path);
+                hashes.remove(path);
+                objCaches.remove(path);
+              } else {
+                // Each event restarts the file's quiet period
+                pending.remove(path);
+                pending.put(path, System.currentTimeMillis());
+              }
+            }
+          }
+          if (!key.reset()) {
+            keys.remove(key);
+          }
+        }
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<Path,Long>> itr = pending.entrySet().iterator(); itr.hasNext(); ) {
+          Map.Entry<Path,Long> entry = itr.next();
+          if (now - entry.getValue() >= DEBOUNCE_MS) {
+            itr.remove();
+            convert(entry.getKey());
+          }
+        }
+      }
+    }
+  }
+
+  private void register (WatchService watcher, Path dir) throws IOException {
+    Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory (Path subDir, BasicFileAttributes attrs) throws IOException {
+        keys.put(subDir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), subDir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  /*
+   * Converts file, unless its content is unchanged since it was last converted, and prints the time taken
+   */
+  private void convert (Path file) {
+    long start = System.nanoTime();
+    ByteArrayOutputStream console = new ByteArrayOutputStream();
+    try {
+      String hash;
+      try {
+        ByteBuffer data = BinaryPList.map(file.toFile());
+        hash = SceneCache.hash(data);
+      } catch (FileNotFoundException ex) {
+        return;
+      }
+      if (hash.equals(hashes.get(file))) {
+        return;
+      }
+      Cheetah3DParser.ObjCache objCache = objCaches.get(file);
+      if (objCache == null) {
+        objCaches.put(file, objCache = new Cheetah3DParser.ObjCache());
+      }
+      try (PrintStream out = new PrintStream(console)) {
+        Cheetah3DParser.convert(switches, file.toFile(), out, objCache);
+      }
+      hashes.put(file, hash);
+      System.out.print(console.toString());
+      int[] stats = objCache.getStats();
+      System.out.println(String.format("Converted %s in %d ms%s", file, (System.nanoTime() - start) / 1000000,
+                                       stats[1] > 0 ? " (" + stats[0] + " of " + stats[1] + " OBJ chunks rendered)" : ""));
+    } catch (Exception ex) {
+      // The file may still be being written, so it's tried again on its next event
+      hashes.remove(file);
+      objCaches.remove(file);
+      System.out.print(console.toString());
+      System.out.println("Unable to convert " + file + ": " + ex);
+    }
+  }
+}
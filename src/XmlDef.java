@@ -0,0 +1,121 @@
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ *  The parts of a material node's "xmlDef" string which Cheetah3DParser.load() uses: the "name" and "conID"
+ *  attributes of the color and float elements in the "param" element, which link textures to material channels,
+ *  and the "id" attribute of the "image" element of a texture node.  These are read with a StAX scanner which
+ *  stops as soon as both are found, rather than building a DOM tree.
+ *
+ *  As in the DOM based code this replaces, "param" and "image" are only found on the chain of first children from
+ *  the root element.  Materials often share the same xmlDef strings, so results are cached by content.
+ *
+ *  License: MIT (https://opensource.org/licenses/MIT)
+ */
+
+final class XmlDef {
+  private static final int                          MAX_CACHED = 1024;
+  private static final Map<String,XmlDef>           cache = new ConcurrentHashMap<>();
+  private static final ThreadLocal<XMLInputFactory> factory = ThreadLocal.withInitial(() -> {
+    XMLInputFactory xif = XMLInputFactory.newInstance();
+    xif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    return xif;
+  });
+  private final List<String[]>  params;     // name and conID of each color, or float element in "param"
+  private final String          imageId;    // "id" of "image" element, or null
+
+  private XmlDef (List<String[]> params, String imageId) {
+    this.params = Collections.unmodifiableList(params);
+    this.imageId = imageId;
+  }
+
+  /**
+   * Returns the parsed form of xml, using a cached copy if the same string was parsed before
+   */
+  static XmlDef get (String xml) throws XMLStreamException {
+    XmlDef xmlDef = cache.get(xml);
+    if (xmlDef == null) {
+      xmlDef = parse(xml);
+      if (cache.size() >= MAX_CACHED) {
+        cache.clear();
+      }
+      cache.put(xml, xmlDef);
+    }
+    return xmlDef;
+  }
+
+  /**
+   * @return name and conID attributes of each color and float element in the "param" element
+   */
+  List<String[]> getParams () {
+    return params;
+  }
+
+  /**
+   * @return id attribute of the "image" element, or null if none
+   */
+  String getImageId () {
+    return imageId;
+  }
+
+  private static XmlDef parse (String xml) throws XMLStreamException {
+    List<String[]> params = new ArrayList<>();
+    String imageId = null;
+    XMLStreamReader reader = factory.get().createXMLStreamReader(new StringReader(xml));
+    try {
+      int depth = 0;
+      int paramDepth = -1;
+      boolean paramDone = false;
+      boolean imageDone = false;
+      // True while each element so far has been the first child node of the one before
+      boolean chain = true;
+      while (reader.hasNext() && !(paramDone && imageDone)) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+          String name = getName(reader);
+          if (chain && paramDepth < 0 && "param".equals(name)) {
+            paramDepth = depth;
+          } else if (paramDepth > 0 && depth == paramDepth + 1 && ("color".equals(name) || "float".equals(name))) {
+            String conId = reader.getAttributeValue(null, "conID");
+            String cName = reader.getAttributeValue(null, "name");
+            if (conId != null && cName != null) {
+              params.add(new String[] {cName, conId});
+            }
+          }
+          if (chain && !imageDone && "image".equals(name)) {
+            imageId = reader.getAttributeValue(null, "id");
+            imageDone = true;
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          if (depth == paramDepth) {
+            paramDone = true;
+          }
+          depth--;
+          chain = false;
+        } else if (depth > 0 || (event != XMLStreamConstants.SPACE && event != XMLStreamConstants.CHARACTERS)) {
+          // Text, comments, etc end the chain (except whitespace outside the root element, which DOM ignores)
+          chain = false;
+        }
+        if (!chain) {
+          paramDone |= paramDepth < 0;
+          imageDone = true;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return new XmlDef(params, imageId);
+  }
+
+  private static String getName (XMLStreamReader reader) {
+    String prefix = reader.getPrefix();
+    return prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+  }
+}